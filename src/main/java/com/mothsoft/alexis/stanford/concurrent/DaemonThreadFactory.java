@@ -0,0 +1,43 @@
+/*
+    stanford-nlp-war : provides REST, JMS, and HTML form connectivity to Stanford CoreNLP
+    Copyright (C) 2012  Tim Garrett, Mothsoft LLC
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License along
+    with this program; if not, write to the Free Software Foundation, Inc.,
+    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package com.mothsoft.alexis.stanford.concurrent;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Names threads after their pool and marks them as daemons so a stuck parse
+ * never holds up container shutdown.
+ */
+public class DaemonThreadFactory implements ThreadFactory {
+
+    private final String prefix;
+    private final AtomicInteger count = new AtomicInteger();
+
+    public DaemonThreadFactory(final String prefix) {
+        this.prefix = prefix;
+    }
+
+    public Thread newThread(final Runnable runnable) {
+        final Thread thread = new Thread(runnable, this.prefix + this.count.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    }
+
+}
@@ -0,0 +1,73 @@
+/*
+    stanford-nlp-war : provides REST, JMS, and HTML form connectivity to Stanford CoreNLP
+    Copyright (C) 2012  Tim Garrett, Mothsoft LLC
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License along
+    with this program; if not, write to the Free Software Foundation, Inc.,
+    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package com.mothsoft.alexis.stanford.jms;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+import javax.jms.MessageEOFException;
+
+/**
+ * Reads the body of a BytesMessage in place, without copying it out first.
+ */
+class BytesMessageInputStream extends InputStream {
+
+    private final BytesMessage message;
+    private byte[] buffer;
+
+    BytesMessageInputStream(final BytesMessage message) {
+        this.message = message;
+    }
+
+    @Override
+    public int read() throws IOException {
+        try {
+            return this.message.readUnsignedByte();
+        } catch (final MessageEOFException e) {
+            return -1;
+        } catch (final JMSException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        try {
+            if (off == 0) {
+                return this.message.readBytes(b, len);
+            }
+            if (this.buffer == null || this.buffer.length < len) {
+                this.buffer = new byte[len];
+            }
+            final int read = this.message.readBytes(this.buffer, len);
+            if (read > 0) {
+                System.arraycopy(this.buffer, 0, b, off, read);
+            }
+            return read;
+        } catch (final JMSException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+}
@@ -0,0 +1,56 @@
+/*
+    stanford-nlp-war : provides REST, JMS, and HTML form connectivity to Stanford CoreNLP
+    Copyright (C) 2012  Tim Garrett, Mothsoft LLC
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License along
+    with this program; if not, write to the Free Software Foundation, Inc.,
+    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package com.mothsoft.alexis.stanford.jms;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+
+/**
+ * Writes straight into the body of a BytesMessage.
+ */
+class BytesMessageOutputStream extends OutputStream {
+
+    private final BytesMessage message;
+
+    BytesMessageOutputStream(final BytesMessage message) {
+        this.message = message;
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+        try {
+            this.message.writeByte((byte) b);
+        } catch (final JMSException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) throws IOException {
+        try {
+            this.message.writeBytes(b, off, len);
+        } catch (final JMSException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+}
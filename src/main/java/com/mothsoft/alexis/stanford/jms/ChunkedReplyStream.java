@@ -0,0 +1,126 @@
+/*
+    stanford-nlp-war : provides REST, JMS, and HTML form connectivity to Stanford CoreNLP
+    Copyright (C) 2012  Tim Garrett, Mothsoft LLC
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License along
+    with this program; if not, write to the Free Software Foundation, Inc.,
+    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package com.mothsoft.alexis.stanford.jms;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Cuts a document into reply chunks as the parser writes it. The parser
+ * flushes its output after every sentence it writes, so a chunk is sent every
+ * <code>sentencesPerChunk</code> flushes, or sooner if it reaches
+ * <code>maxChunkBytes</code>. A document replayed from the result store, or
+ * shared with a concurrent identical request, is written whole with a single
+ * flush, so it is only cut by size. Chunks never split a UTF-8 character, so
+ * each one of a text format decodes on its own; concatenated in sequence they
+ * are the whole document.
+ */
+abstract class ChunkedReplyStream extends OutputStream {
+
+    private final int sentencesPerChunk;
+    private final int maxChunkBytes;
+    private final ByteArrayOutputStream buffer;
+    private int sentences;
+    private int sequence;
+
+    ChunkedReplyStream(final int sentencesPerChunk, final int maxChunkBytes) {
+        this.sentencesPerChunk = Math.max(1, sentencesPerChunk);
+        this.maxChunkBytes = Math.max(4, maxChunkBytes);
+        this.buffer = new ByteArrayOutputStream(Math.min(this.maxChunkBytes, 64 * 1024));
+    }
+
+    /**
+     * @param sequence
+     *            - 0 for the first chunk of the document
+     * @param last
+     *            - true for the final chunk, which may be empty
+     */
+    protected abstract void send(byte[] chunk, int sequence, boolean last) throws IOException;
+
+    @Override
+    public void write(final int b) throws IOException {
+        this.buffer.write(b);
+        if (this.buffer.size() >= this.maxChunkBytes) {
+            cut();
+        }
+    }
+
+    @Override
+    public void write(final byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            final int n = Math.min(len, this.maxChunkBytes - this.buffer.size());
+            this.buffer.write(b, off, n);
+            off += n;
+            len -= n;
+            if (this.buffer.size() >= this.maxChunkBytes) {
+                cut();
+            }
+        }
+    }
+
+    /**
+     * One more sentence is complete
+     */
+    @Override
+    public void flush() throws IOException {
+        if (++this.sentences >= this.sentencesPerChunk && this.buffer.size() > 0) {
+            this.sentences = 0;
+            send(this.buffer.toByteArray(), this.sequence++, false);
+            this.buffer.reset();
+        }
+    }
+
+    /**
+     * Send whatever is left as the last chunk
+     */
+    void finish() throws IOException {
+        send(this.buffer.toByteArray(), this.sequence++, true);
+        this.buffer.reset();
+    }
+
+    /**
+     * Send a full buffer, up to the last complete UTF-8 character
+     */
+    private void cut() throws IOException {
+        final byte[] bytes = this.buffer.toByteArray();
+        // back up to the start of the last multi-byte character, which goes
+        // in the next chunk whether or not it is complete
+        int end = bytes.length;
+        while (end > 0 && (bytes[end - 1] & 0xC0) == 0x80) {
+            end--;
+        }
+        if (end > 0 && (bytes[end - 1] & 0xC0) == 0xC0) {
+            end--;
+        }
+        if (end == 0) {
+            end = bytes.length;
+        }
+
+        send(Arrays.copyOfRange(bytes, 0, end), this.sequence++, false);
+        this.buffer.reset();
+        this.buffer.write(bytes, end, bytes.length - end);
+    }
+
+    int getChunks() {
+        return this.sequence;
+    }
+
+}
@@ -0,0 +1,115 @@
+/*
+    stanford-nlp-war : provides REST, JMS, and HTML form connectivity to Stanford CoreNLP
+    Copyright (C) 2012  Tim Garrett, Mothsoft LLC
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License along
+    with this program; if not, write to the Free Software Foundation, Inc.,
+    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package com.mothsoft.alexis.stanford.jms;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Compression of BytesMessage bodies, named by the CONTENT_ENCODING and
+ * ACCEPT_ENCODING message properties. gzip compresses harder; deflate (zlib
+ * format) runs at the fastest level, for when the broker has memory to spare
+ * but the CPU does not.
+ */
+enum ContentEncoding {
+
+    GZIP {
+        InputStream decompress(final InputStream is) throws IOException {
+            return new GZIPInputStream(is, BUFFER_SIZE);
+        }
+
+        OutputStream compress(final OutputStream os) throws IOException {
+            return new GZIPOutputStream(os, BUFFER_SIZE);
+        }
+    },
+
+    DEFLATE {
+        InputStream decompress(final InputStream is) {
+            return new InflaterInputStream(is);
+        }
+
+        OutputStream compress(final OutputStream os) {
+            final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            return new DeflaterOutputStream(os, deflater, BUFFER_SIZE) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        // a deflater of our own is not ended by the stream
+                        deflater.end();
+                    }
+                }
+            };
+        }
+    };
+
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * @return a stream reading the decompressed body
+     */
+    abstract InputStream decompress(InputStream is) throws IOException;
+
+    /**
+     * @return a stream compressing into os; close it to finish
+     */
+    abstract OutputStream compress(OutputStream os) throws IOException;
+
+    String getName() {
+        return name().toLowerCase();
+    }
+
+    /**
+     * @return the named encoding, or null if there is no such encoding
+     */
+    static ContentEncoding forName(final String name) {
+        for (final ContentEncoding encoding : values()) {
+            if (encoding.getName().equalsIgnoreCase(name == null ? null : name.trim())) {
+                return encoding;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param accepted
+     *            - encodings the requester can read, in order of preference,
+     *            separated by commas
+     * @return the first of them supported here, or null to reply uncompressed
+     */
+    static ContentEncoding negotiate(final String accepted) {
+        if (accepted != null) {
+            for (final String name : accepted.split(",")) {
+                final ContentEncoding encoding = forName(name);
+                if (encoding != null) {
+                    return encoding;
+                }
+            }
+        }
+        return null;
+    }
+
+}
@@ -22,86 +22,615 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Logger;
 
+import javax.jms.BytesMessage;
 import javax.jms.Destination;
 import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageConsumer;
 import javax.jms.MessageProducer;
 import javax.jms.Session;
+import javax.jms.TemporaryQueue;
 import javax.jms.TextMessage;
 
+import org.apache.commons.io.IOUtils;
 import org.springframework.jms.listener.SessionAwareMessageListener;
 import org.springframework.util.StopWatch;
 
+import com.mothsoft.alexis.stanford.concurrent.DaemonThreadFactory;
+import com.mothsoft.alexis.stanford.metrics.Counter;
+import com.mothsoft.alexis.stanford.metrics.Histogram;
+import com.mothsoft.alexis.stanford.metrics.Metrics;
+import com.mothsoft.alexis.stanford.parser.AnalysisLevel;
+import com.mothsoft.alexis.stanford.parser.DocumentAssembler;
+import com.mothsoft.alexis.stanford.parser.DocumentBatches;
+import com.mothsoft.alexis.stanford.parser.Lane;
+import com.mothsoft.alexis.stanford.parser.OutputFormat;
+import com.mothsoft.alexis.stanford.parser.ParseOptions;
 import com.mothsoft.alexis.stanford.parser.Parser;
 import com.mothsoft.alexis.stanford.parser.ParserFactory;
 import com.mothsoft.alexis.stanford.service.StanfordNLPService;
 
-public class ParseRequestMessageListener implements SessionAwareMessageListener<TextMessage> {
+public class ParseRequestMessageListener implements SessionAwareMessageListener<Message> {
 
     private static final Logger logger = Logger.getLogger(StanfordNLPService.class.getName());
 
     private static final String DOCUMENT_ID = "DOCUMENT_ID";
     private static final String EXCEPTION = "EXCEPTION";
+    private static final String USE_CACHE = "USE_CACHE";
+    private static final String FORMAT = "FORMAT";
+    private static final String LEVEL = "LEVEL";
+    private static final String CHUNK_SENTENCES = "CHUNK_SENTENCES";
+    private static final String CHUNK = "CHUNK";
+    private static final String LAST_CHUNK = "LAST_CHUNK";
+    private static final String BATCH = "BATCH";
+    private static final String CONTENT_ENCODING = "CONTENT_ENCODING";
+    private static final String ACCEPT_ENCODING = "ACCEPT_ENCODING";
     private static final String UTF8 = "UTF-8";
 
+    private static final Histogram QUEUE_LAG = Metrics.histogram("jms.queueLag");
+    private static final Histogram DOCUMENT = Metrics.histogram("jms.document");
+    private static final Counter ERRORS = Metrics.counter("jms.errors");
+    private static final Histogram CHUNKS = Metrics.histogram("jms.chunksPerDocument");
+    private static final Counter BATCHES_SENT = Metrics.counter("jms.fanOut.batches");
+    private static final Counter BATCHES_LOCAL = Metrics.counter("jms.fanOut.local");
+
+    /** how often a local parse of a timed out batch is checked on */
+    private static final long LOCAL_POLL_MILLIS = 100L;
+
+    /** no reply chunk is bigger than this, however long its sentences */
+    private static final int MAX_CHUNK_BYTES = 256 * 1024;
+
     private final Parser parser;
 
+    private final ThreadLocal<CachedProducer> producers = new ThreadLocal<CachedProducer>();
+    private final ThreadLocal<CachedConsumer> batchReplies = new ThreadLocal<CachedConsumer>();
+
+    private int fanOutSentences;
+    private Destination batchDestination;
+    private long batchTimeoutMillis = 60 * 1000L;
+
     public ParseRequestMessageListener() {
         this.parser = ParserFactory.getParser();
         logger.info("Started ParseRequestMessageListener!");
     }
 
+    /**
+     * @param fanOutSentences
+     *            - sentences per batch when a document is shared out over the
+     *            batch destination; 0 (the default) parses every document here
+     */
+    public void setFanOutSentences(final int fanOutSentences) {
+        this.fanOutSentences = fanOutSentences;
+    }
+
+    /**
+     * @param batchDestination
+     *            - where batches of a shared document are sent; every node
+     *            should consume it with this listener
+     */
+    public void setBatchDestination(final Destination batchDestination) {
+        this.batchDestination = batchDestination;
+    }
+
+    /**
+     * @param batchTimeoutSeconds
+     *            - how long after sending a batch to give up on it and parse it
+     *            here; the request holds its listener thread that long at most
+     *            before it starts parsing locally
+     */
+    public void setBatchTimeoutSeconds(final int batchTimeoutSeconds) {
+        this.batchTimeoutMillis = batchTimeoutSeconds * 1000L;
+    }
+
     @Override
-    public void onMessage(final TextMessage message, final Session session) throws JMSException {
-        final String text = ((TextMessage) message).getText();
+    public void onMessage(final Message message, final Session session) throws JMSException {
+        if (message.getJMSTimestamp() > 0) {
+            QUEUE_LAG.update(Math.max(0, System.currentTimeMillis() - message.getJMSTimestamp()) * 1000L);
+        }
+
         final Destination replyTo = message.getJMSReplyTo();
         final String documentId = message.getStringProperty(DOCUMENT_ID);
-        MessageProducer producer = null;
+        final ParseOptions options = new ParseOptions();
+        options.setLane(Lane.BULK);
+        if (message.propertyExists(USE_CACHE)) {
+            options.setUseSentenceCache(message.getBooleanProperty(USE_CACHE));
+            options.setUseResultStore(message.getBooleanProperty(USE_CACHE));
+        }
+        if (message instanceof BytesMessage) {
+            // the result store reads the whole document; a byte body is streamed into the tokenizer instead
+            options.setUseResultStore(false);
+        }
+        options.setFormat(OutputFormat.forName(message.getStringProperty(FORMAT)));
+        options.setLevel(AnalysisLevel.forName(message.getStringProperty(LEVEL)));
+        final ContentEncoding encoding = ContentEncoding.negotiate(message.getStringProperty(ACCEPT_ENCODING));
 
-        final String parsed;
+        final InputStream body;
+        try {
+            body = openBody(message);
+        } catch (final IOException e) {
+            replyWithError(session, replyTo, documentId, e);
+            return;
+        }
+
+        if (message.propertyExists(BATCH)) {
+            onBatchMessage(session, replyTo, message, body, options);
+            return;
+        }
+
+        if (message.propertyExists(CHUNK_SENTENCES) && message.getIntProperty(CHUNK_SENTENCES) > 0) {
+            onChunkedMessage(session, replyTo, documentId, body, options, encoding,
+                    message.getIntProperty(CHUNK_SENTENCES));
+            return;
+        }
+
+        final Message response;
         // parse and handle exceptions (if any) gracefully
         try {
-            parsed = parse(documentId, text);
-            producer = session.createProducer(replyTo);
+            if (encoding == null) {
+                response = createResponse(session, parse(session, documentId, body, options), options.getFormat(),
+                        null);
+            } else {
+                response = createCompressedResponse(session, documentId, body, options, encoding);
+            }
+        } catch (final ReplyException e) {
+            throw e.getJMSException();
         } catch (final Exception e) {
-            final TextMessage errorResponse = session.createTextMessage(e.getMessage());
-            errorResponse.setStringProperty(DOCUMENT_ID, documentId);
-            errorResponse.setBooleanProperty(EXCEPTION, true);
-            producer.send(errorResponse);
+            replyWithError(session, replyTo, documentId, e);
             return;
+        }
+
+        response.setStringProperty(DOCUMENT_ID, documentId);
+        reply(session, replyTo, response);
+    }
+
+    /**
+     * Reply every <code>sentencesPerChunk</code> sentences as the document is
+     * parsed. Each chunk carries DOCUMENT_ID, its CHUNK number (from 0) and
+     * LAST_CHUNK; the last one may be empty. If parsing fails part way, an
+     * EXCEPTION reply (also marked LAST_CHUNK) ends the document.
+     */
+    private void onChunkedMessage(final Session session, final Destination replyTo, final String documentId,
+            final InputStream body, final ParseOptions options, final ContentEncoding encoding,
+            final int sentencesPerChunk) throws JMSException {
+        final OutputFormat format = options.getFormat();
+        final ChunkedReplyStream chunks = new ChunkedReplyStream(sentencesPerChunk, MAX_CHUNK_BYTES) {
+            protected void send(final byte[] chunk, final int sequence, final boolean last) throws IOException {
+                try {
+                    final Message response = createResponse(session, chunk, format, encoding);
+                    response.setStringProperty(DOCUMENT_ID, documentId);
+                    response.setIntProperty(CHUNK, sequence);
+                    response.setBooleanProperty(LAST_CHUNK, last);
+                    reply(session, replyTo, response);
+                } catch (final JMSException e) {
+                    throw new ReplyException(e);
+                }
+            }
+        };
+
+        try {
+            parse(session, documentId, body, options, chunks);
+            chunks.finish();
+            CHUNKS.update(chunks.getChunks());
+        } catch (final ReplyException e) {
+            // the broker is in trouble; let the container recover the session
+            throw e.getJMSException();
+        } catch (final Exception e) {
+            replyWithError(session, replyTo, documentId, e);
+        }
+    }
+
+    /**
+     * Parse one batch of a document for the node that shared it out, replying
+     * with a fragment for it to assemble
+     */
+    private void onBatchMessage(final Session session, final Destination replyTo, final Message message,
+            final InputStream body, final ParseOptions options) throws JMSException {
+        options.setFragment(true);
+        options.setIndexEntities(false);
+
+        final ByteArrayOutputStream os = new ByteArrayOutputStream(1024 * 128);
+        Message response;
+        try {
+            this.parser.parse(body, os, options);
+            final BytesMessage bytes = session.createBytesMessage();
+            bytes.writeBytes(os.toByteArray());
+            response = bytes;
+        } catch (final Exception e) {
+            ERRORS.increment();
+            logger.warning("Failed to parse batch " + message.getIntProperty(BATCH) + ": " + e.getMessage());
+            response = session.createTextMessage(e.getMessage());
+            response.setBooleanProperty(EXCEPTION, true);
+        }
+
+        response.setJMSCorrelationID(message.getJMSCorrelationID());
+        response.setIntProperty(BATCH, message.getIntProperty(BATCH));
+        reply(session, replyTo, response);
+    }
+
+    private void replyWithError(final Session session, final Destination replyTo, final String documentId,
+            final Exception e) throws JMSException {
+        ERRORS.increment();
+        logger.warning("Failed to parse document ID: " + documentId + ": " + e.getMessage());
+        final TextMessage errorResponse = session.createTextMessage(e.getMessage());
+        errorResponse.setStringProperty(DOCUMENT_ID, documentId);
+        errorResponse.setBooleanProperty(EXCEPTION, true);
+        errorResponse.setBooleanProperty(LAST_CHUNK, true);
+        reply(session, replyTo, errorResponse);
+    }
+
+    /**
+     * A TextMessage, or a BytesMessage of UTF-8 text compressed as named by
+     * CONTENT_ENCODING
+     */
+    private static InputStream openBody(final Message message) throws JMSException, IOException {
+        if (message instanceof TextMessage) {
+            final String text = ((TextMessage) message).getText();
+            if (text == null) {
+                throw new IOException("Empty request");
+            }
+            return new ByteArrayInputStream(text.getBytes(Charset.forName(UTF8)));
+        } else if (!(message instanceof BytesMessage)) {
+            throw new IOException("Unsupported request type: " + message.getClass().getName());
+        }
+
+        final InputStream is = new BytesMessageInputStream((BytesMessage) message);
+        final String name = message.getStringProperty(CONTENT_ENCODING);
+        if (name == null) {
+            return is;
+        }
+        final ContentEncoding encoding = ContentEncoding.forName(name);
+        if (encoding == null) {
+            throw new IOException("Unsupported " + CONTENT_ENCODING + ": " + name);
+        }
+        // decompressed as the tokenizer reads it
+        return encoding.decompress(is);
+    }
+
+    /**
+     * Compress the document into the reply as it is parsed
+     */
+    private Message createCompressedResponse(final Session session, final String documentId,
+            final InputStream body, final ParseOptions options, final ContentEncoding encoding)
+            throws JMSException, IOException {
+        final BytesMessage response = session.createBytesMessage();
+        final OutputStream os = encoding.compress(new BytesMessageOutputStream(response));
+        try {
+            parse(session, documentId, body, options, os);
+            os.close();
         } finally {
-            if (producer != null) {
-                producer.close();
+            // releases the compressor if the parse failed
+            IOUtils.closeQuietly(os);
+        }
+
+        response.setStringProperty(FORMAT, options.getFormat().name());
+        response.setStringProperty(CONTENT_ENCODING, encoding.getName());
+        return response;
+    }
+
+    /**
+     * Binary documents go back as a BytesMessage, text formats as a
+     * TextMessage; either way FORMAT names the format. A compressed document
+     * is always a BytesMessage, with CONTENT_ENCODING set.
+     */
+    private Message createResponse(final Session session, final byte[] document, final OutputFormat format,
+            final ContentEncoding encoding) throws JMSException, IOException {
+        final Message response;
+        if (encoding != null) {
+            final BytesMessage bytes = session.createBytesMessage();
+            final OutputStream os = encoding.compress(new BytesMessageOutputStream(bytes));
+            os.write(document);
+            os.close();
+            bytes.setStringProperty(CONTENT_ENCODING, encoding.getName());
+            response = bytes;
+        } else if (format == OutputFormat.BINARY) {
+            final BytesMessage bytes = session.createBytesMessage();
+            bytes.writeBytes(document);
+            response = bytes;
+        } else {
+            response = session.createTextMessage(new String(document, Charset.forName(UTF8)));
+        }
+        response.setStringProperty(FORMAT, format.name());
+        return response;
+    }
+
+    private void reply(final Session session, final Destination replyTo, final Message response)
+            throws JMSException {
+        if (replyTo == null) {
+            logger.warning("No JMSReplyTo, dropping response for document ID: "
+                    + response.getStringProperty(DOCUMENT_ID));
+            return;
+        }
+
+        final MessageProducer producer = producerFor(session);
+        try {
+            producer.send(replyTo, response);
+        } catch (final JMSException e) {
+            // don't keep a producer that may be broken
+            this.producers.remove();
+            closeQuietly(producer);
+            throw e;
+        }
+    }
+
+    /**
+     * The container keeps a session per consumer thread for as long as it can,
+     * so an anonymous producer is kept alongside it and reused for every reply
+     * destination until the session changes
+     */
+    private MessageProducer producerFor(final Session session) throws JMSException {
+        final CachedProducer cached = this.producers.get();
+        if (cached != null) {
+            if (cached.session == session) {
+                return cached.producer;
             }
+            closeQuietly(cached.producer);
         }
 
-        // create and send response
-        final TextMessage response = session.createTextMessage(parsed);
-        response.setStringProperty(DOCUMENT_ID, documentId);
-        producer.send(response);
-        producer.close();
+        final MessageProducer producer = session.createProducer(null);
+        this.producers.set(new CachedProducer(session, producer));
+        return producer;
+    }
+
+    private static void closeQuietly(final MessageProducer producer) {
+        try {
+            producer.close();
+        } catch (final JMSException e) {
+            logger.fine("Failed to close producer: " + e.getMessage());
+        }
+    }
+
+    private byte[] parse(final Session session, final String documentId, final InputStream body,
+            final ParseOptions options) throws IOException {
+        final ByteArrayOutputStream os = new ByteArrayOutputStream(1024 * 128);
+        parse(session, documentId, body, options, os);
+        return os.toByteArray();
     }
 
-    private String parse(final String documentId, final String text) {
+    private void parse(final Session session, final String documentId, final InputStream body,
+            final ParseOptions options, final OutputStream os) throws IOException {
         final StopWatch stopWatch = new StopWatch();
         stopWatch.start();
 
-        final ByteArrayOutputStream os;
+        if (this.fanOutSentences > 0 && this.batchDestination != null) {
+            // batches are cut from the text, so it has to be read in full
+            final String text = IOUtils.toString(body, UTF8);
+            final List<String> batches = DocumentBatches.split(text, this.fanOutSentences);
+            if (batches.size() > 1) {
+                try {
+                    fanOut(session, batches, options, os);
+                } catch (final JMSException e) {
+                    throw new ReplyException(e);
+                }
+            } else {
+                this.parser.parse(new ByteArrayInputStream(text.getBytes(Charset.forName(UTF8))), os, options);
+            }
+        } else {
+            this.parser.parse(body, os, options);
+        }
+
+        stopWatch.stop();
+        DOCUMENT.update(stopWatch.getTotalTimeMillis() * 1000L);
+        logger.info("Parsing document ID: " + documentId + " took " + stopWatch.getTotalTimeSeconds() + " seconds");
+    }
+
+    /**
+     * Send the batches to whichever nodes are free, and write the fragments
+     * back in order as they return. Each batch expires unclaimed, and is
+     * parsed here, once its own timeout has passed since it was sent; batches
+     * failed by another node are parsed here at once. Local parses run one at
+     * a time while replies keep being taken, and a reply that beats its local
+     * parse is used instead. Late replies are recognized by their correlation
+     * ID and dropped.
+     */
+    private void fanOut(final Session session, final List<String> batches, final ParseOptions options,
+            final OutputStream os) throws JMSException, IOException {
+        final String correlationId = UUID.randomUUID().toString();
+        final CachedConsumer replies = batchRepliesFor(session);
+        final MessageProducer producer = producerFor(session);
+        final long[] deadlines = new long[batches.size()];
+        for (int i = 0; i < batches.size(); i++) {
+            final TextMessage batch = session.createTextMessage(batches.get(i));
+            batch.setJMSCorrelationID(correlationId);
+            batch.setJMSReplyTo(replies.queue);
+            batch.setIntProperty(BATCH, i);
+            batch.setStringProperty(FORMAT, options.getFormat().name());
+            batch.setStringProperty(LEVEL, options.getLevel().name());
+            batch.setBooleanProperty(USE_CACHE, options.isUseResultStore());
+            // a batch nobody has picked up by its deadline is parsed here
+            producer.send(this.batchDestination, batch, producer.getDeliveryMode(), producer.getPriority(),
+                    this.batchTimeoutMillis);
+            deadlines[i] = System.currentTimeMillis() + this.batchTimeoutMillis;
+        }
+        BATCHES_SENT.add(batches.size());
+
+        final DocumentAssembler assembler = new DocumentAssembler(os, options, ParserFactory.getEntityIndex());
+        assembler.startDocument();
+
+        final byte[][] fragments = new byte[batches.size()][];
+        final List<Future<byte[]>> local = new ArrayList<Future<byte[]>>(Collections.<Future<byte[]>> nCopies(
+                batches.size(), null));
+        ExecutorService localExecutor = null;
+        try {
+            int next = 0;
+            while (next < fragments.length) {
+                if (fragments[next] != null) {
+                    assembler.addFragment(fragments[next]);
+                    fragments[next++] = null;
+                    continue;
+                }
+                if (local.get(next) != null && local.get(next).isDone()) {
+                    fragments[next] = await(local.get(next));
+                    continue;
+                }
+
+                // hand every overdue batch to the local parser, and wait no
+                // longer than the next deadline
+                final long now = System.currentTimeMillis();
+                long wait = local.get(next) == null ? Long.MAX_VALUE : LOCAL_POLL_MILLIS;
+                for (int i = next; i < fragments.length; i++) {
+                    if (fragments[i] != null || local.get(i) != null) {
+                        continue;
+                    }
+                    if (deadlines[i] <= now) {
+                        logger.warning("Batch " + i + " failed or timed out, parsing it here");
+                        if (localExecutor == null) {
+                            localExecutor = Executors.newSingleThreadExecutor(new DaemonThreadFactory(
+                                    "stanford-fan-out-"));
+                        }
+                        local.set(i, localExecutor.submit(parseBatchTask(batches.get(i), options)));
+                        wait = Math.min(wait, LOCAL_POLL_MILLIS);
+                    } else {
+                        wait = Math.min(wait, deadlines[i] - now);
+                    }
+                }
+
+                final Message reply = replies.consumer.receive(Math.max(1L, wait));
+                if (reply == null || !correlationId.equals(reply.getJMSCorrelationID())) {
+                    continue;
+                }
+                final int batch = reply.getIntProperty(BATCH);
+                if (fragments[batch] != null || batch < next) {
+                    continue;
+                }
+                if (reply.propertyExists(EXCEPTION) && reply.getBooleanProperty(EXCEPTION)) {
+                    deadlines[batch] = now;
+                } else {
+                    final BytesMessage bytes = (BytesMessage) reply;
+                    fragments[batch] = new byte[(int) bytes.getBodyLength()];
+                    bytes.readBytes(fragments[batch]);
+                    if (local.get(batch) != null) {
+                        local.get(batch).cancel(false);
+                    }
+                }
+            }
+        } finally {
+            if (localExecutor != null) {
+                localExecutor.shutdown();
+            }
+        }
+
+        assembler.endDocument();
+    }
+
+    private Callable<byte[]> parseBatchTask(final String text, final ParseOptions options) {
+        return new Callable<byte[]>() {
+            public byte[] call() throws IOException {
+                return parseBatch(text, options);
+            }
+        };
+    }
+
+    private static byte[] await(final Future<byte[]> parse) throws IOException {
         try {
-            final InputStream is = new ByteArrayInputStream(text.getBytes(Charset.forName(UTF8)));
-            os = new ByteArrayOutputStream(1024 * 128);
-            this.parser.parse(is, os);
-            final String result = os.toString(UTF8);
+            return parse.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
+    private byte[] parseBatch(final String text, final ParseOptions options) throws IOException {
+        BATCHES_LOCAL.increment();
+        final ParseOptions batchOptions = new ParseOptions();
+        batchOptions.setLane(options.getLane());
+        batchOptions.setUseSentenceCache(options.isUseSentenceCache());
+        batchOptions.setUseResultStore(options.isUseResultStore());
+        batchOptions.setFormat(options.getFormat());
+        batchOptions.setLevel(options.getLevel());
+        batchOptions.setFragment(true);
+        batchOptions.setIndexEntities(false);
+
+        final ByteArrayOutputStream os = new ByteArrayOutputStream(1024 * 128);
+        this.parser.parse(new ByteArrayInputStream(text.getBytes(Charset.forName(UTF8))), os, batchOptions);
+        return os.toByteArray();
+    }
+
+    /**
+     * Batch replies come back to a temporary queue kept with the session, like
+     * the reply producer
+     */
+    private CachedConsumer batchRepliesFor(final Session session) throws JMSException {
+        final CachedConsumer cached = this.batchReplies.get();
+        if (cached != null) {
+            if (cached.session == session) {
+                return cached;
+            }
+            cached.close();
+        }
+
+        final TemporaryQueue queue = session.createTemporaryQueue();
+        final CachedConsumer created = new CachedConsumer(session, queue, session.createConsumer(queue));
+        this.batchReplies.set(created);
+        return created;
+    }
+
+    /**
+     * Carries a failed JMS operation out through the parser
+     */
+    private static class ReplyException extends IOException {
+        private static final long serialVersionUID = 1L;
 
-            stopWatch.stop();
-            logger.info("Parsing document ID: " + documentId + " took " + stopWatch.getTotalTimeSeconds() + " seconds");
+        private ReplyException(final JMSException cause) {
+            super(cause.getMessage());
+            initCause(cause);
+        }
 
-            return result;
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+        private JMSException getJMSException() {
+            return (JMSException) getCause();
         }
+    }
 
+    private static class CachedConsumer {
+        private final Session session;
+        private final TemporaryQueue queue;
+        private final MessageConsumer consumer;
+
+        private CachedConsumer(final Session session, final TemporaryQueue queue, final MessageConsumer consumer) {
+            this.session = session;
+            this.queue = queue;
+            this.consumer = consumer;
+        }
+
+        private void close() {
+            try {
+                this.consumer.close();
+                this.queue.delete();
+            } catch (final JMSException e) {
+                logger.fine("Failed to close batch reply queue: " + e.getMessage());
+            }
+        }
+    }
+
+    private static class CachedProducer {
+        private final Session session;
+        private final MessageProducer producer;
+
+        private CachedProducer(final Session session, final MessageProducer producer) {
+            this.session = session;
+            this.producer = producer;
+        }
     }
 }
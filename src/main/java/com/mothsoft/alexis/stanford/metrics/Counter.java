@@ -0,0 +1,43 @@
+/*
+    stanford-nlp-war : provides REST, JMS, and HTML form connectivity to Stanford CoreNLP
+    Copyright (C) 2012  Tim Garrett, Mothsoft LLC
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License along
+    with this program; if not, write to the Free Software Foundation, Inc.,
+    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package com.mothsoft.alexis.stanford.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+public class Counter implements CounterMBean {
+
+    private final AtomicLong count = new AtomicLong();
+
+    Counter() {
+        super();
+    }
+
+    public void increment() {
+        this.count.incrementAndGet();
+    }
+
+    public void add(final long delta) {
+        this.count.addAndGet(delta);
+    }
+
+    public long getCount() {
+        return this.count.get();
+    }
+
+}
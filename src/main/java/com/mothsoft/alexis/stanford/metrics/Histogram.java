@@ -0,0 +1,133 @@
+/*
+    stanford-nlp-war : provides REST, JMS, and HTML form connectivity to Stanford CoreNLP
+    Copyright (C) 2012  Tim Garrett, Mothsoft LLC
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License along
+    with this program; if not, write to the Free Software Foundation, Inc.,
+    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package com.mothsoft.alexis.stanford.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of non-negative values (latencies in microseconds, or
+ * plain sizes). Values below 16 are counted exactly; above that each power of
+ * two is split into 8 buckets, so percentiles are within about 12% of the true
+ * value while the whole histogram stays under 4 KB.
+ */
+public class Histogram implements HistogramMBean {
+
+    private static final int LINEAR_BUCKETS = 16;
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int LINEAR_BITS = 4;
+    private static final int BUCKETS = LINEAR_BUCKETS + (64 - LINEAR_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    Histogram() {
+        super();
+    }
+
+    public void update(final long value) {
+        final long v = Math.max(0, value);
+        this.buckets.incrementAndGet(indexOf(v));
+        this.count.incrementAndGet();
+        this.sum.addAndGet(v);
+
+        long current = this.max.get();
+        while (v > current && !this.max.compareAndSet(current, v)) {
+            current = this.max.get();
+        }
+    }
+
+    /**
+     * Record the time elapsed since <code>startNanos</code> in microseconds.
+     */
+    public void updateSince(final long startNanos) {
+        update((System.nanoTime() - startNanos) / 1000L);
+    }
+
+    static int indexOf(final long value) {
+        if (value < LINEAR_BUCKETS) {
+            return (int) value;
+        }
+        final int exponent = 63 - Long.numberOfLeadingZeros(value);
+        final int sub = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return LINEAR_BUCKETS + (exponent - LINEAR_BITS) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * @return the smallest value that falls into the bucket
+     */
+    static long lowerBoundOf(final int index) {
+        if (index < LINEAR_BUCKETS) {
+            return index;
+        }
+        final int exponent = (index - LINEAR_BUCKETS) / SUB_BUCKETS + LINEAR_BITS;
+        final long sub = (index - LINEAR_BUCKETS) % SUB_BUCKETS;
+        return (1L << exponent) + (sub << (exponent - SUB_BUCKET_BITS));
+    }
+
+    public long getCount() {
+        return this.count.get();
+    }
+
+    public long getSum() {
+        return this.sum.get();
+    }
+
+    public double getMean() {
+        final long n = this.count.get();
+        return n == 0 ? 0.0 : (double) this.sum.get() / n;
+    }
+
+    public long getMax() {
+        return this.max.get();
+    }
+
+    public long get50thPercentile() {
+        return getPercentile(0.50);
+    }
+
+    public long get95thPercentile() {
+        return getPercentile(0.95);
+    }
+
+    public long get99thPercentile() {
+        return getPercentile(0.99);
+    }
+
+    public long getPercentile(final double quantile) {
+        final long n = this.count.get();
+        if (n == 0) {
+            return 0;
+        }
+
+        final long rank = (long) Math.ceil(quantile * n);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += this.buckets.get(i);
+            if (seen >= rank) {
+                return Math.min(lowerBoundOf(i), this.max.get());
+            }
+        }
+        return this.max.get();
+    }
+
+}
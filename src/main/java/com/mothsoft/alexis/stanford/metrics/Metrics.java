@@ -0,0 +1,141 @@
+/*
+    stanford-nlp-war : provides REST, JMS, and HTML form connectivity to Stanford CoreNLP
+    Copyright (C) 2012  Tim Garrett, Mothsoft LLC
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License along
+    with this program; if not, write to the Free Software Foundation, Inc.,
+    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package com.mothsoft.alexis.stanford.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Logger;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Process-wide registry of named histograms, counters and gauges. Each metric
+ * is also registered as an MBean under
+ * <code>com.mothsoft.alexis.stanford:type=...,name=...</code>.
+ */
+public class Metrics {
+
+    private static final Logger logger = Logger.getLogger(Metrics.class.getName());
+
+    private static final String DOMAIN = "com.mothsoft.alexis.stanford";
+
+    private static final ConcurrentMap<String, Histogram> HISTOGRAMS = new ConcurrentHashMap<String, Histogram>();
+    private static final ConcurrentMap<String, Counter> COUNTERS = new ConcurrentHashMap<String, Counter>();
+    private static final ConcurrentMap<String, Gauge> GAUGES = new ConcurrentHashMap<String, Gauge>();
+
+    private Metrics() {
+        super();
+    }
+
+    public static Histogram histogram(final String name) {
+        Histogram histogram = HISTOGRAMS.get(name);
+        if (histogram == null) {
+            final Histogram created = new Histogram();
+            histogram = HISTOGRAMS.putIfAbsent(name, created);
+            if (histogram == null) {
+                histogram = created;
+                register("Histogram", name, created);
+            }
+        }
+        return histogram;
+    }
+
+    public static Counter counter(final String name) {
+        Counter counter = COUNTERS.get(name);
+        if (counter == null) {
+            final Counter created = new Counter();
+            counter = COUNTERS.putIfAbsent(name, created);
+            if (counter == null) {
+                counter = created;
+                register("Counter", name, created);
+            }
+        }
+        return counter;
+    }
+
+    public static void gauge(final String name, final Gauge gauge) {
+        if (GAUGES.put(name, gauge) != null) {
+            unregister("Gauge", name);
+        }
+        register("Gauge", name, gauge);
+    }
+
+    public static Map<String, Histogram> getHistograms() {
+        return new TreeMap<String, Histogram>(HISTOGRAMS);
+    }
+
+    public static Map<String, Counter> getCounters() {
+        return new TreeMap<String, Counter>(COUNTERS);
+    }
+
+    public static Map<String, Gauge> getGauges() {
+        return new TreeMap<String, Gauge>(GAUGES);
+    }
+
+    /**
+     * Remove every MBean registered by this class, so an undeployed webapp
+     * doesn't leave its classloader pinned by the platform MBean server.
+     */
+    public static void unregisterAll() {
+        for (final String name : HISTOGRAMS.keySet()) {
+            unregister("Histogram", name);
+        }
+        for (final String name : COUNTERS.keySet()) {
+            unregister("Counter", name);
+        }
+        for (final String name : GAUGES.keySet()) {
+            unregister("Gauge", name);
+        }
+    }
+
+    private static void register(final String type, final String name, final Object mbean) {
+        try {
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            final ObjectName objectName = objectName(type, name);
+            if (server.isRegistered(objectName)) {
+                // left over from a previous deployment
+                server.unregisterMBean(objectName);
+            }
+            server.registerMBean(mbean, objectName);
+        } catch (Exception e) {
+            logger.warning("Unable to register MBean for " + name + ": " + e.getMessage());
+        }
+    }
+
+    private static void unregister(final String type, final String name) {
+        try {
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            final ObjectName objectName = objectName(type, name);
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+        } catch (Exception e) {
+            logger.warning("Unable to unregister MBean for " + name + ": " + e.getMessage());
+        }
+    }
+
+    private static ObjectName objectName(final String type, final String name) throws Exception {
+        return new ObjectName(DOMAIN + ":type=" + type + ",name=" + ObjectName.quote(name));
+    }
+
+}
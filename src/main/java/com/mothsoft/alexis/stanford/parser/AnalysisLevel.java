@@ -0,0 +1,51 @@
+/*
+    stanford-nlp-war : provides REST, JMS, and HTML form connectivity to Stanford CoreNLP
+    Copyright (C) 2012  Tim Garrett, Mothsoft LLC
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License along
+    with this program; if not, write to the Free Software Foundation, Inc.,
+    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package com.mothsoft.alexis.stanford.parser;
+
+/**
+ * How much of each sentence is analyzed. Named entities are always found;
+ * only FULL runs the PCFG parser, by far the most expensive stage.
+ */
+public enum AnalysisLevel {
+
+    /** named entities only; the document has no sentences */
+    NAMES,
+
+    /** words and POS tags from the tagger, and named entities */
+    TAGS,
+
+    /** words, tags and typed dependencies from the parser, and named entities */
+    FULL;
+
+    /**
+     * @return the level with this name (case-insensitive), or FULL if there is
+     *         none
+     */
+    public static AnalysisLevel forName(final String name) {
+        if (name != null) {
+            for (final AnalysisLevel level : values()) {
+                if (level.name().equalsIgnoreCase(name.trim())) {
+                    return level;
+                }
+            }
+        }
+        return FULL;
+    }
+
+}
@@ -0,0 +1,113 @@
+/*
+    stanford-nlp-war : provides REST, JMS, and HTML form connectivity to Stanford CoreNLP
+    Copyright (C) 2012  Tim Garrett, Mothsoft LLC
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License along
+    with this program; if not, write to the Free Software Foundation, Inc.,
+    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package com.mothsoft.alexis.stanford.parser;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * A compact, length-prefixed binary document, big-endian, with strings in
+ * <code>DataOutput.writeUTF</code> form (a two byte length, then modified
+ * UTF-8):
+ * 
+ * <pre>
+ * int     MAGIC ("ALXP"), byte VERSION
+ * then for each sentence:
+ *   byte  SENTENCE, byte flags (DEGRADED, UNPARSED)
+ *   short words, then for each: utf word, utf tag ("" if unparsed)
+ *   short dependencies, then for each: utf relation, short governor, short dependent
+ * byte    NAMES, int names, then for each: utf name, int count
+ * byte    END
+ * </pre>
+ * 
+ * Words are numbered from 1; a governor of 0 is the root.
+ */
+class BinaryDocumentWriter extends DocumentWriter {
+
+    static final int MAGIC = 0x414C5850;
+    static final byte VERSION = 1;
+
+    static final byte END = 0;
+    static final byte SENTENCE = 1;
+    static final byte NAMES = 2;
+
+    static final byte DEGRADED = 1;
+    static final byte UNPARSED = 2;
+
+    private final DataOutputStream out;
+    private final ByteArrayOutputStream nameBuffer = new ByteArrayOutputStream();
+    private final DataOutputStream nameOut = new DataOutputStream(this.nameBuffer);
+    private int names;
+
+    BinaryDocumentWriter(final OutputStream os) {
+        this.out = new DataOutputStream(new BufferedOutputStream(os));
+    }
+
+    void startDocument() throws IOException {
+        this.out.writeInt(MAGIC);
+        this.out.writeByte(VERSION);
+    }
+
+    void writeSentence(final SentenceResult result) throws IOException {
+        final SentenceGraph graph = result.getGraph();
+        final boolean unparsed = graph.getWordCount() > 0 && graph.getTag(0) == null;
+
+        this.out.writeByte(SENTENCE);
+        this.out.writeByte((result.isDegraded() ? DEGRADED : 0) | (unparsed ? UNPARSED : 0));
+
+        this.out.writeShort(graph.getWordCount());
+        for (int i = 0; i < graph.getWordCount(); i++) {
+            this.out.writeUTF(graph.getWord(i));
+            this.out.writeUTF(unparsed ? "" : graph.getTag(i));
+        }
+
+        this.out.writeShort(graph.getDependencyCount());
+        for (int i = 0; i < graph.getDependencyCount(); i++) {
+            this.out.writeUTF(graph.getRelation(i));
+            this.out.writeShort(graph.getGovernor(i));
+            this.out.writeShort(graph.getDependent(i));
+        }
+    }
+
+    void endSentences() throws IOException {
+        this.out.writeByte(NAMES);
+    }
+
+    void writeName(final String name, final int count) throws IOException {
+        // the count of names comes first, so they are collected until the end
+        this.nameOut.writeUTF(name);
+        this.nameOut.writeInt(count);
+        this.names++;
+    }
+
+    void endDocument() throws IOException {
+        this.out.writeInt(this.names);
+        this.nameBuffer.writeTo(this.out);
+        this.out.writeByte(END);
+        this.out.flush();
+    }
+
+    void flush() throws IOException {
+        this.out.flush();
+    }
+
+}
@@ -0,0 +1,167 @@
+/*
+    stanford-nlp-war : provides REST, JMS, and HTML form connectivity to Stanford CoreNLP
+    Copyright (C) 2012  Tim Garrett, Mothsoft LLC
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License along
+    with this program; if not, write to the Free Software Foundation, Inc.,
+    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package com.mothsoft.alexis.stanford.parser;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Keeps the PCFG charts of concurrent parses inside a fixed share of the heap.
+ * <p>
+ * A sentence of <code>n</code> tokens is parsed with a boundary word added, and
+ * <code>ExhaustivePCFGParser</code> sizes its arrays one longer again, so
+ * <code>L = n + 2</code>. It allocates a float inside score per state for each
+ * of the <code>L(L+1)/2</code> spans, and four int extents per state for each
+ * of <code>L+1</code> positions. Only with the dependency grammar, which
+ * englishPCFG does not use, are outside scores (another float per state and
+ * span) and four boolean arrays (a byte per state and position) added.
+ * <p>
+ * Every worker keeps the chart of its longest sentence up to
+ * {@link SentenceWorker#RETAINED_CHART_TOKENS} tokens; those are charged as
+ * they grow. A longer sentence must reserve its whole chart before it is
+ * parsed, and the worker drops that chart afterwards. The pool is capped so
+ * that every worker's retained chart and one longer sentence fit; a sentence
+ * whose chart could never fit beside the retained charts is not parsed at all.
+ */
+final class ChartMemory {
+
+    private static final Logger logger = Logger.getLogger(ChartMemory.class.getName());
+
+    private static final long SCORE_BYTES = 4L;
+    private static final long EXTENT_BYTES = 4L * 4;
+    private static final long OUTSIDE_EXTENT_BYTES = 4L;
+
+    private final long states;
+    private final long spanBytes;
+    private final long positionBytes;
+    private final long budget;
+    private final int workers;
+    private final long available;
+    private final AtomicLong retained = new AtomicLong();
+    private long reserved;
+
+    /**
+     * @param budgetBytes
+     *            - heap all parser charts together may use
+     * @param states
+     *            - grammar states of the PCFG
+     * @param outsideScores
+     *            - whether the parser also keeps outside scores
+     * @param workers
+     *            - sentence workers wanted, each retaining a chart
+     * @throws IllegalStateException
+     *             if the budget cannot cover even one worker
+     */
+    ChartMemory(final long budgetBytes, final int states, final boolean outsideScores, final int workers) {
+        this.states = states;
+        this.spanBytes = outsideScores ? 2 * SCORE_BYTES : SCORE_BYTES;
+        this.positionBytes = outsideScores ? EXTENT_BYTES + OUTSIDE_EXTENT_BYTES : EXTENT_BYTES;
+        this.budget = budgetBytes;
+
+        final long perWorker = bytesFor(SentenceWorker.RETAINED_CHART_TOKENS);
+        final long longest = Math.max(0L, budgetBytes - bytesFor(SentenceWorker.RETAINED_CHART_TOKENS + 1));
+        final long fitting = longest / perWorker;
+        if (workers > 0 && fitting < 1) {
+            throw new IllegalStateException("Chart memory budget of " + budgetBytes / (1024 * 1024)
+                    + "MB cannot hold one worker's chart and a sentence longer than "
+                    + SentenceWorker.RETAINED_CHART_TOKENS + " tokens");
+        }
+        this.workers = (int) Math.min(workers, fitting);
+        if (this.workers < workers) {
+            logger.warning("Chart memory budget of " + budgetBytes / (1024 * 1024) + "MB only covers "
+                    + this.workers + " of " + workers + " sentence workers");
+        }
+        this.available = budgetBytes - this.workers * perWorker;
+    }
+
+    long bytesFor(final int tokens) {
+        final long length = tokens + 2;
+        final long spans = length * (length + 1) / 2;
+        return this.states * (this.spanBytes * spans + this.positionBytes * (length + 1));
+    }
+
+    /**
+     * @return sentence workers the budget covers, at most as many as wanted
+     */
+    int getWorkers() {
+        return this.workers;
+    }
+
+    /**
+     * @return bytes a sentence must reserve before it is parsed; 0 if its
+     *         chart fits in what its worker already retains
+     */
+    long reservationFor(final int tokens) {
+        return tokens > SentenceWorker.RETAINED_CHART_TOKENS ? bytesFor(tokens) : 0L;
+    }
+
+    /**
+     * @return false if the chart could not fit even with every worker's
+     *         retained chart at full size
+     */
+    boolean fits(final long bytes) {
+        return bytes <= this.available;
+    }
+
+    /**
+     * A worker's retained chart grew from the longest sentence it had parsed
+     * to a longer one, or was dropped; 0 tokens is no chart
+     */
+    void retain(final int fromTokens, final int toTokens) {
+        this.retained.addAndGet(retainedBytes(toTokens) - retainedBytes(fromTokens));
+    }
+
+    /**
+     * Called with the scheduler's lock held
+     */
+    boolean tryReserve(final long bytes) {
+        if (bytes == 0L) {
+            return true;
+        }
+        if (this.reserved + bytes + this.retained.get() > this.budget) {
+            return false;
+        }
+        this.reserved += bytes;
+        return true;
+    }
+
+    /**
+     * Called with the scheduler's lock held
+     */
+    void release(final long bytes) {
+        this.reserved -= bytes;
+    }
+
+    long getAvailable() {
+        return this.available;
+    }
+
+    long getReserved() {
+        return this.reserved;
+    }
+
+    long getRetained() {
+        return this.retained.get();
+    }
+
+    private long retainedBytes(final int tokens) {
+        return tokens == 0 ? 0L : bytesFor(tokens);
+    }
+
+}
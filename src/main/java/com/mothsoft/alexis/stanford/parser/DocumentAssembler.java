@@ -0,0 +1,80 @@
+/*
+    stanford-nlp-war : provides REST, JMS, and HTML form connectivity to Stanford CoreNLP
+    Copyright (C) 2012  Tim Garrett, Mothsoft LLC
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License along
+    with this program; if not, write to the Free Software Foundation, Inc.,
+    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package com.mothsoft.alexis.stanford.parser;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes a document from fragments parsed separately (see
+ * {@link ParseOptions#setFragment(boolean)}), exactly as the parser would have
+ * written it in one go: the sentences in order, then the names counted across
+ * every fragment. Output is flushed after each sentence.
+ */
+public class DocumentAssembler {
+
+    private final ParseOptions options;
+    private final DocumentWriter writer;
+    private final EntityIndex entityIndex;
+    private final DocumentNames names = new DocumentNames();
+
+    /**
+     * @param options
+     *            - the options the fragments were parsed with
+     * @param entityIndex
+     *            - collects the document's names, or null
+     */
+    public DocumentAssembler(final OutputStream os, final ParseOptions options, final EntityIndex entityIndex) {
+        this.options = options;
+        this.writer = DocumentWriter.create(options.getFormat(), os);
+        this.entityIndex = entityIndex;
+    }
+
+    public void startDocument() throws IOException {
+        this.writer.startDocument();
+    }
+
+    /**
+     * @param fragment
+     *            - the next batch of sentences
+     */
+    public void addFragment(final byte[] fragment) throws IOException {
+        for (final SentenceResult result : FragmentDocumentWriter.read(fragment)) {
+            if (this.options.getLevel() != AnalysisLevel.NAMES) {
+                this.writer.writeSentence(result);
+            }
+            if (result.isDegraded()) {
+                this.options.setDegraded();
+            }
+            this.names.add(result.getNames());
+            this.writer.flush();
+        }
+    }
+
+    public void endDocument() throws IOException {
+        this.writer.endSentences();
+        this.names.write(this.writer);
+        this.writer.endDocument();
+
+        if (this.entityIndex != null && this.options.isIndexEntities()) {
+            this.names.index(this.entityIndex);
+        }
+    }
+
+}
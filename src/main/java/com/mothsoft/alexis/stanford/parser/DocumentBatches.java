@@ -0,0 +1,72 @@
+/*
+    stanford-nlp-war : provides REST, JMS, and HTML form connectivity to Stanford CoreNLP
+    Copyright (C) 2012  Tim Garrett, Mothsoft LLC
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License along
+    with this program; if not, write to the Free Software Foundation, Inc.,
+    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package com.mothsoft.alexis.stanford.parser;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.stanford.nlp.ling.HasOffset;
+import edu.stanford.nlp.ling.HasWord;
+import edu.stanford.nlp.process.Tokenizer;
+
+/**
+ * Cuts the text of a document into batches of whole sentences, split the way
+ * the parser splits them, so each batch can be parsed on its own.
+ */
+public final class DocumentBatches {
+
+    private DocumentBatches() {
+        super();
+    }
+
+    /**
+     * @return the text in batches of <code>sentencesPerBatch</code> sentences
+     *         (the last may have fewer); together they are the whole text
+     */
+    public static List<String> split(final String text, final int sentencesPerBatch) {
+        final List<String> batches = new ArrayList<String>();
+        final SentenceSegmenter segmenter = ParserFactory.getSegmenter();
+        final Tokenizer<HasWord> tokenizer = ParserImpl.tokenizer(new StringReader(text));
+
+        final List<HasWord> sentence = new ArrayList<HasWord>();
+        int sentences = 0;
+        int start = 0;
+        while (tokenizer.hasNext()) {
+            final HasWord word = tokenizer.next();
+            if (!sentence.isEmpty() && segmenter.endsBefore(sentence, word)) {
+                sentence.clear();
+                if (++sentences % sentencesPerBatch == 0) {
+                    // cut before this word, keeping any space ahead of it
+                    // with the batch before
+                    final int end = ((HasOffset) word).beginPosition();
+                    batches.add(text.substring(start, end));
+                    start = end;
+                }
+            }
+            sentence.add(word);
+        }
+
+        if (start < text.length() || batches.isEmpty()) {
+            batches.add(text.substring(start));
+        }
+        return batches;
+    }
+
+}
@@ -0,0 +1,74 @@
+/*
+    stanford-nlp-war : provides REST, JMS, and HTML form connectivity to Stanford CoreNLP
+    Copyright (C) 2012  Tim Garrett, Mothsoft LLC
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License along
+    with this program; if not, write to the Free Software Foundation, Inc.,
+    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package com.mothsoft.alexis.stanford.parser;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The names of one document, in order of first appearance, with how often
+ * each occurs.
+ */
+final class DocumentNames {
+
+    private final Map<String, Name> names = new LinkedHashMap<String, Name>();
+
+    void add(final List<NamedEntity> entities) {
+        for (final NamedEntity entity : entities) {
+            Name name = this.names.get(entity.getName());
+            if (name == null) {
+                name = new Name(entity);
+                this.names.put(entity.getName(), name);
+            }
+            name.count++;
+        }
+    }
+
+    void write(final DocumentWriter writer) throws IOException {
+        for (final Name name : this.names.values()) {
+            writer.writeName(name.entity.getName(), name.count);
+        }
+    }
+
+    void index(final EntityIndex entityIndex) {
+        final List<NamedEntity> entities = new ArrayList<NamedEntity>(this.names.size());
+        final int[] counts = new int[this.names.size()];
+        for (final Name name : this.names.values()) {
+            counts[entities.size()] = name.count;
+            entities.add(name.entity);
+        }
+        entityIndex.addDocument(entities, counts);
+    }
+
+    /**
+     * A name, as first seen in the document, and how often it occurs
+     */
+    private static final class Name {
+        private final NamedEntity entity;
+        private int count;
+
+        Name(final NamedEntity entity) {
+            this.entity = entity;
+        }
+    }
+
+}
@@ -0,0 +1,95 @@
+/*
+    stanford-nlp-war : provides REST, JMS, and HTML form connectivity to Stanford CoreNLP
+    Copyright (C) 2012  Tim Garrett, Mothsoft LLC
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License along
+    with this program; if not, write to the Free Software Foundation, Inc.,
+    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package com.mothsoft.alexis.stanford.parser;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.stanford.nlp.ling.HasWord;
+
+/**
+ * Per-sentence timings of one document, collected by the parser when the
+ * document's {@link ParseOptions} carry a profile. Sentences are numbered in
+ * document order as they are submitted and timed as they finish, which with
+ * parallel sentences may be in any order.
+ */
+final class DocumentProfile {
+
+    private final List<Sentence> sentences = new ArrayList<Sentence>();
+
+    /**
+     * @return the sentence's number, for {@link #time(int, long, boolean)}
+     */
+    synchronized int add(final List<HasWord> sentence) {
+        final StringBuilder text = new StringBuilder();
+        for (final HasWord word : sentence) {
+            if (text.length() > 0) {
+                text.append(' ');
+            }
+            text.append(word.word());
+        }
+        this.sentences.add(new Sentence(sentence.size(), text.toString()));
+        return this.sentences.size() - 1;
+    }
+
+    /**
+     * @param micros
+     *            - from the start of the sentence's parse to its result,
+     *            including any wait for a worker
+     */
+    synchronized void time(final int index, final long micros, final boolean degraded) {
+        final Sentence sentence = this.sentences.get(index);
+        sentence.micros = micros;
+        sentence.degraded = degraded;
+    }
+
+    synchronized int size() {
+        return this.sentences.size();
+    }
+
+    synchronized int getTokens(final int index) {
+        return this.sentences.get(index).tokens;
+    }
+
+    synchronized long getMicros(final int index) {
+        return this.sentences.get(index).micros;
+    }
+
+    synchronized boolean isDegraded(final int index) {
+        return this.sentences.get(index).degraded;
+    }
+
+    synchronized String getText(final int index) {
+        return this.sentences.get(index).text;
+    }
+
+    private static final class Sentence {
+
+        private final int tokens;
+        private final String text;
+        private long micros = -1L;
+        private boolean degraded;
+
+        private Sentence(final int tokens, final String text) {
+            this.tokens = tokens;
+            this.text = text;
+        }
+    }
+
+}
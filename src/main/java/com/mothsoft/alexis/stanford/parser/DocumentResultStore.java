@@ -0,0 +1,284 @@
+/*
+    stanford-nlp-war : provides REST, JMS, and HTML form connectivity to Stanford CoreNLP
+    Copyright (C) 2012  Tim Garrett, Mothsoft LLC
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License along
+    with this program; if not, write to the Free Software Foundation, Inc.,
+    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package com.mothsoft.alexis.stanford.parser;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Finished documents keyed by a hash of their content. Results are held in a
+ * byte-bounded LRU in memory and, if a directory is configured, also written
+ * gzipped to local disk so they survive a redeploy.
+ */
+public class DocumentResultStore {
+
+    private static final Logger logger = Logger.getLogger(DocumentResultStore.class.getName());
+
+    private static final String DIGEST = "SHA-256";
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final String FILE_SUFFIX = ".xml.gz";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    /** a little under the largest array the JVM allocates */
+    private static final int MAX_ENTRY_BYTES = Integer.MAX_VALUE - 8;
+
+    private final long maxMemoryBytes;
+    private final File directory;
+    private final long maxDiskBytes;
+
+    private final LinkedHashMap<String, byte[]> memory = new LinkedHashMap<String, byte[]>(16, 0.75f, true);
+    private long memoryBytes;
+    private final AtomicLong diskBytes = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param maxMemoryBytes
+     *            - upper bound on the size of results held in memory
+     * @param directory
+     *            - local directory for the disk tier, or null for memory only
+     * @param maxDiskBytes
+     *            - upper bound on the (compressed) size of the disk tier
+     */
+    public DocumentResultStore(final long maxMemoryBytes, final File directory, final long maxDiskBytes) {
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.directory = directory;
+        this.maxDiskBytes = maxDiskBytes;
+
+        if (directory != null) {
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IllegalArgumentException("Unable to create result store directory: " + directory);
+            }
+
+            for (final File file : listResults()) {
+                this.diskBytes.addAndGet(file.length());
+            }
+            logger.info("Result store directory " + directory + " holds " + this.diskBytes.get() + " bytes");
+        }
+    }
+
+    static String keyOf(final byte[] content) {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(DIGEST);
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+
+        final byte[] hash = digest.digest(content);
+        final char[] key = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; i++) {
+            key[2 * i] = HEX[(hash[i] >> 4) & 0xf];
+            key[2 * i + 1] = HEX[hash[i] & 0xf];
+        }
+        return new String(key);
+    }
+
+    byte[] get(final String key) {
+        synchronized (this.memory) {
+            final byte[] result = this.memory.get(key);
+            if (result != null) {
+                this.hits.incrementAndGet();
+                return result;
+            }
+        }
+
+        if (this.directory != null) {
+            final byte[] result = readFromDisk(key);
+            if (result != null) {
+                this.diskHits.incrementAndGet();
+                putInMemory(key, result);
+                return result;
+            }
+        }
+
+        this.misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * @return size of the largest result the store keeps
+     */
+    int getMaxEntryBytes() {
+        final long max = this.directory == null ? this.maxMemoryBytes : Math.max(this.maxMemoryBytes,
+                this.maxDiskBytes);
+        return (int) Math.min(max, MAX_ENTRY_BYTES);
+    }
+
+    void put(final String key, final byte[] result) {
+        if (result.length > getMaxEntryBytes()) {
+            return;
+        }
+        putInMemory(key, result);
+
+        if (this.directory != null) {
+            writeToDisk(key, result);
+        }
+    }
+
+    private void putInMemory(final String key, final byte[] result) {
+        if (result.length > this.maxMemoryBytes) {
+            return;
+        }
+
+        synchronized (this.memory) {
+            final byte[] previous = this.memory.put(key, result);
+            if (previous != null) {
+                this.memoryBytes -= previous.length;
+            }
+            this.memoryBytes += result.length;
+
+            final Iterator<Map.Entry<String, byte[]>> it = this.memory.entrySet().iterator();
+            while (this.memoryBytes > this.maxMemoryBytes && it.hasNext()) {
+                this.memoryBytes -= it.next().getValue().length;
+                it.remove();
+            }
+        }
+    }
+
+    private byte[] readFromDisk(final String key) {
+        final File file = new File(this.directory, key + FILE_SUFFIX);
+        if (!file.isFile()) {
+            return null;
+        }
+
+        InputStream is = null;
+        try {
+            is = new GZIPInputStream(new BufferedInputStream(new FileInputStream(file)));
+            return IOUtils.toByteArray(is);
+        } catch (IOException e) {
+            logger.warning("Discarding unreadable stored result " + file + ": " + e.getMessage());
+            FileUtils.deleteQuietly(file);
+            return null;
+        } finally {
+            IOUtils.closeQuietly(is);
+        }
+    }
+
+    private void writeToDisk(final String key, final byte[] result) {
+        final File file = new File(this.directory, key + FILE_SUFFIX);
+        if (file.exists()) {
+            return;
+        }
+
+        // write aside and rename so a reader never sees a partial result
+        final File temp = new File(this.directory, key + "-" + Thread.currentThread().getId() + TEMP_SUFFIX);
+        OutputStream os = null;
+        try {
+            os = new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+            os.write(result);
+            os.close();
+            os = null;
+
+            if (temp.renameTo(file)) {
+                if (this.diskBytes.addAndGet(file.length()) > this.maxDiskBytes) {
+                    trimDisk();
+                }
+            } else {
+                FileUtils.deleteQuietly(temp);
+            }
+        } catch (IOException e) {
+            logger.warning("Unable to store result " + file + ": " + e.getMessage());
+            FileUtils.deleteQuietly(temp);
+        } finally {
+            IOUtils.closeQuietly(os);
+        }
+    }
+
+    /**
+     * Delete the oldest results until the disk tier is back to 3/4 of its
+     * limit, so the directory isn't rescanned on every write.
+     */
+    private synchronized void trimDisk() {
+        if (this.diskBytes.get() <= this.maxDiskBytes) {
+            return;
+        }
+
+        final File[] files = listResults();
+        Arrays.sort(files, new Comparator<File>() {
+            public int compare(final File a, final File b) {
+                final long diff = a.lastModified() - b.lastModified();
+                return diff < 0 ? -1 : (diff > 0 ? 1 : 0);
+            }
+        });
+
+        final long target = this.maxDiskBytes / 4 * 3;
+        for (int i = 0; i < files.length && this.diskBytes.get() > target; i++) {
+            final long length = files[i].length();
+            if (files[i].delete()) {
+                this.diskBytes.addAndGet(-length);
+            }
+        }
+    }
+
+    private File[] listResults() {
+        final File[] files = this.directory.listFiles(new FilenameFilter() {
+            public boolean accept(final File dir, final String name) {
+                return name.endsWith(FILE_SUFFIX);
+            }
+        });
+        return files == null ? new File[0] : files;
+    }
+
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    public long getDiskHits() {
+        return this.diskHits.get();
+    }
+
+    public long getMisses() {
+        return this.misses.get();
+    }
+
+    public long getMemoryBytes() {
+        synchronized (this.memory) {
+            return this.memoryBytes;
+        }
+    }
+
+    public long getDiskBytes() {
+        return this.diskBytes.get();
+    }
+
+}
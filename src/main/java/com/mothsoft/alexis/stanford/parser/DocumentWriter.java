@@ -0,0 +1,56 @@
+/*
+    stanford-nlp-war : provides REST, JMS, and HTML form connectivity to Stanford CoreNLP
+    Copyright (C) 2012  Tim Garrett, Mothsoft LLC
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License along
+    with this program; if not, write to the Free Software Foundation, Inc.,
+    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package com.mothsoft.alexis.stanford.parser;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes a parsed document in one {@link OutputFormat}: the sentences as they
+ * complete, then the named entities with their counts.
+ */
+abstract class DocumentWriter {
+
+    static DocumentWriter create(final OutputFormat format, final OutputStream os) {
+        switch (format) {
+            case JSON:
+                return new JsonDocumentWriter(os);
+            case BINARY:
+                return new BinaryDocumentWriter(os);
+            default:
+                return new XmlDocumentWriter(os);
+        }
+    }
+
+    abstract void startDocument() throws IOException;
+
+    abstract void writeSentence(SentenceResult result) throws IOException;
+
+    abstract void endSentences() throws IOException;
+
+    abstract void writeName(String name, int count) throws IOException;
+
+    abstract void endDocument() throws IOException;
+
+    /**
+     * Push what has been written so far through to the client
+     */
+    abstract void flush() throws IOException;
+
+}
@@ -0,0 +1,417 @@
+/*
+    stanford-nlp-war : provides REST, JMS, and HTML form connectivity to Stanford CoreNLP
+    Copyright (C) 2012  Tim Garrett, Mothsoft LLC
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License along
+    with this program; if not, write to the Free Software Foundation, Inc.,
+    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package com.mothsoft.alexis.stanford.parser;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+/**
+ * How often each named entity has been seen across all parsed documents, by
+ * entity type: the total of its per-document counts and the number of
+ * documents it appeared in. Each type is an open-addressing table of names
+ * with parallel primitive counters, holding up to a fixed number of names;
+ * when a table is full its rarest names are dropped until it is half full, so
+ * the index favours frequent names and a name that was dropped and seen again
+ * starts counting from zero. If a file
+ * is configured the index is loaded from it and {@link #snapshot()} writes it
+ * back.
+ */
+public class EntityIndex {
+
+    private static final Logger logger = Logger.getLogger(EntityIndex.class.getName());
+
+    private static final int MAGIC = 0x414C5845;
+    private static final byte VERSION = 1;
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private static final Comparator<Entry> BY_OCCURRENCES = new Comparator<Entry>() {
+        public int compare(final Entry a, final Entry b) {
+            return a.occurrences < b.occurrences ? -1 : (a.occurrences > b.occurrences ? 1 : 0);
+        }
+    };
+
+    private final int maxNames;
+    private final File file;
+
+    private final Map<String, Table> tables = new TreeMap<String, Table>();
+    private long documents;
+    private long pruned;
+    private long changes;
+    private long snapshotChanges;
+
+    /**
+     * @param maxNames
+     *            - names kept per entity type
+     * @param file
+     *            - where snapshots are kept, or null for memory only
+     */
+    public EntityIndex(final int maxNames, final File file) {
+        this.maxNames = Math.max(1, maxNames);
+        this.file = file;
+
+        if (file != null && file.isFile()) {
+            try {
+                load();
+                logger.info("Entity index loaded " + getNames() + " names from " + file);
+            } catch (IOException e) {
+                logger.warning("Starting with an empty entity index, unable to read " + file + ": " + e.getMessage());
+                this.tables.clear();
+                this.documents = 0;
+            }
+        }
+    }
+
+    /**
+     * Count one document's names
+     */
+    synchronized void addDocument(final List<NamedEntity> names, final int[] counts) {
+        for (int i = 0; i < names.size(); i++) {
+            final NamedEntity entity = names.get(i);
+            table(entity.getType()).add(entity.getName(), counts[i], 1);
+        }
+        this.documents++;
+        this.changes++;
+    }
+
+    private Table table(final String type) {
+        Table table = this.tables.get(type);
+        if (table == null) {
+            table = new Table(type);
+            this.tables.put(type, table);
+        }
+        return table;
+    }
+
+    /**
+     * @param type
+     *            - entity type, or null for all types
+     * @return up to <code>limit</code> names, most frequent first
+     */
+    public synchronized List<Entry> top(final String type, final int limit) {
+        final PriorityQueue<Entry> top = new PriorityQueue<Entry>(Math.max(1, limit), BY_OCCURRENCES);
+        for (final Table table : this.tables.values()) {
+            if (type == null || table.type.equals(type)) {
+                table.top(limit, top);
+            }
+        }
+
+        final List<Entry> entries = new ArrayList<Entry>(top);
+        Collections.sort(entries, Collections.reverseOrder(BY_OCCURRENCES));
+        return entries;
+    }
+
+    /**
+     * @return the name under each type it has been seen with
+     */
+    public synchronized List<Entry> lookup(final String name) {
+        final List<Entry> entries = new ArrayList<Entry>(1);
+        for (final Table table : this.tables.values()) {
+            final int slot = table.slot(name);
+            if (table.names[slot] != null) {
+                entries.add(table.entry(slot));
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Write the index to its file, if it has one and anything changed since
+     * the last snapshot. Counting continues while the file is written.
+     */
+    public void snapshot() throws IOException {
+        if (this.file == null) {
+            return;
+        }
+
+        final List<Table> copies = new ArrayList<Table>();
+        final long documents;
+        final long changes;
+        synchronized (this) {
+            if (this.changes == this.snapshotChanges) {
+                return;
+            }
+            for (final Table table : this.tables.values()) {
+                copies.add(table.copy());
+            }
+            documents = this.documents;
+            changes = this.changes;
+        }
+
+        // write aside and rename so a crash never leaves half a snapshot
+        final File temp = new File(this.file.getPath() + TEMP_SUFFIX);
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(temp))));
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeLong(documents);
+            out.writeInt(copies.size());
+            for (final Table table : copies) {
+                table.write(out);
+            }
+            out.close();
+            out = null;
+
+            if (!temp.renameTo(this.file) && !(this.file.delete() && temp.renameTo(this.file))) {
+                throw new IOException("Unable to replace " + this.file);
+            }
+        } finally {
+            IOUtils.closeQuietly(out);
+            FileUtils.deleteQuietly(temp);
+        }
+
+        synchronized (this) {
+            this.snapshotChanges = changes;
+        }
+    }
+
+    private void load() throws IOException {
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new GZIPInputStream(new BufferedInputStream(new FileInputStream(this.file))));
+            if (in.readInt() != MAGIC || in.readByte() != VERSION) {
+                throw new IOException("not an entity index snapshot");
+            }
+            this.documents = in.readLong();
+            final int types = in.readInt();
+            for (int t = 0; t < types; t++) {
+                final Table table = table(in.readUTF());
+                final int names = in.readInt();
+                for (int i = 0; i < names; i++) {
+                    table.add(in.readUTF(), in.readLong(), in.readInt());
+                }
+            }
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+        this.snapshotChanges = this.changes;
+    }
+
+    public synchronized long getDocuments() {
+        return this.documents;
+    }
+
+    public synchronized long getNames() {
+        long names = 0;
+        for (final Table table : this.tables.values()) {
+            names += table.size;
+        }
+        return names;
+    }
+
+    /**
+     * @return names dropped to make room for others
+     */
+    public synchronized long getPruned() {
+        return this.pruned;
+    }
+
+    /**
+     * One name's counts, as of the query
+     */
+    public static final class Entry {
+        private final String type;
+        private final String name;
+        private final long occurrences;
+        private final int documents;
+
+        Entry(final String type, final String name, final long occurrences, final int documents) {
+            this.type = type;
+            this.name = name;
+            this.occurrences = occurrences;
+            this.documents = documents;
+        }
+
+        public String getType() {
+            return this.type;
+        }
+
+        public String getName() {
+            return this.name;
+        }
+
+        public long getOccurrences() {
+            return this.occurrences;
+        }
+
+        public int getDocuments() {
+            return this.documents;
+        }
+    }
+
+    /**
+     * The names of one entity type, linearly probed, at most half full
+     */
+    private final class Table {
+        private final String type;
+        private String[] names;
+        private long[] occurrences;
+        private int[] documents;
+        private int size;
+
+        Table(final String type) {
+            this(type, 64);
+        }
+
+        private Table(final String type, final int capacity) {
+            this.type = type;
+            this.names = new String[capacity];
+            this.occurrences = new long[capacity];
+            this.documents = new int[capacity];
+        }
+
+        int slot(final String name) {
+            final int mask = this.names.length - 1;
+            int h = name.hashCode();
+            h ^= (h >>> 16);
+            int i = (h * 0x9E3779B9) & mask;
+            while (this.names[i] != null && !this.names[i].equals(name)) {
+                i = (i + 1) & mask;
+            }
+            return i;
+        }
+
+        void add(final String name, final long occurrences, final int documents) {
+            final int i = slot(name);
+            if (this.names[i] == null) {
+                this.names[i] = name;
+                this.size++;
+            }
+            this.occurrences[i] += occurrences;
+            this.documents[i] += documents;
+
+            if (this.size > EntityIndex.this.maxNames) {
+                prune();
+            } else if (2 * this.size > this.names.length) {
+                rehash(2 * this.names.length);
+            }
+        }
+
+        /**
+         * Drop the rarest names until the table is half full
+         */
+        private void prune() {
+            final long[] counts = new long[this.size];
+            int n = 0;
+            for (int i = 0; i < this.names.length; i++) {
+                if (this.names[i] != null) {
+                    counts[n++] = this.occurrences[i];
+                }
+            }
+            Arrays.sort(counts);
+            final int drop = this.size - Math.max(1, EntityIndex.this.maxNames / 2);
+            final long threshold = counts[drop - 1];
+
+            // everything rarer than the threshold goes, then as many ties as needed
+            int ties = drop;
+            for (int i = 0; i < drop; i++) {
+                if (counts[i] < threshold) {
+                    ties--;
+                }
+            }
+            for (int i = 0; i < this.names.length; i++) {
+                if (this.names[i] != null
+                        && (this.occurrences[i] < threshold || (this.occurrences[i] == threshold && ties-- > 0))) {
+                    this.names[i] = null;
+                    this.size--;
+                }
+            }
+            EntityIndex.this.pruned += drop;
+            rehash(this.names.length);
+        }
+
+        private void rehash(final int capacity) {
+            final String[] oldNames = this.names;
+            final long[] oldOccurrences = this.occurrences;
+            final int[] oldDocuments = this.documents;
+
+            this.names = new String[capacity];
+            this.occurrences = new long[capacity];
+            this.documents = new int[capacity];
+            for (int i = 0; i < oldNames.length; i++) {
+                if (oldNames[i] != null) {
+                    final int slot = slot(oldNames[i]);
+                    this.names[slot] = oldNames[i];
+                    this.occurrences[slot] = oldOccurrences[i];
+                    this.documents[slot] = oldDocuments[i];
+                }
+            }
+        }
+
+        void top(final int limit, final PriorityQueue<Entry> top) {
+            for (int i = 0; i < this.names.length; i++) {
+                if (this.names[i] == null) {
+                    continue;
+                }
+                if (top.size() < limit) {
+                    top.add(entry(i));
+                } else if (limit > 0 && this.occurrences[i] > top.peek().occurrences) {
+                    top.poll();
+                    top.add(entry(i));
+                }
+            }
+        }
+
+        Entry entry(final int slot) {
+            return new Entry(this.type, this.names[slot], this.occurrences[slot], this.documents[slot]);
+        }
+
+        Table copy() {
+            final Table copy = new Table(this.type, 1);
+            copy.names = this.names.clone();
+            copy.occurrences = this.occurrences.clone();
+            copy.documents = this.documents.clone();
+            copy.size = this.size;
+            return copy;
+        }
+
+        void write(final DataOutputStream out) throws IOException {
+            out.writeUTF(this.type);
+            out.writeInt(this.size);
+            for (int i = 0; i < this.names.length; i++) {
+                if (this.names[i] != null) {
+                    out.writeUTF(this.names[i]);
+                    out.writeLong(this.occurrences[i]);
+                    out.writeInt(this.documents[i]);
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,157 @@
+/*
+    stanford-nlp-war : provides REST, JMS, and HTML form connectivity to Stanford CoreNLP
+    Copyright (C) 2012  Tim Garrett, Mothsoft LLC
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License along
+    with this program; if not, write to the Free Software Foundation, Inc.,
+    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package com.mothsoft.alexis.stanford.parser;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One batch of a larger document, as parsed on any node, for
+ * {@link DocumentAssembler} to put back together. Unlike the client formats it
+ * keeps each sentence whole, with its named entities and their types, so names
+ * can be counted across the document. Big-endian:
+ * 
+ * <pre>
+ * int     MAGIC ("ALXF"), byte VERSION
+ * then for each sentence:
+ *   byte  SENTENCE, boolean degraded
+ *   boolean, then if true: int length, UTF-8 tree (XML)
+ *   boolean, then if true: the sentence graph (other formats)
+ *   int   names, then for each: utf name, utf type
+ * byte    END
+ * </pre>
+ */
+class FragmentDocumentWriter extends DocumentWriter {
+
+    static final int MAGIC = 0x414C5846;
+    static final byte VERSION = 1;
+
+    static final byte END = 0;
+    static final byte SENTENCE = 1;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final DataOutputStream out;
+
+    FragmentDocumentWriter(final OutputStream os) {
+        this.out = new DataOutputStream(new BufferedOutputStream(os));
+    }
+
+    void startDocument() throws IOException {
+        this.out.writeInt(MAGIC);
+        this.out.writeByte(VERSION);
+    }
+
+    void writeSentence(final SentenceResult result) throws IOException {
+        this.out.writeByte(SENTENCE);
+        this.out.writeBoolean(result.isDegraded());
+
+        this.out.writeBoolean(result.getTree() != null);
+        if (result.getTree() != null) {
+            // a printed tree can be longer than writeUTF allows
+            final byte[] tree = result.getTree().getBytes(UTF_8);
+            this.out.writeInt(tree.length);
+            this.out.write(tree);
+        }
+
+        this.out.writeBoolean(result.getGraph() != null);
+        if (result.getGraph() != null) {
+            result.getGraph().write(this.out);
+        }
+
+        writeNames(this.out, result.getNames());
+    }
+
+    private static void writeNames(final DataOutput out, final List<NamedEntity> names) throws IOException {
+        out.writeInt(names.size());
+        for (final NamedEntity name : names) {
+            out.writeUTF(name.getName());
+            out.writeUTF(name.getType());
+        }
+    }
+
+    void endSentences() {
+        // names are counted by the assembler, from the sentences
+    }
+
+    void writeName(final String name, final int count) {
+        // ditto
+    }
+
+    void endDocument() throws IOException {
+        this.out.writeByte(END);
+        this.out.flush();
+    }
+
+    void flush() throws IOException {
+        this.out.flush();
+    }
+
+    /**
+     * @return the sentences of a fragment, in order
+     * @throws IOException
+     *             if it is not a fragment, or is cut short
+     */
+    static List<SentenceResult> read(final byte[] fragment) throws IOException {
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(fragment));
+        if (in.readInt() != MAGIC || in.readByte() != VERSION) {
+            throw new IOException("Not a document fragment");
+        }
+
+        final List<SentenceResult> sentences = new ArrayList<SentenceResult>();
+        for (byte type = in.readByte(); type != END; type = in.readByte()) {
+            if (type != SENTENCE) {
+                throw new IOException("Unexpected fragment record: " + type);
+            }
+            sentences.add(readSentence(in));
+        }
+        return sentences;
+    }
+
+    private static SentenceResult readSentence(final DataInput in) throws IOException {
+        final boolean degraded = in.readBoolean();
+
+        String tree = null;
+        if (in.readBoolean()) {
+            final byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            tree = new String(bytes, UTF_8);
+        }
+        final SentenceGraph graph = in.readBoolean() ? SentenceGraph.read(in) : null;
+
+        final int count = in.readInt();
+        final List<NamedEntity> names = new ArrayList<NamedEntity>(count);
+        for (int i = 0; i < count; i++) {
+            names.add(new NamedEntity(in.readUTF(), in.readUTF()));
+        }
+
+        return graph == null ? new SentenceResult(tree, names, degraded) : new SentenceResult(graph, names,
+                degraded);
+    }
+
+}
@@ -0,0 +1,55 @@
+/*
+    stanford-nlp-war : provides REST, JMS, and HTML form connectivity to Stanford CoreNLP
+    Copyright (C) 2012  Tim Garrett, Mothsoft LLC
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License along
+    with this program; if not, write to the Free Software Foundation, Inc.,
+    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package com.mothsoft.alexis.stanford.parser;
+
+import java.util.List;
+
+import edu.stanford.nlp.ling.HasWord;
+
+/**
+ * The original splitter, and the default: a sentence ends at every ., ? or !
+ * token, at a comma, semicolon or dash once it has 25 tokens, and after 36
+ * tokens regardless, which keeps every sentence cheap to parse at the cost of
+ * cutting long ones short.
+ */
+class HeuristicSentenceSegmenter implements SentenceSegmenter {
+
+    private static final String DASHES = "--";
+
+    public boolean endsBefore(final List<HasWord> sentence, final HasWord next) {
+        // decided on the last token, as it was added; every delimiter but "--"
+        // is a single character
+        final String token = sentence.get(sentence.size() - 1).word();
+        final char c = token.length() == 1 ? token.charAt(0) : 0;
+        return c == '.' || c == '?' || c == '!' || isLongSentenceAtLogicalDelimiter(sentence, token, c)
+                || probablyNotASentence(sentence);
+    }
+
+    private boolean probablyNotASentence(final List<HasWord> sentence) {
+        // sometimes we get random streams of gibberish from web content. If we
+        // haven't encountered a real sentence ending at 35 terms, let's call it
+        // quits
+        return sentence.size() > 35;
+    }
+
+    private boolean isLongSentenceAtLogicalDelimiter(final List<HasWord> sentence, final String token, final char c) {
+        return sentence.size() >= 25 && (c == ',' || c == ';' || c == '-' || DASHES.equals(token));
+    }
+
+}
@@ -0,0 +1,168 @@
+/*
+    stanford-nlp-war : provides REST, JMS, and HTML form connectivity to Stanford CoreNLP
+    Copyright (C) 2012  Tim Garrett, Mothsoft LLC
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License along
+    with this program; if not, write to the Free Software Foundation, Inc.,
+    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package com.mothsoft.alexis.stanford.parser;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+/**
+ * A compact JSON document, written as sentences complete:
+ * 
+ * <pre>
+ * {"sentences":[
+ *   {"words":[["Mothsoft","NNP"],["LLC","NNP"],...],
+ *    "dependencies":[["nn",2,1],["root",0,3],...]},
+ *   ...],
+ *  "names":[["Atlanta",1],...]}
+ * </pre>
+ * 
+ * Each word is <code>[word, tag]</code>; each dependency is
+ * <code>[relation, governor, dependent]</code> with words numbered from 1 and
+ * 0 for the root. A sentence that was only tagged has
+ * <code>"degraded":true</code> and no dependencies; one that could not be
+ * parsed has null tags.
+ */
+class JsonDocumentWriter extends DocumentWriter {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final Writer writer;
+    private boolean first = true;
+
+    JsonDocumentWriter(final OutputStream os) {
+        this.writer = new BufferedWriter(new OutputStreamWriter(os, Charset.forName("UTF-8")));
+    }
+
+    void startDocument() throws IOException {
+        this.writer.write("{\"sentences\":[");
+    }
+
+    void writeSentence(final SentenceResult result) throws IOException {
+        final SentenceGraph graph = result.getGraph();
+
+        separate();
+        this.writer.write("{\"words\":[");
+        for (int i = 0; i < graph.getWordCount(); i++) {
+            if (i > 0) {
+                this.writer.write(',');
+            }
+            this.writer.write('[');
+            string(graph.getWord(i));
+            this.writer.write(',');
+            string(graph.getTag(i));
+            this.writer.write(']');
+        }
+
+        this.writer.write("],\"dependencies\":[");
+        for (int i = 0; i < graph.getDependencyCount(); i++) {
+            if (i > 0) {
+                this.writer.write(',');
+            }
+            this.writer.write('[');
+            string(graph.getRelation(i));
+            this.writer.write(',');
+            this.writer.write(Integer.toString(graph.getGovernor(i)));
+            this.writer.write(',');
+            this.writer.write(Integer.toString(graph.getDependent(i)));
+            this.writer.write(']');
+        }
+        this.writer.write(']');
+
+        if (result.isDegraded()) {
+            this.writer.write(",\"degraded\":true");
+        }
+        this.writer.write('}');
+    }
+
+    void endSentences() throws IOException {
+        this.writer.write("],\"names\":[");
+        this.first = true;
+    }
+
+    void writeName(final String name, final int count) throws IOException {
+        separate();
+        this.writer.write('[');
+        string(name);
+        this.writer.write(',');
+        this.writer.write(Integer.toString(count));
+        this.writer.write(']');
+    }
+
+    void endDocument() throws IOException {
+        this.writer.write("]}");
+        this.writer.flush();
+    }
+
+    void flush() throws IOException {
+        this.writer.flush();
+    }
+
+    private void separate() throws IOException {
+        if (this.first) {
+            this.first = false;
+        } else {
+            this.writer.write(',');
+        }
+    }
+
+    private void string(final String value) throws IOException {
+        if (value == null) {
+            this.writer.write("null");
+            return;
+        }
+
+        this.writer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    this.writer.write("\\\"");
+                    break;
+                case '\\':
+                    this.writer.write("\\\\");
+                    break;
+                case '\n':
+                    this.writer.write("\\n");
+                    break;
+                case '\r':
+                    this.writer.write("\\r");
+                    break;
+                case '\t':
+                    this.writer.write("\\t");
+                    break;
+                default:
+                    if (c < 0x20 || c == '\u2028' || c == '\u2029') {
+                        this.writer.write("\\u");
+                        this.writer.write(HEX[(c >> 12) & 0xf]);
+                        this.writer.write(HEX[(c >> 8) & 0xf]);
+                        this.writer.write(HEX[(c >> 4) & 0xf]);
+                        this.writer.write(HEX[c & 0xf]);
+                    } else {
+                        this.writer.write(c);
+                    }
+            }
+        }
+        this.writer.write('"');
+    }
+
+}
@@ -0,0 +1,39 @@
+/*
+    stanford-nlp-war : provides REST, JMS, and HTML form connectivity to Stanford CoreNLP
+    Copyright (C) 2012  Tim Garrett, Mothsoft LLC
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License along
+    with this program; if not, write to the Free Software Foundation, Inc.,
+    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package com.mothsoft.alexis.stanford.parser;
+
+/**
+ * Which class of work a request belongs to. Sentences of
+ * {@link #INTERACTIVE} requests are always handed a parser worker before
+ * waiting {@link #BULK} sentences, and part of the pool can be held back for
+ * them entirely.
+ */
+public enum Lane {
+
+    /** someone is waiting on the answer: the REST API and HTML form */
+    INTERACTIVE,
+
+    /** queued backfill: JMS requests */
+    BULK;
+
+    String getMetricName() {
+        return name().toLowerCase();
+    }
+
+}
@@ -0,0 +1,123 @@
+/*
+    stanford-nlp-war : provides REST, JMS, and HTML form connectivity to Stanford CoreNLP
+    Copyright (C) 2012  Tim Garrett, Mothsoft LLC
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License along
+    with this program; if not, write to the Free Software Foundation, Inc.,
+    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package com.mothsoft.alexis.stanford.parser;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+import com.mothsoft.alexis.stanford.concurrent.DaemonThreadFactory;
+
+import edu.stanford.nlp.ie.crf.CRFClassifier;
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.parser.lexparser.LexicalizedParser;
+import edu.stanford.nlp.tagger.maxent.MaxentTagger;
+
+/**
+ * The read-only Stanford models, loaded once and shared by every
+ * {@link SentenceWorker}. Anything with per-parse state lives on the worker.
+ * The models are independent, so they are deserialized in parallel.
+ */
+class Models {
+
+    private static final Logger logger = Logger.getLogger(Models.class.getName());
+
+    private static final String PARSER_MODEL = "edu/stanford/nlp/models/lexparser/englishPCFG.ser.gz";
+    private static final String NER_MODEL = "edu/stanford/nlp/models/ner/english.all.3class.distsim.crf.ser.gz";
+    private static final String TAGGER_MODEL = "edu/stanford/nlp/models/pos-tagger/english-left3words/english-left3words-distsim.tagger";
+
+    private static final LexicalizedParser PARSER;
+    private static final CRFClassifier<CoreLabel> CLASSIFIER;
+    private static final MaxentTagger TAGGER;
+
+    static {
+        logger.info("Loading Stanford NLP models");
+        final long start = System.nanoTime();
+
+        final ExecutorService executor = Executors.newFixedThreadPool(3, new DaemonThreadFactory("stanford-models-"));
+        try {
+            final Future<LexicalizedParser> parser = executor.submit(new Callable<LexicalizedParser>() {
+                public LexicalizedParser call() {
+                    return LexicalizedParser.getParserFromSerializedFile(PARSER_MODEL);
+                }
+            });
+            final Future<CRFClassifier<CoreLabel>> classifier = executor
+                    .submit(new Callable<CRFClassifier<CoreLabel>>() {
+                        @SuppressWarnings("unchecked")
+                        public CRFClassifier<CoreLabel> call() throws Exception {
+                            return CRFClassifier.getClassifier(NER_MODEL);
+                        }
+                    });
+            final Future<MaxentTagger> tagger = executor.submit(new Callable<MaxentTagger>() {
+                public MaxentTagger call() throws Exception {
+                    return new MaxentTagger(TAGGER_MODEL);
+                }
+            });
+
+            PARSER = await(parser);
+            CLASSIFIER = await(classifier);
+            TAGGER = await(tagger);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        logger.info("Loaded Stanford NLP models in " + ((System.nanoTime() - start) / 1000000L) + "ms");
+    }
+
+    private static <T> T await(final Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
+    private Models() {
+        super();
+    }
+
+    static LexicalizedParser getParser() {
+        return PARSER;
+    }
+
+    static CRFClassifier<CoreLabel> getClassifier() {
+        return CLASSIFIER;
+    }
+
+    /**
+     * The POS tagger, for the TAGS analysis level and for sentences that are
+     * not fully parsed
+     */
+    static MaxentTagger getTagger() {
+        return TAGGER;
+    }
+
+}
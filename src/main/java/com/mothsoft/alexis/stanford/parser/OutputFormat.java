@@ -0,0 +1,62 @@
+/*
+    stanford-nlp-war : provides REST, JMS, and HTML form connectivity to Stanford CoreNLP
+    Copyright (C) 2012  Tim Garrett, Mothsoft LLC
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License along
+    with this program; if not, write to the Free Software Foundation, Inc.,
+    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package com.mothsoft.alexis.stanford.parser;
+
+/**
+ * How a parsed document is written. All formats carry the same content: the
+ * words and tags of each sentence, its typed dependencies and the named
+ * entities of the document with their counts.
+ */
+public enum OutputFormat {
+
+    /** the original XML document */
+    XML("application/xml"),
+
+    /** one JSON object, written as sentences complete */
+    JSON("application/json"),
+
+    /** length-prefixed binary; see {@link BinaryDocumentWriter} for the layout */
+    BINARY("application/x-alexis-parse");
+
+    private final String mediaType;
+
+    private OutputFormat(final String mediaType) {
+        this.mediaType = mediaType;
+    }
+
+    public String getMediaType() {
+        return this.mediaType;
+    }
+
+    /**
+     * @return the format with this name (case-insensitive) or media type, or
+     *         XML if there is none
+     */
+    public static OutputFormat forName(final String name) {
+        if (name != null) {
+            for (final OutputFormat format : values()) {
+                if (format.name().equalsIgnoreCase(name.trim()) || format.mediaType.equalsIgnoreCase(name.trim())) {
+                    return format;
+                }
+            }
+        }
+        return XML;
+    }
+
+}
@@ -0,0 +1,63 @@
+/*
+    stanford-nlp-war : provides REST, JMS, and HTML form connectivity to Stanford CoreNLP
+    Copyright (C) 2012  Tim Garrett, Mothsoft LLC
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License along
+    with this program; if not, write to the Free Software Foundation, Inc.,
+    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package com.mothsoft.alexis.stanford.parser;
+
+/**
+ * How long a sentence and a whole document may take. The PCFG parser cannot
+ * be interrupted, so budgets are enforced before a sentence is parsed: a
+ * sentence whose estimated parse time exceeds the sentence budget, or would
+ * finish after the document's deadline, is only tagged instead of parsed. A
+ * budget of 0 means no limit.
+ */
+final class ParseBudget {
+
+    static final ParseBudget UNLIMITED = new ParseBudget(0, 0);
+
+    private final long sentenceMicros;
+    private final long documentMicros;
+
+    ParseBudget(final long sentenceMillis, final long documentMillis) {
+        this.sentenceMicros = Math.max(0, sentenceMillis) * 1000L;
+        this.documentMicros = Math.max(0, documentMillis) * 1000L;
+    }
+
+    /**
+     * @return the deadline, in {@link System#nanoTime()} terms, for a document
+     *         started at <code>startNanos</code>
+     */
+    long deadline(final long startNanos) {
+        return this.documentMicros > 0 ? startNanos + this.documentMicros * 1000L : Long.MAX_VALUE;
+    }
+
+    /**
+     * @return true if a sentence estimated to take this long should not be
+     *         parsed, given the document deadline
+     */
+    boolean exceeded(final long estimateMicros, final long deadline) {
+        if (this.sentenceMicros > 0 && estimateMicros > this.sentenceMicros) {
+            return true;
+        }
+        return deadline != Long.MAX_VALUE && deadline - System.nanoTime() < estimateMicros * 1000L;
+    }
+
+    long getSentenceMicros() {
+        return this.sentenceMicros;
+    }
+
+}
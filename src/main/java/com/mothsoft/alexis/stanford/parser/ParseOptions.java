@@ -0,0 +1,176 @@
+/*
+    stanford-nlp-war : provides REST, JMS, and HTML form connectivity to Stanford CoreNLP
+    Copyright (C) 2012  Tim Garrett, Mothsoft LLC
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License along
+    with this program; if not, write to the Free Software Foundation, Inc.,
+    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package com.mothsoft.alexis.stanford.parser;
+
+/**
+ * Per-request knobs for {@link Parser#parse(java.io.InputStream, java.io.OutputStream, ParseOptions)}.
+ */
+public class ParseOptions {
+
+    private boolean useSentenceCache = true;
+    private boolean useResultStore = true;
+    private Lane lane = Lane.INTERACTIVE;
+    private OutputFormat format = OutputFormat.XML;
+    private AnalysisLevel level = AnalysisLevel.FULL;
+    private boolean indexEntities = true;
+    private boolean fragment;
+    private boolean recordCost = true;
+
+    /** set by the parser; a degraded document is worth parsing again later */
+    private volatile boolean degraded;
+
+    /** set by the slow document recorder, which may capture the timings */
+    private DocumentProfile profile;
+
+    public ParseOptions() {
+        super();
+    }
+
+    public boolean isUseSentenceCache() {
+        return this.useSentenceCache;
+    }
+
+    public void setUseSentenceCache(final boolean useSentenceCache) {
+        this.useSentenceCache = useSentenceCache;
+    }
+
+    public boolean isUseResultStore() {
+        return this.useResultStore;
+    }
+
+    public void setUseResultStore(final boolean useResultStore) {
+        this.useResultStore = useResultStore;
+    }
+
+    public Lane getLane() {
+        return this.lane;
+    }
+
+    public void setLane(final Lane lane) {
+        this.lane = lane;
+    }
+
+    public OutputFormat getFormat() {
+        return this.format;
+    }
+
+    public void setFormat(final OutputFormat format) {
+        this.format = format;
+    }
+
+    public AnalysisLevel getLevel() {
+        return this.level;
+    }
+
+    public void setLevel(final AnalysisLevel level) {
+        this.level = level;
+    }
+
+    public boolean isIndexEntities() {
+        return this.indexEntities;
+    }
+
+    /**
+     * @param indexEntities
+     *            - false to keep this document's names out of the entity
+     *            index
+     */
+    public void setIndexEntities(final boolean indexEntities) {
+        this.indexEntities = indexEntities;
+    }
+
+    public boolean isFragment() {
+        return this.fragment;
+    }
+
+    /**
+     * @param fragment
+     *            - true if the text is one batch of a larger document, to be
+     *            written for {@link DocumentAssembler} rather than a client
+     */
+    public void setFragment(final boolean fragment) {
+        this.fragment = fragment;
+    }
+
+    boolean isRecordCost() {
+        return this.recordCost;
+    }
+
+    /**
+     * @param recordCost
+     *            - false to keep this document's parse times out of the
+     *            sentence cost model, as for warm-up parses
+     */
+    void setRecordCost(final boolean recordCost) {
+        this.recordCost = recordCost;
+    }
+
+    /**
+     * @return appended to cache keys so results that differ in content or
+     *         format are kept apart; empty for the defaults
+     */
+    String getCacheKeySuffix() {
+        final String format = this.format == OutputFormat.XML ? "" : "." + this.format.name().toLowerCase();
+        return this.level == AnalysisLevel.FULL ? format : format + "." + this.level.name().toLowerCase();
+    }
+
+    /**
+     * @return appended to result store keys; a fragment is not a document
+     */
+    String getDocumentKeySuffix() {
+        return this.fragment ? getCacheKeySuffix() + ".fragment" : getCacheKeySuffix();
+    }
+
+    boolean isDegraded() {
+        return this.degraded;
+    }
+
+    void setDegraded() {
+        this.degraded = true;
+    }
+
+    DocumentProfile getProfile() {
+        return this.profile;
+    }
+
+    /**
+     * @param profile
+     *            - collects the time taken by each sentence, or null
+     */
+    void setProfile(final DocumentProfile profile) {
+        this.profile = profile;
+    }
+
+    /**
+     * @return the same options, without anything the parser has set
+     */
+    ParseOptions copy() {
+        final ParseOptions copy = new ParseOptions();
+        copy.useSentenceCache = this.useSentenceCache;
+        copy.useResultStore = this.useResultStore;
+        copy.lane = this.lane;
+        copy.format = this.format;
+        copy.level = this.level;
+        copy.indexEntities = this.indexEntities;
+        copy.fragment = this.fragment;
+        copy.recordCost = this.recordCost;
+        return copy;
+    }
+
+}
@@ -0,0 +1,166 @@
+/*
+    stanford-nlp-war : provides REST, JMS, and HTML form connectivity to Stanford CoreNLP
+    Copyright (C) 2012  Tim Garrett, Mothsoft LLC
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License along
+    with this program; if not, write to the Free Software Foundation, Inc.,
+    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package com.mothsoft.alexis.stanford.parser;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import edu.stanford.nlp.ling.HasWord;
+import edu.stanford.nlp.ling.TaggedWord;
+
+/**
+ * What reaches the parser at all. A sentence longer than
+ * <code>maxParseTokens</code> is either cut into pieces no longer than that,
+ * each parsed as a sentence of its own, or not parsed; and, if asked for,
+ * boilerplate (navigation text in capitals, or a run of words with no verb) is
+ * not parsed either. A sentence that is not parsed is only POS tagged, as at
+ * the TAGS analysis level.
+ */
+final class ParsePolicy {
+
+    /**
+     * Parse everything, whatever its length
+     */
+    static final ParsePolicy UNLIMITED = new ParsePolicy(0, false, false);
+
+    /**
+     * Shorter runs are cheap to parse, and often a heading or a caption that
+     * should be kept
+     */
+    static final int MIN_BOILERPLATE_TOKENS = 4;
+
+    private final int maxParseTokens;
+    private final boolean skipLong;
+    private final boolean skipBoilerplate;
+
+    /**
+     * @param maxParseTokens
+     *            - longest sentence to parse whole, or 0 for no limit
+     * @param skipLong
+     *            - true to leave longer sentences unparsed, false to cut them
+     * @param skipBoilerplate
+     *            - true to leave navigation text and verbless runs unparsed
+     */
+    ParsePolicy(final int maxParseTokens, final boolean skipLong, final boolean skipBoilerplate) {
+        this.maxParseTokens = Math.max(0, maxParseTokens);
+        this.skipLong = skipLong;
+        this.skipBoilerplate = skipBoilerplate;
+    }
+
+    int getMaxParseTokens() {
+        return this.maxParseTokens;
+    }
+
+    boolean isSkipBoilerplate() {
+        return this.skipBoilerplate;
+    }
+
+    /**
+     * @return whether the sentence must be tagged to tell if it is boilerplate
+     */
+    boolean needsTags(final List<? extends HasWord> sentence) {
+        return this.skipBoilerplate && sentence.size() >= MIN_BOILERPLATE_TOKENS;
+    }
+
+    /**
+     * @return the sentence, or if it is too long and long sentences are cut,
+     *         views of it in pieces no longer than <code>maxParseTokens</code>
+     *         ending at the last comma, semicolon, colon or dash in the second
+     *         half of each piece where there is one
+     */
+    List<List<HasWord>> chunk(final List<HasWord> sentence) {
+        if (this.skipLong || !isTooLong(sentence)) {
+            return Collections.singletonList(sentence);
+        }
+
+        final List<List<HasWord>> pieces = new ArrayList<List<HasWord>>();
+        int start = 0;
+        while (sentence.size() - start > this.maxParseTokens) {
+            int end = start + this.maxParseTokens;
+            for (int i = end - 1; i >= start + this.maxParseTokens / 2; i--) {
+                if (isDelimiter(sentence.get(i).word())) {
+                    end = i + 1;
+                    break;
+                }
+            }
+            pieces.add(sentence.subList(start, end));
+            start = end;
+        }
+        pieces.add(sentence.subList(start, sentence.size()));
+        return pieces;
+    }
+
+    /**
+     * @return whether the sentence should only be tagged: it is too long and
+     *         long sentences are skipped, or it is navigation text
+     */
+    boolean skip(final List<HasWord> sentence) {
+        return (this.skipLong && isTooLong(sentence)) || (this.skipBoilerplate && isNavigation(sentence));
+    }
+
+    /**
+     * @return whether a tagged sentence is boilerplate for want of a verb
+     */
+    boolean skipTagged(final List<TaggedWord> tagged) {
+        if (!needsTags(tagged)) {
+            return false;
+        }
+        for (final TaggedWord word : tagged) {
+            // VB, VBD, VBG, VBN, VBP, VBZ and the modals
+            if (word.tag().startsWith("VB") || "MD".equals(word.tag())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isTooLong(final List<HasWord> sentence) {
+        return this.maxParseTokens > 0 && sentence.size() > this.maxParseTokens;
+    }
+
+    /**
+     * "HOME | NEWS | SPORTS | CONTACT US": every word in capitals
+     */
+    private static boolean isNavigation(final List<HasWord> sentence) {
+        if (sentence.size() < MIN_BOILERPLATE_TOKENS) {
+            return false;
+        }
+        int words = 0;
+        for (final HasWord word : sentence) {
+            final String token = word.word();
+            for (int i = 0; i < token.length(); i++) {
+                if (Character.isLowerCase(token.charAt(i))) {
+                    return false;
+                }
+            }
+            // not punctuation, a number or an escaped bracket like -LRB-
+            if (Character.isLetter(token.charAt(0))) {
+                words++;
+            }
+        }
+        return words >= MIN_BOILERPLATE_TOKENS - 1;
+    }
+
+    private static boolean isDelimiter(final String token) {
+        return ",".equals(token) || ";".equals(token) || ":".equals(token) || "-".equals(token)
+                || "--".equals(token);
+    }
+
+}
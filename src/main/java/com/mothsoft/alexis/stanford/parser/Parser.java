@@ -35,4 +35,17 @@ public interface Parser {
      */
     public void parse(final InputStream is, final OutputStream os) throws IOException;
 
+    /**
+     * Parse with per-request options
+     * 
+     * @param is
+     *            - provided input stream, will be closed
+     * @param os
+     *            - output stream, will be left open
+     * @param options
+     *            - per-request options
+     * @throws IOException
+     */
+    public void parse(final InputStream is, final OutputStream os, final ParseOptions options) throws IOException;
+
 }
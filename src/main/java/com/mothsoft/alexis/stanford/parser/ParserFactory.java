@@ -18,11 +18,80 @@
  */
 package com.mothsoft.alexis.stanford.parser;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
+import org.apache.commons.pool.impl.GenericObjectPool;
+
+import com.mothsoft.alexis.stanford.concurrent.DaemonThreadFactory;
+import com.mothsoft.alexis.stanford.metrics.Gauge;
+import com.mothsoft.alexis.stanford.metrics.Metrics;
+
+import edu.stanford.nlp.parser.lexparser.LexicalizedParser;
+import edu.stanford.nlp.parser.lexparser.Options;
+
 /**
- * Hide the details of how this works, like in case I ever figure out the
- * thread-pool issue
+ * Hide the details of how this works. Every caller shares one {@link Parser};
+ * concurrency comes from a pool of sentence workers, each with its own parser
+ * query, tree printer and NER view over the shared models. The pool size
+ * defaults to the number of processors and may be overridden with the
+ * <code>stanford.parser.poolSize</code> system property.
+ * <p>
+ * Setting <code>stanford.parser.parallelSentences=true</code> also spreads the
+ * sentences of a single document across the pool, which keeps one very long
+ * document from holding a request on a single core.
+ * <p>
+ * Parsed sentences are cached by their tokens, up to
+ * <code>stanford.parser.sentenceCacheSize</code> entries (0 disables the cache).
+ * Whole documents are kept by content hash in up to
+ * <code>stanford.parser.resultStoreMegabytes</code> of memory (0 disables the
+ * store) and, if <code>stanford.parser.resultStoreDirectory</code> is set, in up
+ * to <code>stanford.parser.resultStoreDiskMegabytes</code> on local disk.
+ * <p>
+ * Interactive sentences are handed workers ahead of bulk ones, and
+ * <code>stanford.parser.interactiveReserve</code> workers (default: a quarter
+ * of the pool) are never given to bulk work at all. Within a lane, short
+ * sentences are parsed ahead of long ones queued around the same time.
+ * <p>
+ * A sentence expected to take longer than
+ * <code>stanford.parser.sentenceBudgetMillis</code> (default 10 seconds), or
+ * to finish after <code>stanford.parser.documentBudgetMillis</code> into its
+ * document (default: no limit), is only POS tagged and is marked
+ * <code>degraded="true"</code>.
+ * <p>
+ * Parser charts are kept within <code>stanford.parser.chartMegabytes</code>
+ * (default: half the heap); see {@link ChartMemory}.
+ * <p>
+ * If <code>stanford.parser.entityIndexSize</code> is set, the names of every
+ * document are counted in an {@link EntityIndex} of up to that many names per
+ * entity type, snapshotted every
+ * <code>stanford.parser.entityIndexSnapshotSeconds</code> to
+ * <code>stanford.parser.entityIndexFile</code> if one is given.
+ * <p>
+ * If <code>stanford.parser.slowDocumentDirectory</code> is set, documents that
+ * take longer than <code>stanford.parser.slowDocumentMillis</code> (default
+ * one minute) are captured there with their sentence timings, one in every
+ * <code>stanford.parser.slowDocumentSampleEvery</code> (default 1), in up to
+ * <code>stanford.parser.slowDocumentMegabytes</code>; see
+ * {@link SlowDocumentRecorder}.
+ * <p>
+ * Sentences are split by the heuristic {@link SentenceSegmenter} unless
+ * <code>stanford.parser.segmenter</code> names another: <code>rules</code> for
+ * the rule-based one, or the class name of an implementation with a public
+ * no-argument constructor. A sentence longer than
+ * <code>stanford.parser.maxParseTokens</code> (default 60, 0 for no limit) is
+ * parsed in pieces, or if <code>stanford.parser.longSentences=skip</code> only
+ * tagged; <code>stanford.parser.skipBoilerplate=true</code> also leaves
+ * navigation text and verbless runs unparsed. See {@link ParsePolicy}.
+ * <p>
+ * The models are loaded on the first parse, or by {@link #load()}; asking for
+ * the parser or the pool size does not load them.
  * 
  * @author tgarrett
  * 
@@ -31,15 +100,403 @@ public class ParserFactory {
 
     private static final Logger logger = Logger.getLogger(ParserFactory.class.getName());
 
-    private static final Parser parser;
+    public static final String POOL_SIZE_PROPERTY = "stanford.parser.poolSize";
+    public static final String PARALLEL_SENTENCES_PROPERTY = "stanford.parser.parallelSentences";
+    public static final String SENTENCE_CACHE_SIZE_PROPERTY = "stanford.parser.sentenceCacheSize";
+    public static final String INTERACTIVE_RESERVE_PROPERTY = "stanford.parser.interactiveReserve";
+    public static final String SENTENCE_BUDGET_MILLIS_PROPERTY = "stanford.parser.sentenceBudgetMillis";
+    public static final String DOCUMENT_BUDGET_MILLIS_PROPERTY = "stanford.parser.documentBudgetMillis";
+    public static final String CHART_MEGABYTES_PROPERTY = "stanford.parser.chartMegabytes";
+    public static final String WARMUP_ROUNDS_PROPERTY = "stanford.parser.warmupRounds";
+
+    public static final String RESULT_STORE_MEGABYTES_PROPERTY = "stanford.parser.resultStoreMegabytes";
+    public static final String RESULT_STORE_DIRECTORY_PROPERTY = "stanford.parser.resultStoreDirectory";
+    public static final String RESULT_STORE_DISK_MEGABYTES_PROPERTY = "stanford.parser.resultStoreDiskMegabytes";
+
+    public static final String SLOW_DOCUMENT_DIRECTORY_PROPERTY = "stanford.parser.slowDocumentDirectory";
+    public static final String SLOW_DOCUMENT_MILLIS_PROPERTY = "stanford.parser.slowDocumentMillis";
+    public static final String SLOW_DOCUMENT_SAMPLE_EVERY_PROPERTY = "stanford.parser.slowDocumentSampleEvery";
+    public static final String SLOW_DOCUMENT_MEGABYTES_PROPERTY = "stanford.parser.slowDocumentMegabytes";
+
+    public static final String SEGMENTER_PROPERTY = "stanford.parser.segmenter";
+    public static final String MAX_PARSE_TOKENS_PROPERTY = "stanford.parser.maxParseTokens";
+    public static final String LONG_SENTENCES_PROPERTY = "stanford.parser.longSentences";
+    public static final String SKIP_BOILERPLATE_PROPERTY = "stanford.parser.skipBoilerplate";
+
+    public static final String ENTITY_INDEX_SIZE_PROPERTY = "stanford.parser.entityIndexSize";
+    public static final String ENTITY_INDEX_FILE_PROPERTY = "stanford.parser.entityIndexFile";
+    public static final String ENTITY_INDEX_SNAPSHOT_SECONDS_PROPERTY = "stanford.parser.entityIndexSnapshotSeconds";
+
+    private static final int DEFAULT_SENTENCE_CACHE_SIZE = 10000;
+    private static final long DEFAULT_SENTENCE_BUDGET_MILLIS = 10000L;
+    private static final int DEFAULT_RESULT_STORE_MEGABYTES = 64;
+    private static final int DEFAULT_RESULT_STORE_DISK_MEGABYTES = 1024;
+    private static final long DEFAULT_ENTITY_INDEX_SNAPSHOT_SECONDS = 300L;
+    private static final int DEFAULT_MAX_PARSE_TOKENS = 60;
+    private static final long DEFAULT_SLOW_DOCUMENT_MILLIS = 60000L;
+    private static final int DEFAULT_SLOW_DOCUMENT_MEGABYTES = 256;
+    private static final long MEGABYTE = 1024L * 1024L;
+
+    private static final int POOL_SIZE = Math.max(1, Integer.getInteger(POOL_SIZE_PROPERTY, Runtime.getRuntime()
+            .availableProcessors()));
+
+    private static final SentenceSegmenter SEGMENTER = createSegmenter();
+
+    /**
+     * Hands every parse to the real parser, which is only built (and the
+     * models loaded) the first time it is needed, or by {@link #load()}
+     */
+    private static final Parser parser = new Parser() {
+        public void parse(final InputStream is, final OutputStream os) throws IOException {
+            Loaded.PARSER.parse(is, os);
+        }
+
+        public void parse(final InputStream is, final OutputStream os, final ParseOptions options)
+                throws IOException {
+            Loaded.PARSER.parse(is, os, options);
+        }
+    };
+
+    /**
+     * Everything that needs the models
+     */
+    private static final class Loaded {
+
+        /** the pool size, or fewer if their charts do not fit */
+        private static final int WORKER_COUNT;
+
+        private static final GenericObjectPool<SentenceWorker> WORKERS;
+
+        private static final SentenceCache SENTENCE_CACHE;
+
+        private static final SentenceScheduler SCHEDULER;
+
+        private static final DocumentResultStore RESULT_STORE;
+
+        private static final ResultStoreParser STORE_PARSER;
+
+        private static final EntityIndex ENTITY_INDEX;
+
+        private static final SlowDocumentRecorder SLOW_DOCUMENTS;
+
+        private static final Parser PARSER;
+
+        static {
+            final long chartMegabytes = Long.getLong(CHART_MEGABYTES_PROPERTY, Runtime.getRuntime().maxMemory() / 2
+                    / MEGABYTE);
+            final LexicalizedParser lexicalizedParser = Models.getParser();
+            final Options op = lexicalizedParser.getOp();
+            final ChartMemory chartMemory = new ChartMemory(chartMegabytes * MEGABYTE, lexicalizedParser.stateIndex
+                    .size(), op.doDep && !op.testOptions.useFastFactored, POOL_SIZE);
+            WORKER_COUNT = chartMemory.getWorkers();
+
+            logger.info("Initializing Parser with " + WORKER_COUNT + " sentence workers");
+
+            WORKERS = new GenericObjectPool<SentenceWorker>(new SentenceWorkerFactory(chartMemory));
+            WORKERS.setMaxActive(WORKER_COUNT);
+            WORKERS.setMaxIdle(WORKER_COUNT);
+            WORKERS.setWhenExhaustedAction(GenericObjectPool.WHEN_EXHAUSTED_BLOCK);
+
+            final int cacheSize = Integer.getInteger(SENTENCE_CACHE_SIZE_PROPERTY, DEFAULT_SENTENCE_CACHE_SIZE);
+            SENTENCE_CACHE = cacheSize > 0 ? new SentenceCache(cacheSize) : null;
+
+            SCHEDULER = new SentenceScheduler(WORKER_COUNT, Integer.getInteger(INTERACTIVE_RESERVE_PROPERTY,
+                    WORKER_COUNT / 4), new SentenceCostModel(), chartMemory);
+            logger.info("Bulk work may use " + SCHEDULER.getBulkLimit() + " of " + WORKER_COUNT
+                    + " sentence workers");
+
+            final ParseBudget budget = new ParseBudget(Long.getLong(SENTENCE_BUDGET_MILLIS_PROPERTY,
+                    DEFAULT_SENTENCE_BUDGET_MILLIS), Long.getLong(DOCUMENT_BUDGET_MILLIS_PROPERTY, 0L));
+
+            final ParsePolicy policy = new ParsePolicy(Integer.getInteger(MAX_PARSE_TOKENS_PROPERTY,
+                    DEFAULT_MAX_PARSE_TOKENS), "skip".equalsIgnoreCase(System.getProperty(LONG_SENTENCES_PROPERTY)),
+                    Boolean.getBoolean(SKIP_BOILERPLATE_PROPERTY));
+
+            ENTITY_INDEX = createEntityIndex();
+
+            final ParserSettings settings = new ParserSettings();
+            if (Boolean.getBoolean(PARALLEL_SENTENCES_PROPERTY)) {
+                logger.info("Parsing the sentences of a document in parallel");
+                final ExecutorService sentenceExecutor = Executors.newFixedThreadPool(WORKER_COUNT,
+                        new DaemonThreadFactory("stanford-sentence-"));
+                settings.setSentenceExecutor(sentenceExecutor, 2 * WORKER_COUNT);
+            }
+            settings.setCache(SENTENCE_CACHE);
+            settings.setScheduler(SCHEDULER);
+            settings.setBudget(budget);
+            settings.setEntityIndex(ENTITY_INDEX);
+            settings.setSegmenter(SEGMENTER);
+            settings.setPolicy(policy);
+            final Parser impl = new ParserImpl(WORKERS, settings);
+
+            final int storeMegabytes = Integer.getInteger(RESULT_STORE_MEGABYTES_PROPERTY,
+                    DEFAULT_RESULT_STORE_MEGABYTES);
+            final Parser stored;
+            if (storeMegabytes > 0) {
+                final String directory = System.getProperty(RESULT_STORE_DIRECTORY_PROPERTY);
+                final int diskMegabytes = Integer.getInteger(RESULT_STORE_DISK_MEGABYTES_PROPERTY,
+                        DEFAULT_RESULT_STORE_DISK_MEGABYTES);
+                RESULT_STORE = new DocumentResultStore(storeMegabytes * MEGABYTE, directory == null ? null : new File(
+                        directory), diskMegabytes * MEGABYTE);
+                STORE_PARSER = new ResultStoreParser(impl, RESULT_STORE);
+                stored = STORE_PARSER;
+            } else {
+                RESULT_STORE = null;
+                STORE_PARSER = null;
+                stored = impl;
+            }
 
-    static {
-        logger.info("Initializing Parser");
-        parser = new ParserImpl();
+            SLOW_DOCUMENTS = createSlowDocumentRecorder();
+            PARSER = SLOW_DOCUMENTS == null ? stored : new SlowDocumentParser(stored, SLOW_DOCUMENTS);
+
+            registerGauges();
+        }
+
+        private static SlowDocumentRecorder createSlowDocumentRecorder() {
+            final String directory = System.getProperty(SLOW_DOCUMENT_DIRECTORY_PROPERTY);
+            if (directory == null) {
+                return null;
+            }
+            return new SlowDocumentRecorder(Long.getLong(SLOW_DOCUMENT_MILLIS_PROPERTY, DEFAULT_SLOW_DOCUMENT_MILLIS),
+                    Integer.getInteger(SLOW_DOCUMENT_SAMPLE_EVERY_PROPERTY, 1), new File(directory),
+                    Integer.getInteger(SLOW_DOCUMENT_MEGABYTES_PROPERTY, DEFAULT_SLOW_DOCUMENT_MEGABYTES) * MEGABYTE);
+        }
+
+        private static EntityIndex createEntityIndex() {
+            final int size = Integer.getInteger(ENTITY_INDEX_SIZE_PROPERTY, 0);
+            if (size <= 0) {
+                return null;
+            }
+
+            final String file = System.getProperty(ENTITY_INDEX_FILE_PROPERTY);
+            final EntityIndex index = new EntityIndex(size, file == null ? null : new File(file));
+            if (file != null) {
+                final long seconds = Math.max(1L, Long.getLong(ENTITY_INDEX_SNAPSHOT_SECONDS_PROPERTY,
+                        DEFAULT_ENTITY_INDEX_SNAPSHOT_SECONDS));
+                Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("stanford-entity-snapshot-"))
+                        .scheduleWithFixedDelay(new Runnable() {
+                            public void run() {
+                                try {
+                                    index.snapshot();
+                                } catch (IOException e) {
+                                    logger.warning("Unable to snapshot entity index: " + e.getMessage());
+                                }
+                            }
+                        }, seconds, seconds, TimeUnit.SECONDS);
+            }
+            logger.info("Indexing up to " + size + " names per entity type");
+            return index;
+        }
+
+        private static void registerGauges() {
+            Metrics.gauge("parser.pool.size", new Gauge() {
+                public long getValue() {
+                    return WORKER_COUNT;
+                }
+            });
+            Metrics.gauge("parser.pool.active", new Gauge() {
+                public long getValue() {
+                    return WORKERS.getNumActive();
+                }
+            });
+            Metrics.gauge("parser.pool.idle", new Gauge() {
+                public long getValue() {
+                    return WORKERS.getNumIdle();
+                }
+            });
+
+            for (final Lane lane : Lane.values()) {
+                Metrics.gauge("parser.lane." + lane.getMetricName() + ".waiting", new Gauge() {
+                    public long getValue() {
+                        return SCHEDULER.getWaiting(lane);
+                    }
+                });
+                Metrics.gauge("parser.lane." + lane.getMetricName() + ".running", new Gauge() {
+                    public long getValue() {
+                        return SCHEDULER.getRunning(lane);
+                    }
+                });
+            }
+
+            Metrics.gauge("parser.chartMemory.reserved", new Gauge() {
+                public long getValue() {
+                    return SCHEDULER.getChartBytesReserved();
+                }
+            });
+            Metrics.gauge("parser.chartMemory.retained", new Gauge() {
+                public long getValue() {
+                    return SCHEDULER.getChartBytesRetained();
+                }
+            });
+
+            Metrics.gauge("parser.cost.nanosPerCubedToken", new Gauge() {
+                public long getValue() {
+                    return (long) SCHEDULER.getCostModel().getNanosPerCubedToken();
+                }
+            });
+
+            if (SENTENCE_CACHE != null) {
+                Metrics.gauge("parser.sentenceCache.hits", new Gauge() {
+                    public long getValue() {
+                        return SENTENCE_CACHE.getHits();
+                    }
+                });
+                Metrics.gauge("parser.sentenceCache.misses", new Gauge() {
+                    public long getValue() {
+                        return SENTENCE_CACHE.getMisses();
+                    }
+                });
+                Metrics.gauge("parser.sentenceCache.size", new Gauge() {
+                    public long getValue() {
+                        return SENTENCE_CACHE.getSize();
+                    }
+                });
+            }
+
+            if (ENTITY_INDEX != null) {
+                Metrics.gauge("parser.entityIndex.documents", new Gauge() {
+                    public long getValue() {
+                        return ENTITY_INDEX.getDocuments();
+                    }
+                });
+                Metrics.gauge("parser.entityIndex.names", new Gauge() {
+                    public long getValue() {
+                        return ENTITY_INDEX.getNames();
+                    }
+                });
+                Metrics.gauge("parser.entityIndex.pruned", new Gauge() {
+                    public long getValue() {
+                        return ENTITY_INDEX.getPruned();
+                    }
+                });
+            }
+
+            if (SLOW_DOCUMENTS != null) {
+                Metrics.gauge("parser.slow.bytes", new Gauge() {
+                    public long getValue() {
+                        return SLOW_DOCUMENTS.getBytes();
+                    }
+                });
+            }
+
+            if (RESULT_STORE != null) {
+                Metrics.gauge("parser.resultStore.hits", new Gauge() {
+                    public long getValue() {
+                        return RESULT_STORE.getHits();
+                    }
+                });
+                Metrics.gauge("parser.resultStore.diskHits", new Gauge() {
+                    public long getValue() {
+                        return RESULT_STORE.getDiskHits();
+                    }
+                });
+                Metrics.gauge("parser.resultStore.misses", new Gauge() {
+                    public long getValue() {
+                        return RESULT_STORE.getMisses();
+                    }
+                });
+                Metrics.gauge("parser.resultStore.coalesced", new Gauge() {
+                    public long getValue() {
+                        return STORE_PARSER.getCoalesced();
+                    }
+                });
+                Metrics.gauge("parser.resultStore.memoryBytes", new Gauge() {
+                    public long getValue() {
+                        return RESULT_STORE.getMemoryBytes();
+                    }
+                });
+            }
+        }
+
+    }
+
+    private static SentenceSegmenter createSegmenter() {
+        final String name = System.getProperty(SEGMENTER_PROPERTY, "heuristic");
+        if ("heuristic".equalsIgnoreCase(name)) {
+            return new HeuristicSentenceSegmenter();
+        } else if ("rules".equalsIgnoreCase(name)) {
+            logger.info("Splitting sentences by rule");
+            return new RuleBasedSentenceSegmenter();
+        }
+
+        try {
+            final SentenceSegmenter segmenter = Class.forName(name).asSubclass(SentenceSegmenter.class)
+                    .getDeclaredConstructor().newInstance();
+            logger.info("Splitting sentences with " + name);
+            return segmenter;
+        } catch (ReflectiveOperationException e) {
+            logger.severe("Unable to create sentence segmenter " + name + ", using the heuristic: " + e);
+            return new HeuristicSentenceSegmenter();
+        } catch (RuntimeException e) {
+            logger.severe("Unable to create sentence segmenter " + name + ", using the heuristic: " + e);
+            return new HeuristicSentenceSegmenter();
+        }
     }
 
     public static Parser getParser() {
         return ParserFactory.parser;
     }
 
+    /**
+     * Load the models and build the parser now rather than on the first parse;
+     * blocks until they are ready
+     */
+    public static void load() {
+        // touching the holder runs its initializer, once
+        Loaded.PARSER.getClass();
+    }
+
+    /**
+     * Create the sentence workers up front, so the first requests do not pay
+     * for them
+     */
+    static void prestartWorkers() throws Exception {
+        while (Loaded.WORKERS.getNumIdle() + Loaded.WORKERS.getNumActive() < Loaded.WORKER_COUNT) {
+            Loaded.WORKERS.addObject();
+        }
+    }
+
+    /**
+     * @return the parsed sentence cache, or null if caching is disabled
+     */
+    public static SentenceCache getSentenceCache() {
+        return Loaded.SENTENCE_CACHE;
+    }
+
+    /**
+     * @return the document result store, or null if it is disabled
+     */
+    public static DocumentResultStore getResultStore() {
+        return Loaded.RESULT_STORE;
+    }
+
+    /**
+     * @return the slow document recorder, or null if it is disabled
+     */
+    public static SlowDocumentRecorder getSlowDocumentRecorder() {
+        return Loaded.SLOW_DOCUMENTS;
+    }
+
+    /**
+     * @return the cross-document entity index, or null if it is disabled
+     */
+    public static EntityIndex getEntityIndex() {
+        return Loaded.ENTITY_INDEX;
+    }
+
+    /**
+     * @return the segmenter the parser splits sentences with
+     */
+    public static SentenceSegmenter getSegmenter() {
+        return ParserFactory.SEGMENTER;
+    }
+
+    /**
+     * @return the maximum number of sentences that may be parsed at once; the
+     *         chart memory budget may allow fewer once the models are loaded
+     */
+    public static int getPoolSize() {
+        return ParserFactory.POOL_SIZE;
+    }
+
 }
@@ -19,317 +19,501 @@
 package com.mothsoft.alexis.stanford.parser;
 
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.io.Reader;
+import java.io.StringWriter;
 import java.nio.charset.Charset;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.LinkedHashMap;
+import java.util.Deque;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.pool.ObjectPool;
 
-import edu.stanford.nlp.ie.NERClassifierCombiner;
-import edu.stanford.nlp.ie.crf.CRFClassifier;
-import edu.stanford.nlp.ling.CoreAnnotations.AnswerAnnotation;
-import edu.stanford.nlp.ling.CoreAnnotations.TextAnnotation;
-import edu.stanford.nlp.ling.CoreLabel;
 import edu.stanford.nlp.ling.HasWord;
+import edu.stanford.nlp.ling.TaggedWord;
 import edu.stanford.nlp.objectbank.TokenizerFactory;
-import edu.stanford.nlp.parser.lexparser.LexicalizedParser;
 import edu.stanford.nlp.process.PTBTokenizer;
 import edu.stanford.nlp.process.Tokenizer;
 import edu.stanford.nlp.process.WordTokenFactory;
-import edu.stanford.nlp.trees.PennTreebankLanguagePack;
 import edu.stanford.nlp.trees.Tree;
-import edu.stanford.nlp.trees.TreePrint;
-import edu.stanford.nlp.util.XMLUtils;
 
 class ParserImpl implements Parser {
 
-    private static final String EXCLAMATION = "!";
-    private static final String QUESTION_MARK = "?";
-    private static final String PERIOD = ".";
     private static final String UTF_8 = "UTF-8";
-    private static final String DOCUMENT_XML_OPEN = "<?xml version=\"1.0\" encoding=\"utf-8\" ?><document><sentences>";
-    private static final String DOCUMENT_XML_CLOSE = "</names></document>";
-    private static final String SENTENCES_XML_CLOSE = "</sentences>";
-    private static final String NAME_XML_OPEN_FORMAT = "<name count=\"%d\">";
-    private static final String NAMES_XML_OPEN = "<names>";
-    private static final String NAME_XML_CLOSE = "</name>";
 
     private static final Logger logger = Logger.getLogger(ParserImpl.class.getName());
 
     @SuppressWarnings("rawtypes")
-    private static TokenizerFactory TOKENIZER_FACTORY;
-    private static String TOKENIZER_OPTIONS;
-    private static TreePrint TREE_PRINT;
-    private static LexicalizedParser PARSER;
-    private static NERClassifierCombiner CLASSIFIER;
-
-    private static final Set<String> DELIMITERS = new HashSet<String>();
-
-    private static final Set<String> NAME_TYPES = new HashSet<String>();
-
-    static {
-        DELIMITERS.add(",");
-        DELIMITERS.add(";");
-        DELIMITERS.add("--");
-        DELIMITERS.add("-");
-
-        NAME_TYPES.add("ORGANIZATION");
-        NAME_TYPES.add("PERSON");
-        NAME_TYPES.add("LOCATION");
-        NAME_TYPES.add("MISC");
-        init();
+    private static final TokenizerFactory TOKENIZER_FACTORY = PTBTokenizer.factory(false, new WordTokenFactory());
+    private static final String TOKENIZER_OPTIONS = "asciiQuotes=true,escapeForwardSlashAsterisk=false";
+
+    private final ObjectPool<SentenceWorker> workers;
+    private final ExecutorService sentenceExecutor;
+    private final int window;
+    private final SentenceCache cache;
+    private final SentenceScheduler scheduler;
+    private final ParseBudget budget;
+    private final EntityIndex entityIndex;
+    private final SentenceSegmenter segmenter;
+    private final ParsePolicy policy;
+
+    ParserImpl(final ObjectPool<SentenceWorker> workers, final ParserSettings settings) {
+        super();
+        this.workers = workers;
+        this.sentenceExecutor = settings.getSentenceExecutor();
+        this.window = Math.max(1, settings.getWindow());
+        this.cache = settings.getCache();
+        this.scheduler = settings.getScheduler();
+        this.budget = settings.getBudget();
+        this.entityIndex = settings.getEntityIndex();
+        this.segmenter = settings.getSegmenter();
+        this.policy = settings.getPolicy();
     }
 
-    private static void init() {
-        synchronized (ParserImpl.class) {
-            TOKENIZER_FACTORY = PTBTokenizer.factory(false, new WordTokenFactory());
-            TOKENIZER_OPTIONS = "asciiQuotes=true,escapeForwardSlashAsterisk=false";
-            TREE_PRINT = new TreePrint("wordsAndTags,typedDependencies", "xml,basicDependencies",
-                    new PennTreebankLanguagePack());
-            PARSER = LexicalizedParser
-                    .getParserFromSerializedFile("edu/stanford/nlp/models/lexparser/englishPCFG.ser.gz");
-            try {
-                CLASSIFIER = new NERClassifierCombiner(true, false,
-                        CRFClassifier
-                                .getClassifier("edu/stanford/nlp/models/ner/english.all.3class.distsim.crf.ser.gz"));
-            } catch (RuntimeException e) {
-                throw e;
-            } catch (Exception e) {
-                throw new RuntimeException(e);
-            }
-        }
+    public void parse(final InputStream is, final OutputStream os) throws IOException {
+        parse(is, os, new ParseOptions());
     }
 
-    ParserImpl() {
-        super();
+    @SuppressWarnings("unchecked")
+    static Tokenizer<HasWord> tokenizer(final Reader reader) {
+        return TOKENIZER_FACTORY.getTokenizer(reader, TOKENIZER_OPTIONS);
     }
 
-    @SuppressWarnings("unchecked")
-    public void parse(final InputStream is, final OutputStream os) throws IOException {
+    public void parse(final InputStream is, final OutputStream os, final ParseOptions options) throws IOException {
 
-        final long start = System.currentTimeMillis();
+        final long start = System.nanoTime();
+        final long deadline = this.budget.deadline(start);
         Reader reader = null;
-        PrintWriter printWriter = null;
+        final Deque<Future<SentenceResult>> pending = new ArrayDeque<Future<SentenceResult>>();
         try {
             reader = new BufferedReader(new InputStreamReader(is, Charset.forName(UTF_8)));
-            final BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(os, Charset.forName(UTF_8)));
-            writer.write(DOCUMENT_XML_OPEN);
-            printWriter = new PrintWriter(writer);
+            final DocumentWriter writer = options.isFragment() ? new FragmentDocumentWriter(os) : DocumentWriter
+                    .create(options.getFormat(), os);
+            writer.startDocument();
 
-            final Tokenizer<HasWord> tokenizer = TOKENIZER_FACTORY.getTokenizer(reader, TOKENIZER_OPTIONS);
+            final Tokenizer<HasWord> tokenizer = tokenizer(reader);
 
-            final List<HasWord> sentence = new ArrayList<HasWord>();
-            final Map<String, Name> names = new LinkedHashMap<String, Name>();
+            List<HasWord> sentence = new ArrayList<HasWord>();
+            final DocumentNames names = new DocumentNames();
+
+            long tokenizeNanos = 0;
+            long splitNanos = 0;
+            int sentences = 0;
+            long mark = System.nanoTime();
 
             while (tokenizer.hasNext()) {
                 final HasWord word = tokenizer.next();
-                sentence.add(word);
-
-                if (PERIOD.equals(word.word()) || QUESTION_MARK.equals(word.word()) || EXCLAMATION.equals(word.word())
-                        || isLongSentenceAtLogicalDelimiter(sentence, word) || probablyNotASentence(sentence)) {
-                    captureSentence(sentence, printWriter, names, 0);
-                    sentence.clear();
-                    os.flush();
+                final long tokenized = System.nanoTime();
+                tokenizeNanos += tokenized - mark;
+
+                final boolean endsSentence = !sentence.isEmpty() && this.segmenter.endsBefore(sentence, word);
+                mark = System.nanoTime();
+                splitNanos += mark - tokenized;
+
+                if (endsSentence) {
+                    sentences += submitSentences(sentence, options, deadline, pending, writer, names);
+                    if (this.sentenceExecutor == null) {
+                        // done with; nothing keeps the tokens of a finished sentence
+                        sentence.clear();
+                    } else {
+                        sentence = new ArrayList<HasWord>(sentence.size());
+                    }
+                    mark = System.nanoTime();
                 }
+                sentence.add(word);
             }
 
             if (!sentence.isEmpty()) {
-                captureSentence(sentence, printWriter, names, 0);
-                sentence.clear();
+                sentences += submitSentences(sentence, options, deadline, pending, writer, names);
             }
 
-            writer.write(SENTENCES_XML_CLOSE);
+            ParserMetrics.TOKENIZE.update(tokenizeNanos / 1000L);
+            ParserMetrics.SPLIT.update(splitNanos / 1000L);
+            ParserMetrics.SENTENCES_PER_DOCUMENT.update(sentences);
 
-            writer.write(NAMES_XML_OPEN);
-
-            for (final Name name : names.values()) {
-                final String openName = String.format(NAME_XML_OPEN_FORMAT, name.count);
-                writer.write(openName);
-                writer.write(XMLUtils.escapeElementXML(name.getName()));
-                writer.write(NAME_XML_CLOSE);
+            while (!pending.isEmpty()) {
+                writeSentence(await(pending.removeFirst()), options, writer, names);
             }
 
-            writer.write(DOCUMENT_XML_CLOSE);
-            writer.flush();
+            writer.endSentences();
+
+            names.write(writer);
+
+            writer.endDocument();
+
+            // a fragment is indexed with the rest of its document
+            if (this.entityIndex != null && options.isIndexEntities() && !options.isFragment()) {
+                names.index(this.entityIndex);
+            }
 
         } finally {
+            for (final Future<SentenceResult> future : pending) {
+                future.cancel(false);
+            }
             IOUtils.closeQuietly(reader);
         }
 
+        ParserMetrics.DOCUMENT.updateSince(start);
+        ParserMetrics.document(options.getLane()).updateSince(start);
+        ParserMetrics.documents(options.getLevel()).increment();
         if (logger.isLoggable(Level.FINE)) {
-            logger.fine("Parsing took: " + ((System.currentTimeMillis() - start) / 1000.00));
+            logger.fine("Parsing took: " + ((System.nanoTime() - start) / 1000000000.00));
         }
     }
 
-    private boolean probablyNotASentence(final List<HasWord> sentence) {
-        // sometimes we get random streams of gibberish from web content. If we
-        // haven't encountered a real sentence ending at 35 terms, let's call it
-        // quits
-        return sentence.size() > 35;
+    /**
+     * Submit the sentence, in pieces if it is too long to parse whole; below
+     * the FULL analysis level nothing is parsed, so it is never cut.
+     * 
+     * @return the number of sentences submitted
+     */
+    private int submitSentences(final List<HasWord> sentence, final ParseOptions options, final long deadline,
+            final Deque<Future<SentenceResult>> pending, final DocumentWriter writer, final DocumentNames names)
+            throws IOException {
+        if (options.getLevel() != AnalysisLevel.FULL) {
+            submitSentence(sentence, options, deadline, pending, writer, names);
+            return 1;
+        }
+
+        final List<List<HasWord>> pieces = this.policy.chunk(sentence);
+        if (pieces.size() > 1) {
+            ParserMetrics.CHUNKED.increment();
+        }
+        for (final List<HasWord> piece : pieces) {
+            submitSentence(piece, options, deadline, pending, writer, names);
+        }
+        return pieces.size();
     }
 
-    private synchronized void captureSentence(final List<HasWord> sentence, final PrintWriter printWriter,
-            final Map<String, Name> names, int tryCount) {
-        try {
-            final Tree tree = PARSER.parseTree(sentence);
-            TREE_PRINT.printTree(tree, printWriter);
-        } catch (Exception e) {
-            logger.severe("Encountered Exception - may be swallowed OutOfMemoryError in Stanford NLP - will try cleanup!");
-            e.printStackTrace(System.err);
+    /**
+     * Parse the sentence now, or hand it to the sentence executor and write out
+     * whatever has already finished at the head of the document.
+     */
+    private void submitSentence(final List<HasWord> sentence, final ParseOptions options, final long deadline,
+            final Deque<Future<SentenceResult>> pending, final DocumentWriter writer, final DocumentNames names)
+            throws IOException {
+        ParserMetrics.TOKENS_PER_SENTENCE.update(sentence.size());
+        ParserMetrics.sentences(options.getLane()).increment();
+        final int index = options.getProfile() == null ? -1 : options.getProfile().add(sentence);
+
+        if (this.sentenceExecutor == null) {
+            writeSentence(profileSentence(sentence, options, deadline, index), options, writer, names);
+            return;
+        }
 
-            // trying to reinitialize
-            reinit();
+        if (pending.size() >= this.window) {
+            writeSentence(await(pending.removeFirst()), options, writer, names);
+        }
 
-            if (tryCount > 0) {
-                logger.severe("Failed again on try " + tryCount + " will throw hands up and fail");
-                throw (new RuntimeException(e));
-            } else {
-                logger.info("Retrying sentence");
-                captureSentence(sentence, printWriter, names, tryCount + 1);
+        pending.addLast(this.sentenceExecutor.submit(new Callable<SentenceResult>() {
+            public SentenceResult call() {
+                return profileSentence(sentence, options, deadline, index);
             }
+        }));
 
-        } catch (OutOfMemoryError oom) {
-            logger.severe("Encountered OutOfMemoryError - will try cleanup");
-            oom.printStackTrace(System.err);
-
-            // trying to reinitialize
-            reinit();
+        while (!pending.isEmpty() && pending.peekFirst().isDone()) {
+            writeSentence(await(pending.removeFirst()), options, writer, names);
+        }
+    }
 
-            if (tryCount > 0) {
-                logger.severe("Failed again on try " + tryCount + " will throw hands up and fail");
-                throw oom;
-            } else {
-                logger.info("Retrying sentence");
-                captureSentence(sentence, printWriter, names, tryCount + 1);
+    private SentenceResult await(final Future<SentenceResult> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
             }
+            throw new RuntimeException(cause);
         }
-        captureNamedEntities(sentence, names);
     }
 
-    private void reinit() {
-        ParserImpl.CLASSIFIER = null;
-        ParserImpl.PARSER = null;
-        ParserImpl.TOKENIZER_FACTORY = null;
-        ParserImpl.TREE_PRINT = null;
+    private void writeSentence(final SentenceResult result, final ParseOptions options, final DocumentWriter writer,
+            final DocumentNames names) throws IOException {
+        // a fragment keeps every sentence, for the names it carries
+        if (options.getLevel() != AnalysisLevel.NAMES || options.isFragment()) {
+            writer.writeSentence(result);
+        }
+        if (result.isDegraded()) {
+            options.setDegraded();
+        }
+        names.add(result.getNames());
+        // push each finished sentence through to the client; chunked replies
+        // count sentences by these flushes
+        writer.flush();
+    }
+
+    /**
+     * Parse the sentence, timed into the document's profile if it has one
+     */
+    private SentenceResult profileSentence(final List<HasWord> sentence, final ParseOptions options,
+            final long deadline, final int index) {
+        final DocumentProfile profile = options.getProfile();
+        if (profile == null) {
+            return parseSentence(sentence, options, deadline);
+        }
+
+        final long start = System.nanoTime();
+        final SentenceResult result = parseSentence(sentence, options, deadline);
+        profile.time(index, (System.nanoTime() - start) / 1000L, result.isDegraded());
+        return result;
+    }
 
-        logger.severe("Trying explicit System.gc call against all my better judgment");
-        System.gc();
+    private SentenceResult parseSentence(final List<HasWord> sentence, final ParseOptions options,
+            final long deadline) {
+        if (this.cache == null || !options.isUseSentenceCache()) {
+            return scheduleSentence(sentence, options, deadline);
+        }
 
-        logger.warning("Now trying to reinitialize Stanford NLP components");
-        init();
+        final String key = SentenceCache.keyOf(sentence) + options.getCacheKeySuffix();
+        SentenceResult result = this.cache.get(key);
+        if (result == null) {
+            result = scheduleSentence(sentence, options, deadline);
+            if (!result.isDegraded()) {
+                this.cache.put(key, result);
+            }
+        }
+        return result;
     }
 
-    private synchronized void captureNamedEntities(final List<HasWord> sentence, final Map<String, Name> names) {
-        final List<CoreLabel> labels = CLASSIFIER.classifySentence(sentence);
+    /**
+     * Wait for the sentence's turn in its lane, cheapest first; the slot is
+     * held across a retry so a failing sentence is not queued twice. A
+     * sentence that cannot be parsed within its time or memory budget is only
+     * tagged. Below the FULL analysis level nothing is parsed, so there is no
+     * parse to estimate or budget; nor is there for a sentence the policy
+     * skips.
+     */
+    private SentenceResult scheduleSentence(final List<HasWord> sentence, final ParseOptions options,
+            final long deadline) {
+        final List<TaggedWord> skipped = options.getLevel() == AnalysisLevel.FULL ? skip(sentence) : null;
+        final boolean parse = options.getLevel() == AnalysisLevel.FULL && skipped == null;
+        if (this.scheduler == null) {
+            return parse ? captureSentence(sentence, options.getFormat(), 0) : captureUnparsed(sentence, skipped,
+                    options, false);
+        }
 
-        final List<String> words = new ArrayList<String>();
-        String prevTag = "";
+        final Lane lane = options.getLane();
+        final int tokens = sentence.size();
+        final long estimate = parse ? this.scheduler.estimate(tokens) : 0L;
+        final long needed = parse ? this.scheduler.chartBytes(tokens) : 0L;
+        boolean degrade = parse && this.budget.exceeded(estimate, deadline);
+        if (!this.scheduler.fits(needed)) {
+            ParserMetrics.TOO_LARGE.increment();
+            degrade = true;
+        }
+        final long chartBytes = degrade ? 0L : needed;
+        try {
+            this.scheduler.acquire(lane, degrade ? 0 : estimate, chartBytes);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
 
-        for (final CoreLabel label : labels) {
-            final String answer = label.get(AnswerAnnotation.class);
-            final String tag = answer == null ? "" : answer;
-            final String word = label.get(TextAnnotation.class);
+        try {
+            if (!parse) {
+                return captureUnparsed(sentence, skipped, options, false);
+            }
 
-            if (tag.equals(CLASSIFIER.flags.backgroundSymbol) || (!prevTag.isEmpty() && !tag.equals(prevTag))) {
-                flushWords(words, names);
+            // waiting for the slot may have used up the document's time
+            degrade = degrade || this.budget.exceeded(estimate, deadline);
+            if (degrade) {
+                ParserMetrics.DEGRADED.increment();
+                return captureUnparsed(sentence, null, options, true);
             }
 
-            if (NAME_TYPES.contains(tag)) {
-                words.add(word);
+            final long start = System.nanoTime();
+            final SentenceResult result = captureSentence(sentence, options.getFormat(), 0);
+            final long elapsed = (System.nanoTime() - start) / 1000L;
+            if (options.isRecordCost()) {
+                this.scheduler.getCostModel().record(tokens, estimate, elapsed);
             }
-            prevTag = tag;
+            if (this.budget.getSentenceMicros() > 0 && elapsed > this.budget.getSentenceMicros()) {
+                ParserMetrics.OVERRUN.increment();
+            }
+            return result;
+        } finally {
+            this.scheduler.release(lane, chartBytes);
         }
+    }
 
-        flushWords(words, names);
+    /**
+     * @return the tags of a sentence the policy says not to parse, or null to
+     *         parse it; only boilerplate that needs the tags to tell is tagged
+     *         and then parsed anyway
+     */
+    private List<TaggedWord> skip(final List<HasWord> sentence) {
+        if (this.policy.skip(sentence)) {
+            ParserMetrics.SKIPPED.increment();
+            return tag(sentence);
+        } else if (this.policy.needsTags(sentence)) {
+            final List<TaggedWord> tagged = tag(sentence);
+            if (this.policy.skipTagged(tagged)) {
+                ParserMetrics.SKIPPED.increment();
+                return tagged;
+            }
+        }
+        return null;
+    }
 
+    private List<TaggedWord> tag(final List<HasWord> sentence) {
+        final long start = System.nanoTime();
+        final List<TaggedWord> tagged = SentenceTagger.tag(sentence);
+        ParserMetrics.TAG.updateSince(start);
+        return tagged;
     }
 
-    private void flushWords(List<String> words, Map<String, Name> names) {
-        if (!words.isEmpty()) {
-            String term = "";
-            for (final String ith : words) {
-                term += ith + " ";
+    /**
+     * Named entities, and unless only names were asked for, the tagger's POS
+     * tags in place of a parse.
+     * 
+     * @param tagged
+     *            - the sentence's tags if it has already been tagged
+     * @param degraded
+     *            - true if the sentence should have been parsed
+     */
+    private SentenceResult captureUnparsed(final List<HasWord> sentence, List<TaggedWord> tagged,
+            final ParseOptions options, final boolean degraded) {
+        if (tagged == null && (degraded || options.getLevel() == AnalysisLevel.TAGS)) {
+            tagged = tag(sentence);
+        }
+
+        final SentenceWorker worker = borrowWorker();
+        try {
+            final long start = System.nanoTime();
+            final List<NamedEntity> names = captureNamedEntities(worker, sentence);
+            ParserMetrics.NER.updateSince(start);
+            if (tagged == null) {
+                return new SentenceResult((String) null, names, false);
+            } else if (options.getFormat() == OutputFormat.XML) {
+                return new SentenceResult(SentenceTagger.render(tagged, degraded), names, degraded);
             }
-            term = term.trim();
+            return new SentenceResult(SentenceGraph.tagged(tagged), names, degraded);
+        } finally {
+            returnWorker(worker);
+        }
+    }
 
-            if (names.containsKey(term)) {
-                names.get(term).increment();
+    private SentenceResult captureSentence(final List<HasWord> sentence, final OutputFormat format, int tryCount) {
+        final SentenceWorker worker = borrowWorker();
+        boolean valid = true;
+        try {
+            // render the tree off to the side so a failed attempt never leaves
+            // half a sentence in the document
+            long start = System.nanoTime();
+            final Tree parsed = worker.parse(sentence);
+            ParserMetrics.PARSE.updateSince(start);
+
+            start = System.nanoTime();
+            String tree = null;
+            SentenceGraph graph = null;
+            if (format == OutputFormat.XML) {
+                final StringWriter printed = new StringWriter();
+                worker.print(parsed, new PrintWriter(printed));
+                tree = printed.toString();
             } else {
-                final Name name = new Name(term);
-                name.increment();
-                names.put(term, name);
+                graph = worker.graph(parsed, sentence);
             }
+            ParserMetrics.SERIALIZE.updateSince(start);
 
-            words.clear();
-        }
-    }
+            start = System.nanoTime();
+            final List<NamedEntity> names = captureNamedEntities(worker, sentence);
+            ParserMetrics.NER.updateSince(start);
+            if (graph != null) {
+                return new SentenceResult(graph, names, false);
+            }
+            return new SentenceResult(tree, names);
+        } catch (Exception e) {
+            logger.severe("Encountered Exception - may be swallowed OutOfMemoryError in Stanford NLP - will try cleanup!");
+            e.printStackTrace(System.err);
 
-    private boolean isLongSentenceAtLogicalDelimiter(final List<HasWord> sentence, final HasWord word) {
-        return sentence.size() >= 25 && DELIMITERS.contains(word.word());
-    }
+            // discard this worker's parser state rather than trusting it again
+            valid = false;
+            reinit(worker);
 
-    private class Name {
-        private String name;
-        private Integer count;
+            if (tryCount > 0) {
+                logger.severe("Failed again on try " + tryCount + " will throw hands up and fail");
+                throw (new RuntimeException(e));
+            } else {
+                logger.info("Retrying sentence");
+                return captureSentence(sentence, format, tryCount + 1);
+            }
 
-        public Name(final String name) {
-            this.name = name;
-            count = 0;
-        }
+        } catch (OutOfMemoryError oom) {
+            logger.severe("Encountered OutOfMemoryError - will try cleanup");
+            oom.printStackTrace(System.err);
 
-        public String getName() {
-            return this.name;
-        }
+            valid = false;
+            reinit(worker);
 
-        public void increment() {
-            count++;
+            if (tryCount > 0) {
+                logger.severe("Failed again on try " + tryCount + " will throw hands up and fail");
+                throw oom;
+            } else {
+                logger.info("Retrying sentence");
+                return captureSentence(sentence, format, tryCount + 1);
+            }
+        } finally {
+            if (valid) {
+                returnWorker(worker);
+            }
         }
+    }
 
-        @Override
-        public int hashCode() {
-            final int prime = 31;
-            int result = 1;
-            result = prime * result + getOuterType().hashCode();
-            result = prime * result + ((name == null) ? 0 : name.hashCode());
-            return result;
+    private SentenceWorker borrowWorker() {
+        final long start = System.nanoTime();
+        try {
+            return this.workers.borrowObject();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        } finally {
+            ParserMetrics.POOL_WAIT.updateSince(start);
         }
+    }
 
-        @Override
-        public boolean equals(Object obj) {
-            if (this == obj)
-                return true;
-            if (obj == null)
-                return false;
-            if (getClass() != obj.getClass())
-                return false;
-            Name other = (Name) obj;
-            if (!getOuterType().equals(other.getOuterType()))
-                return false;
-            if (name == null) {
-                if (other.name != null)
-                    return false;
-            } else if (!name.equals(other.name))
-                return false;
-            return true;
+    private void returnWorker(final SentenceWorker worker) {
+        try {
+            this.workers.returnObject(worker);
+        } catch (Exception e) {
+            logger.warning("Unable to return sentence worker to pool: " + e.getMessage());
         }
+    }
 
-        private ParserImpl getOuterType() {
-            return ParserImpl.this;
+    /**
+     * Throw away a worker whose parser state may be corrupt. The shared models
+     * are read-only and stay loaded; the pool builds a fresh worker on demand.
+     */
+    private void reinit(final SentenceWorker worker) {
+        logger.warning("Discarding sentence worker and its parser state");
+        ParserMetrics.REINIT.increment();
+        try {
+            this.workers.invalidateObject(worker);
+        } catch (Exception e) {
+            logger.warning("Unable to invalidate sentence worker: " + e.getMessage());
         }
+    }
 
+    private List<NamedEntity> captureNamedEntities(final SentenceWorker worker, final List<HasWord> sentence) {
+        return worker.names(worker.classify(sentence));
     }
+
 }
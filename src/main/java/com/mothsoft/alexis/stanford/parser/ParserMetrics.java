@@ -0,0 +1,85 @@
+/*
+    stanford-nlp-war : provides REST, JMS, and HTML form connectivity to Stanford CoreNLP
+    Copyright (C) 2012  Tim Garrett, Mothsoft LLC
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License along
+    with this program; if not, write to the Free Software Foundation, Inc.,
+    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package com.mothsoft.alexis.stanford.parser;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import com.mothsoft.alexis.stanford.metrics.Counter;
+import com.mothsoft.alexis.stanford.metrics.Histogram;
+import com.mothsoft.alexis.stanford.metrics.Metrics;
+
+/**
+ * The parser's own metrics, looked up once. Latencies are in microseconds.
+ */
+final class ParserMetrics {
+
+    static final Histogram DOCUMENT = Metrics.histogram("parser.document");
+    static final Histogram TOKENIZE = Metrics.histogram("parser.tokenize");
+    static final Histogram SPLIT = Metrics.histogram("parser.split");
+    static final Histogram PARSE = Metrics.histogram("parser.parse");
+    static final Histogram NER = Metrics.histogram("parser.ner");
+    static final Histogram TAG = Metrics.histogram("parser.tag");
+    static final Histogram SERIALIZE = Metrics.histogram("parser.serialize");
+    static final Histogram POOL_WAIT = Metrics.histogram("parser.poolWait");
+
+    static final Histogram SENTENCES_PER_DOCUMENT = Metrics.histogram("parser.sentencesPerDocument");
+    static final Histogram TOKENS_PER_SENTENCE = Metrics.histogram("parser.tokensPerSentence");
+
+    static final Counter REINIT = Metrics.counter("parser.reinit");
+    static final Counter DEGRADED = Metrics.counter("parser.degraded");
+    static final Counter OVERRUN = Metrics.counter("parser.budget.overrun");
+    static final Counter TOO_LARGE = Metrics.counter("parser.chartMemory.tooLarge");
+    static final Counter CHUNKED = Metrics.counter("parser.policy.chunked");
+    static final Counter SKIPPED = Metrics.counter("parser.policy.skipped");
+    static final Counter SLOW = Metrics.counter("parser.slow.documents");
+    static final Counter SLOW_CAPTURED = Metrics.counter("parser.slow.captured");
+
+    private static final Map<Lane, Histogram> LANE_DOCUMENT = new EnumMap<Lane, Histogram>(Lane.class);
+    private static final Map<Lane, Counter> LANE_SENTENCES = new EnumMap<Lane, Counter>(Lane.class);
+    private static final Map<AnalysisLevel, Counter> LEVEL_DOCUMENTS = new EnumMap<AnalysisLevel, Counter>(
+            AnalysisLevel.class);
+
+    static {
+        for (final Lane lane : Lane.values()) {
+            LANE_DOCUMENT.put(lane, Metrics.histogram("parser.lane." + lane.getMetricName() + ".document"));
+            LANE_SENTENCES.put(lane, Metrics.counter("parser.lane." + lane.getMetricName() + ".sentences"));
+        }
+        for (final AnalysisLevel level : AnalysisLevel.values()) {
+            LEVEL_DOCUMENTS.put(level, Metrics.counter("parser.level." + level.name().toLowerCase() + ".documents"));
+        }
+    }
+
+    static Histogram document(final Lane lane) {
+        return LANE_DOCUMENT.get(lane);
+    }
+
+    static Counter sentences(final Lane lane) {
+        return LANE_SENTENCES.get(lane);
+    }
+
+    static Counter documents(final AnalysisLevel level) {
+        return LEVEL_DOCUMENTS.get(level);
+    }
+
+    private ParserMetrics() {
+        super();
+    }
+
+}
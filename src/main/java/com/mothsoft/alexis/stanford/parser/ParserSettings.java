@@ -0,0 +1,134 @@
+/*
+    stanford-nlp-war : provides REST, JMS, and HTML form connectivity to Stanford CoreNLP
+    Copyright (C) 2012  Tim Garrett, Mothsoft LLC
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License along
+    with this program; if not, write to the Free Software Foundation, Inc.,
+    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package com.mothsoft.alexis.stanford.parser;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * How a {@link ParserImpl} is assembled. Everything is optional; the defaults
+ * parse one sentence at a time, first come first served, with no cache, time
+ * budget or entity index.
+ */
+class ParserSettings {
+
+    private ExecutorService sentenceExecutor;
+    private int window;
+    private SentenceCache cache;
+    private SentenceScheduler scheduler;
+    private ParseBudget budget = ParseBudget.UNLIMITED;
+    private EntityIndex entityIndex;
+    private SentenceSegmenter segmenter = new HeuristicSentenceSegmenter();
+    private ParsePolicy policy = ParsePolicy.UNLIMITED;
+
+    ExecutorService getSentenceExecutor() {
+        return this.sentenceExecutor;
+    }
+
+    /**
+     * @param sentenceExecutor
+     *            - if not null, sentences of a document are parsed on this
+     *            executor and written back in their original order
+     * @param window
+     *            - maximum number of sentences of one document in flight at
+     *            once when parsing in parallel
+     */
+    void setSentenceExecutor(final ExecutorService sentenceExecutor, final int window) {
+        this.sentenceExecutor = sentenceExecutor;
+        this.window = window;
+    }
+
+    int getWindow() {
+        return this.window;
+    }
+
+    SentenceCache getCache() {
+        return this.cache;
+    }
+
+    /**
+     * @param cache
+     *            - parsed sentence cache, or null to always parse
+     */
+    void setCache(final SentenceCache cache) {
+        this.cache = cache;
+    }
+
+    SentenceScheduler getScheduler() {
+        return this.scheduler;
+    }
+
+    /**
+     * @param scheduler
+     *            - orders sentences of different lanes ahead of the worker
+     *            pool, or null to take workers first come, first served
+     */
+    void setScheduler(final SentenceScheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    ParseBudget getBudget() {
+        return this.budget;
+    }
+
+    /**
+     * @param budget
+     *            - time allowed per sentence and per document; only enforced
+     *            with a scheduler, whose cost model provides the estimates
+     */
+    void setBudget(final ParseBudget budget) {
+        this.budget = budget;
+    }
+
+    EntityIndex getEntityIndex() {
+        return this.entityIndex;
+    }
+
+    /**
+     * @param entityIndex
+     *            - collects the names of every finished document, or null
+     */
+    void setEntityIndex(final EntityIndex entityIndex) {
+        this.entityIndex = entityIndex;
+    }
+
+    SentenceSegmenter getSegmenter() {
+        return this.segmenter;
+    }
+
+    /**
+     * @param segmenter
+     *            - decides where sentences end
+     */
+    void setSegmenter(final SentenceSegmenter segmenter) {
+        this.segmenter = segmenter;
+    }
+
+    ParsePolicy getPolicy() {
+        return this.policy;
+    }
+
+    /**
+     * @param policy
+     *            - cuts or skips sentences before they reach the parser
+     */
+    void setPolicy(final ParsePolicy policy) {
+        this.policy = policy;
+    }
+
+}
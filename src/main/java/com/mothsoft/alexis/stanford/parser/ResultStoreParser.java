@@ -0,0 +1,217 @@
+/*
+    stanford-nlp-war : provides REST, JMS, and HTML form connectivity to Stanford CoreNLP
+    Copyright (C) 2012  Tim Garrett, Mothsoft LLC
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License along
+    with this program; if not, write to the Free Software Foundation, Inc.,
+    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package com.mothsoft.alexis.stanford.parser;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Serves repeated documents (JMS redeliveries, client retries) from a
+ * {@link DocumentResultStore}. Identical documents that arrive while the first
+ * copy is still being parsed wait for that parse rather than starting their
+ * own. The request that does parse sees its output as it is written, the
+ * same as without the store. Output too large for the store is not kept, and
+ * requests waiting on it parse the document themselves.
+ */
+class ResultStoreParser implements Parser {
+
+    private final Parser delegate;
+    private final DocumentResultStore store;
+    private final ConcurrentMap<String, FutureTask<byte[]>> inFlight = new ConcurrentHashMap<String, FutureTask<byte[]>>();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    ResultStoreParser(final Parser delegate, final DocumentResultStore store) {
+        this.delegate = delegate;
+        this.store = store;
+    }
+
+    public void parse(final InputStream is, final OutputStream os) throws IOException {
+        parse(is, os, new ParseOptions());
+    }
+
+    public void parse(final InputStream is, final OutputStream os, final ParseOptions options) throws IOException {
+        if (!options.isUseResultStore()) {
+            this.delegate.parse(is, os, options);
+            return;
+        }
+
+        final byte[] content;
+        try {
+            content = IOUtils.toByteArray(is);
+        } finally {
+            IOUtils.closeQuietly(is);
+        }
+
+        final String key = DocumentResultStore.keyOf(content) + options.getDocumentKeySuffix();
+        final byte[] stored = this.store.get(key);
+        if (stored != null) {
+            os.write(stored);
+            os.flush();
+        } else {
+            parseOnce(key, content, options, os);
+        }
+    }
+
+    private void parseOnce(final String key, final byte[] content, final ParseOptions options, final OutputStream os)
+            throws IOException {
+        final int limit = this.store.getMaxEntryBytes();
+        final Tee tee = new Tee(new ByteArrayOutputStream(Math.min(content.length, limit)), limit, os);
+        final FutureTask<byte[]> task = new FutureTask<byte[]>(new Callable<byte[]>() {
+            public byte[] call() throws Exception {
+                final ParseOptions parseOptions = options.copy();
+                parseOptions.setProfile(options.getProfile());
+                ResultStoreParser.this.delegate.parse(new ByteArrayInputStream(content), tee, parseOptions);
+                if (tee.buffer == null) {
+                    return null;
+                }
+                final byte[] result = tee.buffer.toByteArray();
+                // a document that ran out of time should get another chance
+                if (!parseOptions.isDegraded()) {
+                    ResultStoreParser.this.store.put(key, result);
+                }
+                return result;
+            }
+        });
+
+        final FutureTask<byte[]> running = this.inFlight.putIfAbsent(key, task);
+        if (running == null) {
+            try {
+                task.run();
+            } finally {
+                this.inFlight.remove(key, task);
+            }
+            // already written as it was parsed
+            await(task);
+            if (tee.failure != null) {
+                throw tee.failure;
+            }
+        } else {
+            this.coalesced.incrementAndGet();
+            final byte[] result = await(running);
+            if (result == null) {
+                this.delegate.parse(new ByteArrayInputStream(content), os, options);
+                return;
+            }
+            os.write(result);
+            os.flush();
+        }
+    }
+
+    private byte[] await(final FutureTask<byte[]> running) throws IOException {
+        try {
+            return running.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
+    /**
+     * Copies the parse to the requester as it is written. If the requester's
+     * stream fails the parse still finishes, for the store and for anyone
+     * waiting on it. Past the limit the buffer is dropped.
+     */
+    private static class Tee extends OutputStream {
+        private ByteArrayOutputStream buffer;
+        private final int limit;
+        private final OutputStream os;
+        private IOException failure;
+
+        private Tee(final ByteArrayOutputStream buffer, final int limit, final OutputStream os) {
+            this.buffer = buffer;
+            this.limit = limit;
+            this.os = os;
+        }
+
+        @Override
+        public void write(final int b) {
+            if (fits(1)) {
+                this.buffer.write(b);
+            }
+            if (this.failure == null) {
+                try {
+                    this.os.write(b);
+                } catch (IOException e) {
+                    this.failure = e;
+                }
+            }
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) {
+            if (fits(len)) {
+                this.buffer.write(b, off, len);
+            }
+            if (this.failure == null) {
+                try {
+                    this.os.write(b, off, len);
+                } catch (IOException e) {
+                    this.failure = e;
+                }
+            }
+        }
+
+        @Override
+        public void flush() {
+            if (this.failure == null) {
+                try {
+                    this.os.flush();
+                } catch (IOException e) {
+                    this.failure = e;
+                }
+            }
+        }
+
+        private boolean fits(final int len) {
+            if (this.buffer != null && len > this.limit - this.buffer.size()) {
+                this.buffer = null;
+            }
+            return this.buffer != null;
+        }
+    }
+
+    /**
+     * @return number of requests that shared another request's parse
+     */
+    long getCoalesced() {
+        return this.coalesced.get();
+    }
+
+}
@@ -0,0 +1,95 @@
+/*
+    stanford-nlp-war : provides REST, JMS, and HTML form connectivity to Stanford CoreNLP
+    Copyright (C) 2012  Tim Garrett, Mothsoft LLC
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License along
+    with this program; if not, write to the Free Software Foundation, Inc.,
+    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package com.mothsoft.alexis.stanford.parser;
+
+import java.util.List;
+
+import edu.stanford.nlp.ling.HasWord;
+
+/**
+ * Ends sentences where the text does: after a run of ., ? and ! and any
+ * quotes or brackets that close around it, and not before a word in lower case
+ * or a number, which means the period was an abbreviation the tokenizer did
+ * not know ("approx. five"). Commas and dashes never end a sentence, so long
+ * sentences stay whole; bounding their parse cost is left to the
+ * {@link ParsePolicy}. A run of {@value #MAX_TOKENS} tokens with no end in
+ * sight is cut anyway.
+ */
+class RuleBasedSentenceSegmenter implements SentenceSegmenter {
+
+    static final int MAX_TOKENS = 200;
+
+    private static final String QUOTE = "\"";
+    private static final String SINGLE_QUOTE = "'";
+
+    public boolean endsBefore(final List<HasWord> sentence, final HasWord next) {
+        if (sentence.size() >= MAX_TOKENS) {
+            return true;
+        }
+
+        // step back over whatever closes around the terminator
+        int last = sentence.size() - 1;
+        while (last >= 0 && isClosing(sentence.subList(0, last), sentence.get(last).word())) {
+            last--;
+        }
+        if (last < 0 || !isTerminator(sentence.get(last).word())) {
+            return false;
+        }
+
+        final String word = next.word();
+        if (isTerminator(word) || isClosing(sentence, word)) {
+            return false;
+        }
+        final char c = word.charAt(0);
+        return !Character.isLowerCase(c) && !Character.isDigit(c);
+    }
+
+    private static boolean isTerminator(final String word) {
+        for (int i = 0; i < word.length(); i++) {
+            final char c = word.charAt(i);
+            if (c != '.' && c != '?' && c != '!') {
+                return false;
+            }
+        }
+        return word.length() > 0;
+    }
+
+    /**
+     * @param before
+     *            - the tokens ahead of <code>word</code>
+     */
+    private static boolean isClosing(final List<HasWord> before, final String word) {
+        if ("-RRB-".equals(word) || "-RSB-".equals(word) || "-RCB-".equals(word)) {
+            return true;
+        }
+        // ASCII quotes open and close alike; one closes if it has an odd
+        // number of its kind ahead of it
+        if (QUOTE.equals(word) || SINGLE_QUOTE.equals(word)) {
+            int count = 0;
+            for (final HasWord w : before) {
+                if (word.equals(w.word())) {
+                    count++;
+                }
+            }
+            return count % 2 == 1;
+        }
+        return false;
+    }
+
+}
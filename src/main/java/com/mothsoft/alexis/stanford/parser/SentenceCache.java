@@ -0,0 +1,103 @@
+/*
+    stanford-nlp-war : provides REST, JMS, and HTML form connectivity to Stanford CoreNLP
+    Copyright (C) 2012  Tim Garrett, Mothsoft LLC
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License along
+    with this program; if not, write to the Free Software Foundation, Inc.,
+    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package com.mothsoft.alexis.stanford.parser;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import edu.stanford.nlp.ling.HasWord;
+
+/**
+ * Least-recently-used cache of parsed sentences, keyed by the sentence's token
+ * sequence. Web content repeats a lot of boilerplate (navigation, footers, wire
+ * copy) and every copy would otherwise go through the PCFG and the CRF again.
+ */
+public class SentenceCache {
+
+    private static final char TOKEN_SEPARATOR = ' ';
+
+    private final int maxEntries;
+    private final Map<String, SentenceResult> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    @SuppressWarnings("serial")
+    SentenceCache(final int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<String, SentenceResult>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, SentenceResult> eldest) {
+                return size() > SentenceCache.this.maxEntries;
+            }
+        };
+    }
+
+    static String keyOf(final List<HasWord> sentence) {
+        final StringBuilder builder = new StringBuilder(sentence.size() * 8);
+        for (final HasWord word : sentence) {
+            if (builder.length() > 0) {
+                builder.append(TOKEN_SEPARATOR);
+            }
+            builder.append(word.word());
+        }
+        return builder.toString();
+    }
+
+    SentenceResult get(final String key) {
+        final SentenceResult result;
+        synchronized (this.entries) {
+            result = this.entries.get(key);
+        }
+
+        if (result == null) {
+            this.misses.incrementAndGet();
+        } else {
+            this.hits.incrementAndGet();
+        }
+        return result;
+    }
+
+    void put(final String key, final SentenceResult result) {
+        synchronized (this.entries) {
+            this.entries.put(key, result);
+        }
+    }
+
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    public long getMisses() {
+        return this.misses.get();
+    }
+
+    public int getSize() {
+        synchronized (this.entries) {
+            return this.entries.size();
+        }
+    }
+
+    public int getMaxEntries() {
+        return this.maxEntries;
+    }
+
+}
@@ -0,0 +1,122 @@
+/*
+    stanford-nlp-war : provides REST, JMS, and HTML form connectivity to Stanford CoreNLP
+    Copyright (C) 2012  Tim Garrett, Mothsoft LLC
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License along
+    with this program; if not, write to the Free Software Foundation, Inc.,
+    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package com.mothsoft.alexis.stanford.parser;
+
+import com.mothsoft.alexis.stanford.metrics.Histogram;
+import com.mothsoft.alexis.stanford.metrics.Metrics;
+
+/**
+ * Estimates how long a sentence will hold a worker. PCFG parsing grows with
+ * the cube of the sentence length on top of a fixed cost per sentence
+ * (borrowing a worker, tagging, NER), so the estimate is
+ * <code>overhead + coefficient * tokens<sup>3</sup></code>. Both follow the
+ * measured times as moving averages, so they adapt to the hardware and the
+ * text being parsed: sentences shorter than {@value #MIN_CUBIC_TOKENS} tokens,
+ * whose time is nearly all overhead, only update the overhead, and longer
+ * ones only the coefficient. The coefficient is kept within a factor of
+ * {@value #COEFFICIENT_RANGE} of where it started, so a run of outliers
+ * cannot make ordinary sentences look too expensive to parse.
+ * <p>
+ * Estimates and actual times are recorded as <code>parser.cost.estimate</code>
+ * and <code>parser.cost.actual</code>, and their ratio (actual / estimate, in
+ * percent) as <code>parser.cost.accuracy</code>.
+ */
+final class SentenceCostModel {
+
+    private static final Histogram ESTIMATE = Metrics.histogram("parser.cost.estimate");
+    private static final Histogram ACTUAL = Metrics.histogram("parser.cost.actual");
+    private static final Histogram ACCURACY = Metrics.histogram("parser.cost.accuracy");
+
+    /** roughly what a 20 token sentence costs on a current core */
+    private static final double INITIAL_NANOS_PER_CUBED_TOKEN = 20000.0;
+
+    private static final double SMOOTHING = 0.05;
+
+    static final int MIN_CUBIC_TOKENS = 8;
+    static final double COEFFICIENT_RANGE = 10.0;
+
+    /** a sentence that takes longer than this is not short of a cubic term */
+    private static final double MAX_OVERHEAD_MICROS = 50000.0;
+
+    private final double minNanosPerCubedToken;
+    private final double maxNanosPerCubedToken;
+
+    private volatile double nanosPerCubedToken;
+    private volatile double overheadMicros;
+
+    SentenceCostModel() {
+        this(INITIAL_NANOS_PER_CUBED_TOKEN);
+    }
+
+    SentenceCostModel(final double nanosPerCubedToken) {
+        this.nanosPerCubedToken = nanosPerCubedToken;
+        this.minNanosPerCubedToken = nanosPerCubedToken / COEFFICIENT_RANGE;
+        this.maxNanosPerCubedToken = nanosPerCubedToken * COEFFICIENT_RANGE;
+    }
+
+    /**
+     * @return estimated microseconds to parse a sentence of this many tokens
+     */
+    long estimate(final int tokens) {
+        final long estimate = Math.max(1L, (long) (this.overheadMicros + cube(tokens) * this.nanosPerCubedToken
+                / 1000.0));
+        ESTIMATE.update(estimate);
+        return estimate;
+    }
+
+    /**
+     * Fold a measured time back into the model; warm-up parses, with a cold
+     * JIT, should not be recorded
+     */
+    void record(final int tokens, final long estimateMicros, final long actualMicros) {
+        ACTUAL.update(actualMicros);
+        ACCURACY.update(actualMicros * 100L / Math.max(1L, estimateMicros));
+
+        if (tokens <= 0) {
+            return;
+        }
+
+        synchronized (this) {
+            if (tokens < MIN_CUBIC_TOKENS) {
+                final double observed = Math.min(actualMicros, MAX_OVERHEAD_MICROS);
+                this.overheadMicros += SMOOTHING * (observed - this.overheadMicros);
+            } else {
+                final double observed = Math.max(0.0, actualMicros - this.overheadMicros) * 1000.0 / cube(tokens);
+                final double coefficient = this.nanosPerCubedToken + SMOOTHING
+                        * (observed - this.nanosPerCubedToken);
+                this.nanosPerCubedToken = Math.max(this.minNanosPerCubedToken, Math.min(this.maxNanosPerCubedToken,
+                        coefficient));
+            }
+        }
+    }
+
+    double getNanosPerCubedToken() {
+        return this.nanosPerCubedToken;
+    }
+
+    double getOverheadMicros() {
+        return this.overheadMicros;
+    }
+
+    private static double cube(final int tokens) {
+        final double n = Math.max(1, tokens);
+        return n * n * n;
+    }
+
+}
@@ -0,0 +1,164 @@
+/*
+    stanford-nlp-war : provides REST, JMS, and HTML form connectivity to Stanford CoreNLP
+    Copyright (C) 2012  Tim Garrett, Mothsoft LLC
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License along
+    with this program; if not, write to the Free Software Foundation, Inc.,
+    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package com.mothsoft.alexis.stanford.parser;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+
+import edu.stanford.nlp.ling.HasWord;
+import edu.stanford.nlp.ling.TaggedWord;
+import edu.stanford.nlp.trees.GrammaticalStructureFactory;
+import edu.stanford.nlp.trees.Tree;
+import edu.stanford.nlp.trees.TypedDependency;
+
+/**
+ * The words, tags and typed dependencies of one sentence, for the formats that
+ * are not printed by <code>TreePrint</code>. Words are numbered from 1; a
+ * governor of 0 is the root. Tags are null for a sentence that could not be
+ * parsed.
+ */
+final class SentenceGraph {
+
+    private final String[] words;
+    private final String[] tags;
+    private final String[] relations;
+    private final int[] governors;
+    private final int[] dependents;
+
+    private SentenceGraph(final int words, final int dependencies) {
+        this.words = new String[words];
+        this.tags = new String[words];
+        this.relations = new String[dependencies];
+        this.governors = new int[dependencies];
+        this.dependents = new int[dependencies];
+    }
+
+    /**
+     * The basic typed dependencies, as <code>TreePrint</code> prints them
+     */
+    static SentenceGraph parsed(final Tree tree, final GrammaticalStructureFactory factory) {
+        final List<TaggedWord> tagged = tree.taggedYield();
+        final Collection<TypedDependency> dependencies = factory.newGrammaticalStructure(tree).typedDependencies();
+
+        final SentenceGraph graph = new SentenceGraph(tagged.size(), dependencies.size());
+        graph.tag(tagged);
+
+        int i = 0;
+        for (final TypedDependency dependency : dependencies) {
+            graph.relations[i] = dependency.reln().toString();
+            graph.governors[i] = dependency.gov().index();
+            graph.dependents[i] = dependency.dep().index();
+            i++;
+        }
+        return graph;
+    }
+
+    static SentenceGraph tagged(final List<TaggedWord> tagged) {
+        final SentenceGraph graph = new SentenceGraph(tagged.size(), 0);
+        graph.tag(tagged);
+        return graph;
+    }
+
+    static SentenceGraph unparsed(final List<HasWord> sentence) {
+        final SentenceGraph graph = new SentenceGraph(sentence.size(), 0);
+        for (int i = 0; i < sentence.size(); i++) {
+            graph.words[i] = sentence.get(i).word();
+        }
+        return graph;
+    }
+
+    private void tag(final List<TaggedWord> tagged) {
+        for (int i = 0; i < tagged.size(); i++) {
+            this.words[i] = tagged.get(i).word();
+            this.tags[i] = tagged.get(i).tag();
+        }
+    }
+
+    /**
+     * Everything, for {@link FragmentDocumentWriter}
+     */
+    void write(final DataOutput out) throws IOException {
+        out.writeInt(this.words.length);
+        for (int i = 0; i < this.words.length; i++) {
+            out.writeUTF(this.words[i]);
+            out.writeBoolean(this.tags[i] != null);
+            if (this.tags[i] != null) {
+                out.writeUTF(this.tags[i]);
+            }
+        }
+        out.writeInt(this.relations.length);
+        for (int i = 0; i < this.relations.length; i++) {
+            out.writeUTF(this.relations[i]);
+            out.writeInt(this.governors[i]);
+            out.writeInt(this.dependents[i]);
+        }
+    }
+
+    static SentenceGraph read(final DataInput in) throws IOException {
+        final int words = in.readInt();
+        final String[] read = new String[words];
+        final String[] tags = new String[words];
+        for (int i = 0; i < words; i++) {
+            read[i] = in.readUTF();
+            tags[i] = in.readBoolean() ? in.readUTF() : null;
+        }
+
+        final SentenceGraph graph = new SentenceGraph(words, in.readInt());
+        System.arraycopy(read, 0, graph.words, 0, words);
+        System.arraycopy(tags, 0, graph.tags, 0, words);
+        for (int i = 0; i < graph.relations.length; i++) {
+            graph.relations[i] = in.readUTF();
+            graph.governors[i] = in.readInt();
+            graph.dependents[i] = in.readInt();
+        }
+        return graph;
+    }
+
+    int getWordCount() {
+        return this.words.length;
+    }
+
+    String getWord(final int i) {
+        return this.words[i];
+    }
+
+    String getTag(final int i) {
+        return this.tags[i];
+    }
+
+    int getDependencyCount() {
+        return this.relations.length;
+    }
+
+    String getRelation(final int i) {
+        return this.relations[i];
+    }
+
+    int getGovernor(final int i) {
+        return this.governors[i];
+    }
+
+    int getDependent(final int i) {
+        return this.dependents[i];
+    }
+
+}
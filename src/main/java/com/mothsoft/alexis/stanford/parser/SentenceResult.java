@@ -0,0 +1,75 @@
+/*
+    stanford-nlp-war : provides REST, JMS, and HTML form connectivity to Stanford CoreNLP
+    Copyright (C) 2012  Tim Garrett, Mothsoft LLC
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License along
+    with this program; if not, write to the Free Software Foundation, Inc.,
+    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package com.mothsoft.alexis.stanford.parser;
+
+import java.util.List;
+
+/**
+ * Everything a parsed sentence contributes to the document: its printed tree
+ * (for XML) or its {@link SentenceGraph} (for the other formats), and the
+ * named entities found in it, in order of appearance.
+ */
+class SentenceResult {
+
+    private final String tree;
+    private final SentenceGraph graph;
+    private final List<NamedEntity> names;
+    private final boolean degraded;
+
+    SentenceResult(final String tree, final List<NamedEntity> names) {
+        this(tree, names, false);
+    }
+
+    /**
+     * @param degraded
+     *            - true if the sentence was only tagged, not parsed
+     */
+    SentenceResult(final String tree, final List<NamedEntity> names, final boolean degraded) {
+        this(tree, null, names, degraded);
+    }
+
+    SentenceResult(final SentenceGraph graph, final List<NamedEntity> names, final boolean degraded) {
+        this(null, graph, names, degraded);
+    }
+
+    private SentenceResult(final String tree, final SentenceGraph graph, final List<NamedEntity> names,
+            final boolean degraded) {
+        this.tree = tree;
+        this.graph = graph;
+        this.names = names;
+        this.degraded = degraded;
+    }
+
+    String getTree() {
+        return this.tree;
+    }
+
+    SentenceGraph getGraph() {
+        return this.graph;
+    }
+
+    List<NamedEntity> getNames() {
+        return this.names;
+    }
+
+    boolean isDegraded() {
+        return this.degraded;
+    }
+
+}
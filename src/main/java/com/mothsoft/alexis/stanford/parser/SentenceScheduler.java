@@ -0,0 +1,304 @@
+/*
+    stanford-nlp-war : provides REST, JMS, and HTML form connectivity to Stanford CoreNLP
+    Copyright (C) 2012  Tim Garrett, Mothsoft LLC
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License along
+    with this program; if not, write to the Free Software Foundation, Inc.,
+    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package com.mothsoft.alexis.stanford.parser;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.mothsoft.alexis.stanford.metrics.Histogram;
+import com.mothsoft.alexis.stanford.metrics.Metrics;
+
+/**
+ * Hands out the right to parse one sentence, at most <code>capacity</code> at
+ * a time. Waiting {@link Lane#INTERACTIVE} sentences always go first, and
+ * {@link Lane#BULK} sentences never hold more than
+ * <code>capacity - interactiveReserve</code> slots, so interactive work finds
+ * a free worker within one sentence no matter how deep the bulk backlog is.
+ * Sentences are never preempted once started.
+ * <p>
+ * Within a lane, sentences are ordered by arrival time plus their estimated
+ * parse time from a {@link SentenceCostModel}: cheap sentences overtake
+ * expensive ones that arrived shortly before them, but an expensive sentence
+ * is never overtaken by anything that arrived more than its own estimated
+ * parse time after it, so it cannot starve.
+ * <p>
+ * With a {@link ChartMemory}, a sentence too long for its worker's retained
+ * chart is also held back until its chart fits in the memory budget, so
+ * concurrent parses cannot run the heap out.
+ */
+final class SentenceScheduler {
+
+    private final int capacity;
+    private final int bulkLimit;
+    private final SentenceCostModel costModel;
+    private final ChartMemory chartMemory;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition granted = this.lock.newCondition();
+    private final PriorityQueue<Waiter> waiting = new PriorityQueue<Waiter>();
+    private final Map<Lane, LaneState> lanes = new EnumMap<Lane, LaneState>(Lane.class);
+    private int running;
+    private long sequence;
+
+    /**
+     * @param capacity
+     *            - sentences parsed at once; should match the worker pool
+     * @param interactiveReserve
+     *            - slots bulk work may never take; at least one slot is
+     *            always left to bulk work
+     */
+    SentenceScheduler(final int capacity, final int interactiveReserve) {
+        this(capacity, interactiveReserve, new SentenceCostModel());
+    }
+
+    SentenceScheduler(final int capacity, final int interactiveReserve, final SentenceCostModel costModel) {
+        this(capacity, interactiveReserve, costModel, null);
+    }
+
+    /**
+     * @param chartMemory
+     *            - memory budget for parser charts, or null for none
+     */
+    SentenceScheduler(final int capacity, final int interactiveReserve, final SentenceCostModel costModel,
+            final ChartMemory chartMemory) {
+        this.costModel = costModel;
+        this.chartMemory = chartMemory;
+        this.capacity = Math.max(1, capacity);
+        this.bulkLimit = Math.max(1, this.capacity - Math.max(0, interactiveReserve));
+
+        for (final Lane lane : Lane.values()) {
+            this.lanes.put(lane, new LaneState(lane));
+        }
+    }
+
+    /**
+     * @return estimated microseconds a sentence of this many tokens will hold
+     *         its slot
+     */
+    long estimate(final int tokens) {
+        return this.costModel.estimate(tokens);
+    }
+
+    /**
+     * @return chart bytes a sentence of this many tokens must reserve, 0 if
+     *         none
+     */
+    long chartBytes(final int tokens) {
+        return this.chartMemory == null ? 0L : this.chartMemory.reservationFor(tokens);
+    }
+
+    /**
+     * @return false if the chart could never fit in the memory budget
+     */
+    boolean fits(final long chartBytes) {
+        return this.chartMemory == null || this.chartMemory.fits(chartBytes);
+    }
+
+    void acquire(final Lane lane, final long estimateMicros) throws InterruptedException {
+        acquire(lane, estimateMicros, 0L);
+    }
+
+    /**
+     * Wait for a slot and for room for the sentence's chart; every successful
+     * call must be matched by {@link #release(Lane, long)}
+     * 
+     * @param estimateMicros
+     *            - from {@link #estimate(int)}
+     * @param chartBytes
+     *            - from {@link #chartBytes(int)}; must {@link #fits(long)}
+     */
+    void acquire(final Lane lane, final long estimateMicros, final long chartBytes) throws InterruptedException {
+        final long start = System.nanoTime();
+        final LaneState state = this.lanes.get(lane);
+
+        this.lock.lock();
+        try {
+            final Waiter waiter = new Waiter(lane, start + estimateMicros * 1000L, chartBytes, this.sequence++);
+            this.waiting.add(waiter);
+            state.waiting++;
+            dispatch();
+
+            try {
+                while (!waiter.granted) {
+                    this.granted.await();
+                }
+            } catch (final InterruptedException e) {
+                if (waiter.granted) {
+                    releaseLocked(state, chartBytes);
+                } else {
+                    this.waiting.remove(waiter);
+                    state.waiting--;
+                }
+                throw e;
+            }
+        } finally {
+            this.lock.unlock();
+            state.wait.updateSince(start);
+        }
+    }
+
+    void release(final Lane lane) {
+        release(lane, 0L);
+    }
+
+    void release(final Lane lane, final long chartBytes) {
+        this.lock.lock();
+        try {
+            releaseLocked(this.lanes.get(lane), chartBytes);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * @return sentences of the lane waiting for a slot
+     */
+    int getWaiting(final Lane lane) {
+        this.lock.lock();
+        try {
+            return this.lanes.get(lane).waiting;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * @return sentences of the lane holding a slot
+     */
+    int getRunning(final Lane lane) {
+        this.lock.lock();
+        try {
+            return this.lanes.get(lane).running;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * @return chart bytes reserved by sentences being parsed
+     */
+    long getChartBytesReserved() {
+        this.lock.lock();
+        try {
+            return this.chartMemory == null ? 0L : this.chartMemory.getReserved();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * @return chart bytes workers keep between sentences
+     */
+    long getChartBytesRetained() {
+        return this.chartMemory == null ? 0L : this.chartMemory.getRetained();
+    }
+
+    SentenceCostModel getCostModel() {
+        return this.costModel;
+    }
+
+    int getCapacity() {
+        return this.capacity;
+    }
+
+    int getBulkLimit() {
+        return this.bulkLimit;
+    }
+
+    private void releaseLocked(final LaneState state, final long chartBytes) {
+        if (chartBytes > 0L) {
+            this.chartMemory.release(chartBytes);
+        }
+        state.running--;
+        this.running--;
+        dispatch();
+    }
+
+    private void dispatch() {
+        boolean any = false;
+        while (this.running < this.capacity && !this.waiting.isEmpty()) {
+            final Waiter head = this.waiting.peek();
+            final LaneState state = this.lanes.get(head.lane);
+
+            // interactive waiters sort first, so a blocked bulk head means
+            // nothing else may run either
+            if (head.lane == Lane.BULK && state.running >= this.bulkLimit) {
+                break;
+            }
+
+            // the head waits for memory rather than being overtaken, so a
+            // long sentence cannot starve
+            if (head.chartBytes > 0L && !this.chartMemory.tryReserve(head.chartBytes)) {
+                break;
+            }
+
+            this.waiting.poll();
+            head.granted = true;
+            state.waiting--;
+            state.running++;
+            this.running++;
+            any = true;
+        }
+
+        if (any) {
+            this.granted.signalAll();
+        }
+    }
+
+    private static class LaneState {
+        private final Histogram wait;
+        private int waiting;
+        private int running;
+
+        private LaneState(final Lane lane) {
+            this.wait = Metrics.histogram("parser.lane." + lane.getMetricName() + ".wait");
+        }
+    }
+
+    private static class Waiter implements Comparable<Waiter> {
+        private final Lane lane;
+        private final long due;
+        private final long chartBytes;
+        private final long sequence;
+        private boolean granted;
+
+        private Waiter(final Lane lane, final long due, final long chartBytes, final long sequence) {
+            this.lane = lane;
+            this.due = due;
+            this.chartBytes = chartBytes;
+            this.sequence = sequence;
+        }
+
+        public int compareTo(final Waiter other) {
+            if (this.lane != other.lane) {
+                return this.lane.compareTo(other.lane);
+            }
+            // nanoTime values may wrap, so compare by difference
+            final long difference = this.due - other.due;
+            if (difference != 0) {
+                return difference < 0 ? -1 : 1;
+            }
+            return this.sequence < other.sequence ? -1 : (this.sequence == other.sequence ? 0 : 1);
+        }
+    }
+
+}
@@ -0,0 +1,46 @@
+/*
+    stanford-nlp-war : provides REST, JMS, and HTML form connectivity to Stanford CoreNLP
+    Copyright (C) 2012  Tim Garrett, Mothsoft LLC
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License along
+    with this program; if not, write to the Free Software Foundation, Inc.,
+    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package com.mothsoft.alexis.stanford.parser;
+
+import java.util.List;
+
+import edu.stanford.nlp.ling.HasWord;
+
+/**
+ * Decides where one sentence ends as tokens stream out of the tokenizer. One
+ * segmenter is shared by every document, so implementations must be thread
+ * safe; the built-in ones are stateless.
+ * <p>
+ * A sentence is only ended once the token after it is known, which lets a
+ * segmenter look one token ahead (at a closing quote, or a word in lower case
+ * after an abbreviation). Whatever is left at the end of the text is always a
+ * sentence.
+ */
+public interface SentenceSegmenter {
+
+    /**
+     * @param sentence
+     *            - the tokens of the sentence so far, never empty
+     * @param next
+     *            - the token after them
+     * @return whether the sentence ends before <code>next</code>
+     */
+    boolean endsBefore(List<HasWord> sentence, HasWord next);
+
+}
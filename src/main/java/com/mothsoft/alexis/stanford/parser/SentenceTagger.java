@@ -0,0 +1,72 @@
+/*
+    stanford-nlp-war : provides REST, JMS, and HTML form connectivity to Stanford CoreNLP
+    Copyright (C) 2012  Tim Garrett, Mothsoft LLC
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License along
+    with this program; if not, write to the Free Software Foundation, Inc.,
+    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package com.mothsoft.alexis.stanford.parser;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import edu.stanford.nlp.ling.HasWord;
+import edu.stanford.nlp.ling.TaggedWord;
+import edu.stanford.nlp.trees.LabeledScoredTreeFactory;
+import edu.stanford.nlp.trees.PennTreebankLanguagePack;
+import edu.stanford.nlp.trees.Tree;
+import edu.stanford.nlp.trees.TreeFactory;
+import edu.stanford.nlp.trees.TreePrint;
+
+/**
+ * POS tags from the tagger, no parse and no dependencies: the TAGS analysis
+ * level, and the cheap fallback for a sentence that is out of time. In XML the
+ * words are printed exactly as a parsed sentence's would be, inside
+ * <code>&lt;s degraded="true"&gt;</code> for the fallback.
+ */
+final class SentenceTagger {
+
+    private static final String DEGRADED_OPEN = "<s degraded=\"true\">";
+    private static final String OPEN = "<s>";
+    private static final String ROOT = "ROOT";
+
+    private SentenceTagger() {
+        super();
+    }
+
+    static List<TaggedWord> tag(final List<HasWord> sentence) {
+        return Models.getTagger().tagSentence(sentence);
+    }
+
+    static String render(final List<TaggedWord> tagged, final boolean degraded) {
+        // a flat tree of tags over words prints the same words block as a parse
+        final TreeFactory factory = new LabeledScoredTreeFactory();
+        final List<Tree> preterminals = new ArrayList<Tree>(tagged.size());
+        for (final TaggedWord word : tagged) {
+            final Tree leaf = factory.newLeaf(word.word());
+            preterminals.add(factory.newTreeNode(word.tag(), Collections.singletonList(leaf)));
+        }
+        final Tree tree = factory.newTreeNode(ROOT, preterminals);
+
+        final StringWriter writer = new StringWriter();
+        new TreePrint("wordsAndTags", "xml", new PennTreebankLanguagePack()).printTree(tree, new PrintWriter(writer));
+
+        final String printed = writer.toString();
+        return degraded && printed.startsWith(OPEN) ? DEGRADED_OPEN + printed.substring(OPEN.length()) : printed;
+    }
+
+}
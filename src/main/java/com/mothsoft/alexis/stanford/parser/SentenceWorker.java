@@ -0,0 +1,202 @@
+/*
+    stanford-nlp-war : provides REST, JMS, and HTML form connectivity to Stanford CoreNLP
+    Copyright (C) 2012  Tim Garrett, Mothsoft LLC
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License along
+    with this program; if not, write to the Free Software Foundation, Inc.,
+    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package com.mothsoft.alexis.stanford.parser;
+
+import java.io.FileNotFoundException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import edu.stanford.nlp.ie.NERClassifierCombiner;
+import edu.stanford.nlp.ling.CoreAnnotations.AnswerAnnotation;
+import edu.stanford.nlp.ling.CoreAnnotations.TextAnnotation;
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.ling.HasWord;
+import edu.stanford.nlp.parser.lexparser.LexicalizedParser;
+import edu.stanford.nlp.parser.lexparser.LexicalizedParserQuery;
+import edu.stanford.nlp.trees.GrammaticalStructureFactory;
+import edu.stanford.nlp.trees.PennTreebankLanguagePack;
+import edu.stanford.nlp.trees.Tree;
+import edu.stanford.nlp.trees.TreePrint;
+
+/**
+ * Holds everything that is not safe to share between threads while parsing a
+ * sentence: the PCFG query (and its charts), the tree printer, the NER
+ * combiner and the buffer names are assembled in. Instances are pooled; a
+ * worker is only ever used by one thread at a time.
+ */
+class SentenceWorker {
+
+    /**
+     * Longest sentence whose chart a worker keeps between sentences; longer
+     * ones get a fresh query afterwards so their chart can be collected
+     */
+    static final int RETAINED_CHART_TOKENS = 40;
+
+    private static final Set<String> NAME_TYPES = new HashSet<String>();
+
+    static {
+        NAME_TYPES.add("ORGANIZATION");
+        NAME_TYPES.add("PERSON");
+        NAME_TYPES.add("LOCATION");
+        NAME_TYPES.add("MISC");
+    }
+
+    private final LexicalizedParser parser;
+    private LexicalizedParserQuery query;
+    private final TreePrint treePrint;
+    private final GrammaticalStructureFactory structureFactory;
+    private final NERClassifierCombiner classifier;
+    private final ChartMemory chartMemory;
+    private int retainedTokens;
+    private final StringBuilder span = new StringBuilder(64);
+    private int spanWords;
+    private String spanType;
+
+    SentenceWorker(final LexicalizedParser parser, final NERClassifierCombiner classifier) {
+        this(parser, classifier, null);
+    }
+
+    /**
+     * @param chartMemory
+     *            - charged as the retained chart grows; may be null
+     */
+    SentenceWorker(final LexicalizedParser parser, final NERClassifierCombiner classifier,
+            final ChartMemory chartMemory) {
+        this.parser = parser;
+        this.query = parser.parserQuery();
+        final PennTreebankLanguagePack languagePack = new PennTreebankLanguagePack();
+        this.treePrint = new TreePrint("wordsAndTags,typedDependencies", "xml,basicDependencies", languagePack);
+        // the same dependencies TreePrint prints
+        this.structureFactory = languagePack.grammaticalStructureFactory(languagePack.punctuationWordRejectFilter(),
+                languagePack.typedDependencyHeadFinder());
+        this.classifier = classifier;
+        this.chartMemory = chartMemory;
+    }
+
+    static SentenceWorker create() {
+        return create(null);
+    }
+
+    static SentenceWorker create(final ChartMemory chartMemory) {
+        try {
+            final NERClassifierCombiner classifier = new NERClassifierCombiner(true, false, Models.getClassifier());
+            return new SentenceWorker(Models.getParser(), classifier, chartMemory);
+        } catch (FileNotFoundException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * @return the best parse, or null if the sentence could not be parsed
+     */
+    Tree parse(final List<HasWord> sentence) {
+        final Tree tree = this.query.parse(sentence) ? this.query.getBestParse() : null;
+        if (sentence.size() > RETAINED_CHART_TOKENS) {
+            this.query = this.parser.parserQuery();
+            retain(0);
+        } else if (sentence.size() > this.retainedTokens) {
+            retain(sentence.size());
+        }
+        return tree;
+    }
+
+    /**
+     * Stop charging the retained chart, once the worker is discarded
+     */
+    void dropChart() {
+        retain(0);
+    }
+
+    private void retain(final int tokens) {
+        if (this.chartMemory != null) {
+            this.chartMemory.retain(this.retainedTokens, tokens);
+        }
+        this.retainedTokens = tokens;
+    }
+
+    void print(final Tree tree, final PrintWriter printWriter) {
+        this.treePrint.printTree(tree, printWriter);
+    }
+
+    /**
+     * @return the words, tags and dependencies of a parse, or just the words
+     *         if there is none
+     */
+    SentenceGraph graph(final Tree tree, final List<HasWord> sentence) {
+        return tree == null ? SentenceGraph.unparsed(sentence) : SentenceGraph.parsed(tree, this.structureFactory);
+    }
+
+    List<CoreLabel> classify(final List<HasWord> sentence) {
+        return this.classifier.classifySentence(sentence);
+    }
+
+    String getBackgroundSymbol() {
+        return this.classifier.flags.backgroundSymbol;
+    }
+
+    /**
+     * @return the named entities in classified words, in order of appearance:
+     *         each run of words with the same entity type, joined by spaces
+     */
+    List<NamedEntity> names(final List<CoreLabel> labels) {
+        final String backgroundSymbol = getBackgroundSymbol();
+
+        List<NamedEntity> names = null;
+        String prevTag = "";
+
+        for (final CoreLabel label : labels) {
+            final String answer = label.get(AnswerAnnotation.class);
+            final String tag = answer == null ? "" : answer;
+
+            if (tag.equals(backgroundSymbol) || (!prevTag.isEmpty() && !tag.equals(prevTag))) {
+                names = flushSpan(names);
+            }
+
+            if (NAME_TYPES.contains(tag)) {
+                if (this.spanWords++ > 0) {
+                    this.span.append(' ');
+                }
+                this.span.append(label.get(TextAnnotation.class));
+                this.spanType = tag;
+            }
+            prevTag = tag;
+        }
+
+        names = flushSpan(names);
+
+        return names == null ? Collections.<NamedEntity> emptyList() : Collections.unmodifiableList(names);
+    }
+
+    private List<NamedEntity> flushSpan(List<NamedEntity> names) {
+        if (this.spanWords > 0) {
+            if (names == null) {
+                names = new ArrayList<NamedEntity>(4);
+            }
+            names.add(new NamedEntity(this.span.toString(), this.spanType));
+            this.span.setLength(0);
+            this.spanWords = 0;
+        }
+        return names;
+    }
+
+}
@@ -0,0 +1,54 @@
+/*
+    stanford-nlp-war : provides REST, JMS, and HTML form connectivity to Stanford CoreNLP
+    Copyright (C) 2012  Tim Garrett, Mothsoft LLC
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License along
+    with this program; if not, write to the Free Software Foundation, Inc.,
+    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package com.mothsoft.alexis.stanford.parser;
+
+import java.util.logging.Logger;
+
+import org.apache.commons.pool.BasePoolableObjectFactory;
+
+class SentenceWorkerFactory extends BasePoolableObjectFactory<SentenceWorker> {
+
+    private static final Logger logger = Logger.getLogger(SentenceWorkerFactory.class.getName());
+
+    private final ChartMemory chartMemory;
+
+    SentenceWorkerFactory() {
+        this(null);
+    }
+
+    /**
+     * @param chartMemory
+     *            - charged with the workers' retained charts; may be null
+     */
+    SentenceWorkerFactory(final ChartMemory chartMemory) {
+        this.chartMemory = chartMemory;
+    }
+
+    @Override
+    public SentenceWorker makeObject() throws Exception {
+        logger.fine("Creating sentence worker");
+        return SentenceWorker.create(this.chartMemory);
+    }
+
+    @Override
+    public void destroyObject(final SentenceWorker worker) throws Exception {
+        worker.dropChart();
+    }
+
+}
@@ -0,0 +1,127 @@
+/*
+    stanford-nlp-war : provides REST, JMS, and HTML form connectivity to Stanford CoreNLP
+    Copyright (C) 2012  Tim Garrett, Mothsoft LLC
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License along
+    with this program; if not, write to the Free Software Foundation, Inc.,
+    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package com.mothsoft.alexis.stanford.parser;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Times every document and profiles its sentences, handing the input and the
+ * profile to a {@link SlowDocumentRecorder} once the parse is done, whether or
+ * not it succeeded.
+ */
+class SlowDocumentParser implements Parser {
+
+    private final Parser delegate;
+    private final SlowDocumentRecorder recorder;
+
+    SlowDocumentParser(final Parser delegate, final SlowDocumentRecorder recorder) {
+        this.delegate = delegate;
+        this.recorder = recorder;
+    }
+
+    public void parse(final InputStream is, final OutputStream os) throws IOException {
+        parse(is, os, new ParseOptions());
+    }
+
+    public void parse(final InputStream is, final OutputStream os, final ParseOptions options) throws IOException {
+        final CapturingInputStream input = new CapturingInputStream(is, SlowDocumentRecorder.MAX_INPUT_BYTES);
+        // a caller profiling the document itself gets the same timings
+        final DocumentProfile outer = options.getProfile();
+        final DocumentProfile profile = outer == null ? new DocumentProfile() : outer;
+        options.setProfile(profile);
+
+        final long start = System.nanoTime();
+        boolean completed = false;
+        try {
+            this.delegate.parse(input, os, options);
+            completed = true;
+        } finally {
+            options.setProfile(outer);
+            this.recorder.record(input.getCaptured(), input.isTruncated(), options, profile,
+                    (System.nanoTime() - start) / 1000000L, completed);
+        }
+    }
+
+    /**
+     * Keeps a copy of the first bytes read
+     */
+    private static class CapturingInputStream extends FilterInputStream {
+
+        private final ByteArrayOutputStream captured = new ByteArrayOutputStream();
+        private final int limit;
+        private boolean truncated;
+
+        private CapturingInputStream(final InputStream in, final int limit) {
+            super(in);
+            this.limit = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int b = super.read();
+            if (b >= 0) {
+                capture(new byte[] { (byte) b }, 0, 1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            final int read = super.read(b, off, len);
+            if (read > 0) {
+                capture(b, off, read);
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(final long n) throws IOException {
+            // read what is skipped, so it is captured
+            final byte[] buffer = new byte[(int) Math.min(n, 4096L)];
+            final int read = read(buffer, 0, buffer.length);
+            return Math.max(0, read);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        private void capture(final byte[] b, final int off, final int len) {
+            final int room = this.limit - this.captured.size();
+            if (len > room) {
+                this.truncated = true;
+            }
+            this.captured.write(b, off, Math.min(len, Math.max(0, room)));
+        }
+
+        private byte[] getCaptured() {
+            return this.captured.toByteArray();
+        }
+
+        private boolean isTruncated() {
+            return this.truncated;
+        }
+    }
+
+}
@@ -0,0 +1,231 @@
+/*
+    stanford-nlp-war : provides REST, JMS, and HTML form connectivity to Stanford CoreNLP
+    Copyright (C) 2012  Tim Garrett, Mothsoft LLC
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License along
+    with this program; if not, write to the Free Software Foundation, Inc.,
+    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package com.mothsoft.alexis.stanford.parser;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Keeps the input of documents that took longer than a threshold to parse,
+ * with the time each of their sentences took, in a bounded local directory so
+ * they can be replayed offline. Only one in every <code>sampleEvery</code> slow
+ * documents is kept, and the oldest captures are deleted to make room.
+ * <p>
+ * Each capture is a pair of files: <code>.txt</code>, the input exactly as it
+ * was read (up to {@link #MAX_INPUT_BYTES}), and <code>.profile</code>,
+ * <code>key=value</code> lines describing the request, a blank line, then one
+ * tab-separated line per sentence: tokens, microseconds, degraded, words.
+ */
+public class SlowDocumentRecorder {
+
+    private static final Logger logger = Logger.getLogger(SlowDocumentRecorder.class.getName());
+
+    static final String INPUT_SUFFIX = ".txt";
+    static final String PROFILE_SUFFIX = ".profile";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final String UTF_8 = "UTF-8";
+
+    /** the rest of a larger document is not kept */
+    static final int MAX_INPUT_BYTES = 8 * 1024 * 1024;
+
+    private final long thresholdMillis;
+    private final int sampleEvery;
+    private final File directory;
+    private final long maxBytes;
+
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong slow = new AtomicLong();
+
+    /**
+     * @param thresholdMillis
+     *            - documents that take at least this long are slow
+     * @param sampleEvery
+     *            - keep one in this many slow documents
+     * @param directory
+     *            - local directory for the captures
+     * @param maxBytes
+     *            - upper bound on the size of the directory's captures
+     */
+    public SlowDocumentRecorder(final long thresholdMillis, final int sampleEvery, final File directory,
+            final long maxBytes) {
+        this.thresholdMillis = thresholdMillis;
+        this.sampleEvery = Math.max(1, sampleEvery);
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IllegalArgumentException("Unable to create slow document directory: " + directory);
+        }
+        for (final File file : listCaptures()) {
+            this.bytes.addAndGet(file.length() + input(file).length());
+        }
+        logger.info("Capturing documents slower than " + thresholdMillis + "ms to " + directory);
+    }
+
+    /**
+     * Keep the document if it was slow and it is its turn; never throws, a
+     * capture that cannot be written is only logged
+     * 
+     * @param completed
+     *            - false if the parse failed, in which case the input may be
+     *            incomplete too
+     */
+    void record(final byte[] input, final boolean truncated, final ParseOptions options,
+            final DocumentProfile profile, final long elapsedMillis, final boolean completed) {
+        if (elapsedMillis < this.thresholdMillis) {
+            return;
+        }
+        ParserMetrics.SLOW.increment();
+        final long count = this.slow.incrementAndGet();
+        if ((count - 1) % this.sampleEvery != 0) {
+            return;
+        }
+
+        final String name = "slow-" + System.currentTimeMillis() + "-" + count;
+        final File profileFile = new File(this.directory, name + PROFILE_SUFFIX);
+        final File inputFile = new File(this.directory, name + INPUT_SUFFIX);
+        final File temp = new File(this.directory, name + TEMP_SUFFIX);
+        OutputStream os = null;
+        try {
+            os = new FileOutputStream(temp);
+            os.write(input);
+            os.close();
+            os = null;
+            if (!temp.renameTo(inputFile)) {
+                throw new IOException("Unable to rename " + temp);
+            }
+
+            // the profile last, so a capture is only seen once it is whole
+            final PrintWriter writer = new PrintWriter(new OutputStreamWriter(new FileOutputStream(temp), UTF_8));
+            try {
+                writeProfile(writer, options, profile, elapsedMillis, completed, truncated);
+            } finally {
+                writer.close();
+            }
+            if (writer.checkError() || !temp.renameTo(profileFile)) {
+                throw new IOException("Unable to write " + profileFile);
+            }
+
+            ParserMetrics.SLOW_CAPTURED.increment();
+            logger.info("Captured slow document (" + elapsedMillis + "ms) as " + profileFile);
+            if (this.bytes.addAndGet(inputFile.length() + profileFile.length()) > this.maxBytes) {
+                trim();
+            }
+        } catch (IOException e) {
+            logger.warning("Unable to capture slow document " + name + ": " + e.getMessage());
+            FileUtils.deleteQuietly(inputFile);
+            FileUtils.deleteQuietly(temp);
+        } finally {
+            IOUtils.closeQuietly(os);
+        }
+    }
+
+    private static void writeProfile(final PrintWriter writer, final ParseOptions options,
+            final DocumentProfile profile, final long elapsedMillis, final boolean completed,
+            final boolean truncated) {
+        writer.print("elapsedMillis=" + elapsedMillis + "\n");
+        writer.print("completed=" + completed + "\n");
+        writer.print("truncated=" + truncated + "\n");
+        writer.print("format=" + options.getFormat().name() + "\n");
+        writer.print("level=" + options.getLevel().name() + "\n");
+        writer.print("lane=" + options.getLane().name() + "\n");
+        writer.print("fragment=" + options.isFragment() + "\n");
+        writer.print("sentences=" + profile.size() + "\n");
+        writer.print("\n");
+        for (int i = 0; i < profile.size(); i++) {
+            // tokens never hold a newline, but may hold a tab
+            writer.print(profile.getTokens(i) + "\t" + profile.getMicros(i) + "\t" + profile.isDegraded(i) + "\t"
+                    + profile.getText(i).replace('\t', ' ') + "\n");
+        }
+    }
+
+    /**
+     * Delete the oldest captures until the directory is back to 3/4 of its
+     * limit, so it isn't rescanned on every capture.
+     */
+    private synchronized void trim() {
+        if (this.bytes.get() <= this.maxBytes) {
+            return;
+        }
+
+        final File[] files = listCaptures();
+        Arrays.sort(files, new Comparator<File>() {
+            public int compare(final File a, final File b) {
+                final long diff = a.lastModified() - b.lastModified();
+                return diff < 0 ? -1 : (diff > 0 ? 1 : 0);
+            }
+        });
+
+        final long target = this.maxBytes / 4 * 3;
+        for (int i = 0; i < files.length && this.bytes.get() > target; i++) {
+            final File input = input(files[i]);
+            final long length = files[i].length() + input.length();
+            if (files[i].delete()) {
+                FileUtils.deleteQuietly(input);
+                this.bytes.addAndGet(-length);
+            }
+        }
+    }
+
+    private File[] listCaptures() {
+        return listCaptures(this.directory);
+    }
+
+    /**
+     * @return the profiles of the captures in a directory, in no order
+     */
+    static File[] listCaptures(final File directory) {
+        final File[] files = directory.listFiles(new FilenameFilter() {
+            public boolean accept(final File dir, final String name) {
+                return name.endsWith(PROFILE_SUFFIX);
+            }
+        });
+        return files == null ? new File[0] : files;
+    }
+
+    /**
+     * @return the input captured with a profile
+     */
+    static File input(final File profile) {
+        final String name = profile.getName();
+        return new File(profile.getParentFile(), name.substring(0, name.length() - PROFILE_SUFFIX.length())
+                + INPUT_SUFFIX);
+    }
+
+    public long getSlow() {
+        return this.slow.get();
+    }
+
+    public long getBytes() {
+        return this.bytes.get();
+    }
+
+}
@@ -0,0 +1,110 @@
+/*
+    stanford-nlp-war : provides REST, JMS, and HTML form connectivity to Stanford CoreNLP
+    Copyright (C) 2012  Tim Garrett, Mothsoft LLC
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License along
+    with this program; if not, write to the Free Software Foundation, Inc.,
+    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package com.mothsoft.alexis.stanford.parser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+import org.apache.commons.io.output.NullOutputStream;
+
+import com.mothsoft.alexis.stanford.concurrent.DaemonThreadFactory;
+
+/**
+ * Gets a node ready for traffic: loads the models, creates every sentence
+ * worker and parses a built-in sample document a few times on each of them,
+ * at every analysis level and in every format, so the JIT has compiled the
+ * hot paths before the first real request. The caches are bypassed, and the
+ * cold-JIT parse times are kept out of the sentence cost model.
+ */
+public final class Warmup {
+
+    private static final Logger logger = Logger.getLogger(Warmup.class.getName());
+
+    private static final String SAMPLE = "warmup.txt";
+
+    private Warmup() {
+        super();
+    }
+
+    /**
+     * @param rounds
+     *            - number of times each worker parses the sample; 0 only loads
+     *            the models and creates the workers
+     */
+    public static void run(final int rounds) throws Exception {
+        final long start = System.nanoTime();
+        ParserFactory.load();
+        ParserFactory.prestartWorkers();
+
+        final int workers = ParserFactory.getPoolSize();
+        final ExecutorService executor = Executors.newFixedThreadPool(workers, new DaemonThreadFactory(
+                "stanford-warmup-"));
+        try {
+            for (int round = 0; round < rounds; round++) {
+                final List<Future<Void>> parses = new ArrayList<Future<Void>>(workers);
+                for (int i = 0; i < workers; i++) {
+                    final OutputFormat format = OutputFormat.values()[(round + i) % OutputFormat.values().length];
+                    parses.add(executor.submit(new Callable<Void>() {
+                        public Void call() throws IOException {
+                            for (final AnalysisLevel level : AnalysisLevel.values()) {
+                                parseSample(level, format);
+                            }
+                            return null;
+                        }
+                    }));
+                }
+                for (final Future<Void> parse : parses) {
+                    try {
+                        parse.get();
+                    } catch (ExecutionException e) {
+                        throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                    }
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        logger.info("Warmed up " + workers + " sentence workers in " + ((System.nanoTime() - start) / 1000000L)
+                + "ms");
+    }
+
+    private static void parseSample(final AnalysisLevel level, final OutputFormat format) throws IOException {
+        final ParseOptions options = new ParseOptions();
+        options.setUseSentenceCache(false);
+        options.setUseResultStore(false);
+        options.setIndexEntities(false);
+        options.setRecordCost(false);
+        options.setLane(Lane.BULK);
+        options.setLevel(level);
+        options.setFormat(format);
+
+        final InputStream is = Warmup.class.getResourceAsStream(SAMPLE);
+        ParserFactory.getParser().parse(is, new NullOutputStream(), options);
+    }
+
+}
@@ -0,0 +1,76 @@
+/*
+    stanford-nlp-war : provides REST, JMS, and HTML form connectivity to Stanford CoreNLP
+    Copyright (C) 2012  Tim Garrett, Mothsoft LLC
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License along
+    with this program; if not, write to the Free Software Foundation, Inc.,
+    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package com.mothsoft.alexis.stanford.parser;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+import edu.stanford.nlp.util.XMLUtils;
+
+/**
+ * The original XML document; sentences are printed by <code>TreePrint</code>.
+ */
+class XmlDocumentWriter extends DocumentWriter {
+
+    private static final String DOCUMENT_XML_OPEN = "<?xml version=\"1.0\" encoding=\"utf-8\" ?><document><sentences>";
+    private static final String DOCUMENT_XML_CLOSE = "</names></document>";
+    private static final String SENTENCES_XML_CLOSE = "</sentences>";
+    private static final String NAME_XML_OPEN_FORMAT = "<name count=\"%d\">";
+    private static final String NAMES_XML_OPEN = "<names>";
+    private static final String NAME_XML_CLOSE = "</name>";
+
+    private final Writer writer;
+
+    XmlDocumentWriter(final OutputStream os) {
+        this.writer = new BufferedWriter(new OutputStreamWriter(os, Charset.forName("UTF-8")));
+    }
+
+    void startDocument() throws IOException {
+        this.writer.write(DOCUMENT_XML_OPEN);
+    }
+
+    void writeSentence(final SentenceResult result) throws IOException {
+        this.writer.write(result.getTree());
+    }
+
+    void endSentences() throws IOException {
+        this.writer.write(SENTENCES_XML_CLOSE);
+        this.writer.write(NAMES_XML_OPEN);
+    }
+
+    void writeName(final String name, final int count) throws IOException {
+        this.writer.write(String.format(NAME_XML_OPEN_FORMAT, count));
+        this.writer.write(XMLUtils.escapeElementXML(name));
+        this.writer.write(NAME_XML_CLOSE);
+    }
+
+    void endDocument() throws IOException {
+        this.writer.write(DOCUMENT_XML_CLOSE);
+        this.writer.flush();
+    }
+
+    void flush() throws IOException {
+        this.writer.flush();
+    }
+
+}
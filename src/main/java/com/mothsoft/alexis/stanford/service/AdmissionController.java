@@ -0,0 +1,188 @@
+/*
+    stanford-nlp-war : provides REST, JMS, and HTML form connectivity to Stanford CoreNLP
+    Copyright (C) 2012  Tim Garrett, Mothsoft LLC
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License along
+    with this program; if not, write to the Free Software Foundation, Inc.,
+    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package com.mothsoft.alexis.stanford.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+
+import com.mothsoft.alexis.stanford.metrics.Counter;
+import com.mothsoft.alexis.stanford.metrics.Gauge;
+import com.mothsoft.alexis.stanford.metrics.Histogram;
+import com.mothsoft.alexis.stanford.metrics.Metrics;
+import com.mothsoft.alexis.stanford.parser.ParserFactory;
+
+/**
+ * Bounds the REST requests the service will hold at once. At most
+ * <code>maxConcurrent</code> requests parse at a time and at most
+ * <code>maxQueued</code> more wait their turn; anything beyond that is turned
+ * away immediately with 503 and a Retry-After header instead of tying up
+ * another container thread. Streamed bodies are turned away before they are
+ * read; a form has already been decoded by the container by then.
+ * <p>
+ * An admission is given back when its output has been written, or, if it
+ * never is (the client went away first, or building the response failed),
+ * when the container finishes the request and calls
+ * {@link #requestCompleted()}.
+ */
+public class AdmissionController {
+
+    private static final String RETRY_AFTER = "Retry-After";
+
+    private static final Counter REJECTED = Metrics.counter("rest.admission.rejected");
+    private static final Histogram WAIT = Metrics.histogram("rest.admission.wait");
+
+    /** the admission of the request this container thread is serving */
+    private static final ThreadLocal<Admission> CURRENT = new ThreadLocal<Admission>();
+
+    private final int retryAfterSeconds;
+    private final Semaphore admitted;
+    private final Semaphore running;
+    private final AtomicInteger queued = new AtomicInteger();
+
+    /**
+     * @param maxConcurrent
+     *            - requests parsing at once; 0 means the parser pool size
+     * @param maxQueued
+     *            - requests waiting to parse; 0 means twice the pool size
+     * @param retryAfterSeconds
+     *            - value of the Retry-After header on rejection
+     */
+    public AdmissionController(final int maxConcurrent, final int maxQueued, final int retryAfterSeconds) {
+        final int concurrent = maxConcurrent > 0 ? maxConcurrent : ParserFactory.getPoolSize();
+        final int queue = maxQueued > 0 ? maxQueued : 2 * ParserFactory.getPoolSize();
+
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.admitted = new Semaphore(concurrent + queue);
+        this.running = new Semaphore(concurrent, true);
+
+        Metrics.gauge("rest.admission.queued", new Gauge() {
+            public long getValue() {
+                return AdmissionController.this.queued.get();
+            }
+        });
+        Metrics.gauge("rest.admission.available", new Gauge() {
+            public long getValue() {
+                return AdmissionController.this.admitted.availablePermits();
+            }
+        });
+    }
+
+    /**
+     * @return true if the request may proceed; it must then either call
+     *         {@link #abandon()} or answer with {@link #admitted(StreamingOutput)}
+     */
+    boolean tryAdmit() {
+        if (this.admitted.tryAcquire()) {
+            CURRENT.set(new Admission());
+            return true;
+        }
+        REJECTED.increment();
+        return false;
+    }
+
+    Response reject() {
+        return Response.status(Response.Status.SERVICE_UNAVAILABLE).header(RETRY_AFTER, this.retryAfterSeconds)
+                .build();
+    }
+
+    /**
+     * Wait for a turn to parse
+     */
+    void start() throws InterruptedException {
+        final long start = System.nanoTime();
+        this.queued.incrementAndGet();
+        try {
+            this.running.acquire();
+        } finally {
+            this.queued.decrementAndGet();
+            WAIT.updateSince(start);
+        }
+    }
+
+    /**
+     * Give back the admission of the current request if it never started
+     * parsing
+     */
+    void abandon() {
+        final Admission admission = CURRENT.get();
+        CURRENT.remove();
+        if (admission != null) {
+            admission.release();
+        }
+    }
+
+    /**
+     * Called by the container once a request is finished, whether or not its
+     * output was ever written
+     */
+    public static void requestCompleted() {
+        final Admission admission = CURRENT.get();
+        CURRENT.remove();
+        if (admission != null) {
+            admission.release();
+        }
+    }
+
+    /**
+     * Wrap the output of the current request, which must have been admitted,
+     * so it waits its turn before writing and gives up its admission when done
+     */
+    StreamingOutput admitted(final StreamingOutput output) {
+        final Admission admission = CURRENT.get();
+        return new StreamingOutput() {
+            public void write(final OutputStream os) throws IOException, WebApplicationException {
+                try {
+                    start();
+                } catch (InterruptedException e) {
+                    admission.release();
+                    Thread.currentThread().interrupt();
+                    throw new WebApplicationException(e, Response.Status.SERVICE_UNAVAILABLE);
+                }
+
+                try {
+                    output.write(os);
+                } finally {
+                    AdmissionController.this.running.release();
+                    admission.release();
+                }
+            }
+        };
+    }
+
+    /**
+     * One admitted request; given back at most once
+     */
+    private final class Admission {
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        void release() {
+            if (this.released.compareAndSet(false, true)) {
+                AdmissionController.this.admitted.release();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,91 @@
+/*
+    stanford-nlp-war : provides REST, JMS, and HTML form connectivity to Stanford CoreNLP
+    Copyright (C) 2012  Tim Garrett, Mothsoft LLC
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License along
+    with this program; if not, write to the Free Software Foundation, Inc.,
+    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package com.mothsoft.alexis.stanford.service;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * One document of a batch request:
+ * 
+ * <pre>
+ * &lt;documents&gt;
+ *   &lt;document id="42"&gt;text...&lt;/document&gt;
+ * &lt;/documents&gt;
+ * </pre>
+ */
+class BatchDocument {
+
+    private static final String DOCUMENT = "document";
+    private static final String ID = "id";
+
+    private static final XMLInputFactory XML_INPUT_FACTORY = XMLInputFactory.newInstance();
+
+    static {
+        XML_INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+    }
+
+    private final int index;
+    private final String id;
+    private final String text;
+
+    BatchDocument(final int index, final String id, final String text) {
+        this.index = index;
+        this.id = id;
+        this.text = text;
+    }
+
+    int getIndex() {
+        return this.index;
+    }
+
+    String getId() {
+        return this.id;
+    }
+
+    String getText() {
+        return this.text;
+    }
+
+    static List<BatchDocument> read(final InputStream is) throws XMLStreamException {
+        final List<BatchDocument> documents = new ArrayList<BatchDocument>();
+        final XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(is);
+        try {
+            while (reader.hasNext()) {
+                if (reader.next() == XMLStreamConstants.START_ELEMENT && DOCUMENT.equals(reader.getLocalName())) {
+                    final int index = documents.size();
+                    final String id = reader.getAttributeValue(null, ID);
+                    final String text = reader.getElementText();
+                    documents.add(new BatchDocument(index, id == null ? String.valueOf(index) : id, text));
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return documents;
+    }
+
+}
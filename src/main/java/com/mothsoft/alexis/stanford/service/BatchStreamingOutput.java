@@ -0,0 +1,150 @@
+/*
+    stanford-nlp-war : provides REST, JMS, and HTML form connectivity to Stanford CoreNLP
+    Copyright (C) 2012  Tim Garrett, Mothsoft LLC
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License along
+    with this program; if not, write to the Free Software Foundation, Inc.,
+    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package com.mothsoft.alexis.stanford.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.StreamingOutput;
+
+import com.mothsoft.alexis.stanford.parser.ParseOptions;
+import com.mothsoft.alexis.stanford.parser.Parser;
+
+import edu.stanford.nlp.util.XMLUtils;
+
+/**
+ * Parses the documents of a batch concurrently and writes each one out as soon
+ * as it finishes, in completion order, framed as
+ * <code>&lt;result id="..." index="..."&gt;&lt;document&gt;...&lt;/document&gt;&lt;/result&gt;</code>.
+ * A document that fails is reported as <code>&lt;result ... error="true"&gt;message&lt;/result&gt;</code>
+ * without failing the rest of the batch.
+ */
+class BatchStreamingOutput implements StreamingOutput {
+
+    private static final Logger logger = Logger.getLogger(BatchStreamingOutput.class.getName());
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String XML_DECLARATION_END = "?>";
+
+    private final Parser parser;
+    private final ExecutorService executor;
+    private final List<BatchDocument> documents;
+    private final ParseOptions options;
+
+    BatchStreamingOutput(final Parser parser, final ExecutorService executor, final List<BatchDocument> documents,
+            final ParseOptions options) {
+        this.parser = parser;
+        this.executor = executor;
+        this.documents = documents;
+        this.options = options;
+    }
+
+    public void write(final OutputStream os) throws IOException, WebApplicationException {
+        final CompletionService<Frame> completion = new ExecutorCompletionService<Frame>(this.executor);
+        for (final BatchDocument document : this.documents) {
+            completion.submit(new Callable<Frame>() {
+                public Frame call() {
+                    return parse(document);
+                }
+            });
+        }
+
+        os.write("<?xml version=\"1.0\" encoding=\"utf-8\" ?><results>".getBytes(UTF_8));
+        os.flush();
+
+        for (int i = 0; i < this.documents.size(); i++) {
+            final Frame frame = take(completion);
+            os.write(frame.open.getBytes(UTF_8));
+            os.write(frame.body, frame.offset, frame.body.length - frame.offset);
+            os.write("</result>".getBytes(UTF_8));
+            os.flush();
+        }
+
+        os.write("</results>".getBytes(UTF_8));
+        os.flush();
+    }
+
+    private Frame parse(final BatchDocument document) {
+        final String open = "<result id=\"" + XMLUtils.escapeAttributeXML(document.getId()) + "\" index=\""
+                + document.getIndex() + "\"";
+        try {
+            final ByteArrayOutputStream os = new ByteArrayOutputStream(document.getText().length() * 16);
+            this.parser.parse(new ByteArrayInputStream(document.getText().getBytes(UTF_8)), os, this.options);
+            final byte[] body = os.toByteArray();
+            return new Frame(open + ">", body, declarationLength(body));
+        } catch (Exception e) {
+            logger.warning("Failed to parse batch document " + document.getId() + ": " + e);
+            final String message = String.valueOf(e.getMessage());
+            return new Frame(open + " error=\"true\">", XMLUtils.escapeElementXML(message).getBytes(UTF_8), 0);
+        }
+    }
+
+    private Frame take(final CompletionService<Frame> completion) throws IOException {
+        try {
+            final Future<Frame> future = completion.take();
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            // parse() reports its own failures; anything else is a bug
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * @return the length of the leading &lt;?xml ...?&gt; declaration, which
+     *         can't appear inside a &lt;result&gt;
+     */
+    private static int declarationLength(final byte[] body) {
+        if (body.length > 1 && body[0] == '<' && body[1] == '?') {
+            for (int i = 2; i < body.length - 1; i++) {
+                if (body[i] == XML_DECLARATION_END.charAt(0) && body[i + 1] == XML_DECLARATION_END.charAt(1)) {
+                    return i + 2;
+                }
+            }
+        }
+        return 0;
+    }
+
+    private static class Frame {
+        private final String open;
+        private final byte[] body;
+        private final int offset;
+
+        Frame(final String open, final byte[] body, final int offset) {
+            this.open = open;
+            this.body = body;
+            this.offset = offset;
+        }
+    }
+
+}
@@ -0,0 +1,111 @@
+/*
+    stanford-nlp-war : provides REST, JMS, and HTML form connectivity to Stanford CoreNLP
+    Copyright (C) 2012  Tim Garrett, Mothsoft LLC
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License along
+    with this program; if not, write to the Free Software Foundation, Inc.,
+    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package com.mothsoft.alexis.stanford.service;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.logging.Logger;
+
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Response;
+
+import com.mothsoft.alexis.stanford.parser.EntityIndex;
+import com.mothsoft.alexis.stanford.parser.ParserFactory;
+
+import edu.stanford.nlp.util.XMLUtils;
+
+/**
+ * Queries over the cross-document {@link EntityIndex}: the most frequent
+ * names, overall or of one entity type, and the counts of a single name. All
+ * answers are 404 if the index is disabled.
+ */
+@Path("/entities")
+public class EntityService {
+
+    private static final Logger logger = Logger.getLogger(EntityService.class.getName());
+
+    private static final int MAX_LIMIT = 1000;
+
+    /**
+     * @param type
+     *            - PERSON, ORGANIZATION, LOCATION or MISC; all if omitted
+     */
+    @GET
+    @Produces("application/xml")
+    public Response top(@QueryParam("type") final String type,
+            @QueryParam("limit") @DefaultValue("20") final int limit) {
+        final EntityIndex index = ParserFactory.getEntityIndex();
+        if (index == null) {
+            return Response.status(Response.Status.NOT_FOUND).build();
+        }
+
+        final String upperType = type == null ? null : type.trim().toUpperCase();
+        return Response.ok(toXml(index, index.top(upperType, Math.max(0, Math.min(limit, MAX_LIMIT))))).build();
+    }
+
+    @GET
+    @Path("/lookup")
+    @Produces("application/xml")
+    public Response lookup(@QueryParam("name") final String name) {
+        final EntityIndex index = ParserFactory.getEntityIndex();
+        if (index == null || name == null) {
+            return Response.status(Response.Status.NOT_FOUND).build();
+        }
+
+        final List<EntityIndex.Entry> entries = index.lookup(name);
+        if (entries.isEmpty()) {
+            return Response.status(Response.Status.NOT_FOUND).build();
+        }
+        return Response.ok(toXml(index, entries)).build();
+    }
+
+    static String toXml(final EntityIndex index, final List<EntityIndex.Entry> entries) {
+        final StringBuilder builder = new StringBuilder(64 + 64 * entries.size());
+        builder.append("<?xml version=\"1.0\" encoding=\"utf-8\" ?><entities documents=\"")
+                .append(index.getDocuments()).append("\">");
+        for (final EntityIndex.Entry entry : entries) {
+            builder.append("<entity type=\"").append(XMLUtils.escapeAttributeXML(entry.getType())).append('"');
+            builder.append(" occurrences=\"").append(entry.getOccurrences()).append('"');
+            builder.append(" documents=\"").append(entry.getDocuments()).append("\">");
+            builder.append(XMLUtils.escapeElementXML(entry.getName())).append("</entity>");
+        }
+        builder.append("</entities>");
+        return builder.toString();
+    }
+
+    /**
+     * Called by Spring when the webapp is undeployed; keeps what was counted
+     * since the last periodic snapshot
+     */
+    public void destroy() {
+        final EntityIndex index = ParserFactory.getEntityIndex();
+        if (index != null) {
+            try {
+                index.snapshot();
+            } catch (IOException e) {
+                logger.warning("Unable to snapshot entity index: " + e.getMessage());
+            }
+        }
+    }
+
+}
@@ -0,0 +1,80 @@
+/*
+    stanford-nlp-war : provides REST, JMS, and HTML form connectivity to Stanford CoreNLP
+    Copyright (C) 2012  Tim Garrett, Mothsoft LLC
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License along
+    with this program; if not, write to the Free Software Foundation, Inc.,
+    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package com.mothsoft.alexis.stanford.service;
+
+import java.util.Map;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+
+import com.mothsoft.alexis.stanford.metrics.Counter;
+import com.mothsoft.alexis.stanford.metrics.Gauge;
+import com.mothsoft.alexis.stanford.metrics.Histogram;
+import com.mothsoft.alexis.stanford.metrics.Metrics;
+
+import edu.stanford.nlp.util.XMLUtils;
+
+/**
+ * Read-only view of {@link Metrics} for monitoring. Latencies are reported in
+ * microseconds. The parser's metrics appear once its models are loaded.
+ */
+@Path("")
+public class MetricsService {
+
+    @GET
+    @Path("/metrics")
+    @Produces("application/xml")
+    public String metrics() {
+        final StringBuilder builder = new StringBuilder(4096);
+        builder.append("<?xml version=\"1.0\" encoding=\"utf-8\" ?><metrics>");
+
+        for (final Map.Entry<String, Histogram> entry : Metrics.getHistograms().entrySet()) {
+            final Histogram histogram = entry.getValue();
+            builder.append("<histogram name=\"").append(XMLUtils.escapeAttributeXML(entry.getKey())).append('"');
+            builder.append(" count=\"").append(histogram.getCount()).append('"');
+            builder.append(" mean=\"").append(Math.round(histogram.getMean())).append('"');
+            builder.append(" p50=\"").append(histogram.get50thPercentile()).append('"');
+            builder.append(" p95=\"").append(histogram.get95thPercentile()).append('"');
+            builder.append(" p99=\"").append(histogram.get99thPercentile()).append('"');
+            builder.append(" max=\"").append(histogram.getMax()).append("\"/>");
+        }
+
+        for (final Map.Entry<String, Counter> entry : Metrics.getCounters().entrySet()) {
+            builder.append("<counter name=\"").append(XMLUtils.escapeAttributeXML(entry.getKey())).append('"');
+            builder.append(" count=\"").append(entry.getValue().getCount()).append("\"/>");
+        }
+
+        for (final Map.Entry<String, Gauge> entry : Metrics.getGauges().entrySet()) {
+            builder.append("<gauge name=\"").append(XMLUtils.escapeAttributeXML(entry.getKey())).append('"');
+            builder.append(" value=\"").append(entry.getValue().getValue()).append("\"/>");
+        }
+
+        builder.append("</metrics>");
+        return builder.toString();
+    }
+
+    /**
+     * Called by Spring when the webapp is undeployed
+     */
+    public void destroy() {
+        Metrics.unregisterAll();
+    }
+
+}
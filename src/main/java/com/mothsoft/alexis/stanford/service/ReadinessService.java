@@ -0,0 +1,120 @@
+/*
+    stanford-nlp-war : provides REST, JMS, and HTML form connectivity to Stanford CoreNLP
+    Copyright (C) 2012  Tim Garrett, Mothsoft LLC
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License along
+    with this program; if not, write to the Free Software Foundation, Inc.,
+    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package com.mothsoft.alexis.stanford.service;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Logger;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.Response;
+
+import org.springframework.context.Lifecycle;
+
+import com.mothsoft.alexis.stanford.concurrent.DaemonThreadFactory;
+import com.mothsoft.alexis.stanford.parser.ParserFactory;
+import com.mothsoft.alexis.stanford.parser.Warmup;
+
+/**
+ * Warms the parser up in the background when the webapp starts and reports
+ * whether it is done, for load balancers and rolling deploys. Anything that
+ * should not take work before then (the JMS container) is started once the
+ * node is ready.
+ */
+@Path("")
+public class ReadinessService {
+
+    private static final Logger logger = Logger.getLogger(ReadinessService.class.getName());
+
+    private static final int DEFAULT_WARMUP_ROUNDS = 3;
+
+    enum State {
+        STARTING, READY, FAILED
+    }
+
+    private final int rounds;
+
+    private volatile State state = State.STARTING;
+
+    private List<Lifecycle> startWhenReady = Collections.emptyList();
+
+    public ReadinessService() {
+        this(Integer.getInteger(ParserFactory.WARMUP_ROUNDS_PROPERTY, DEFAULT_WARMUP_ROUNDS));
+    }
+
+    ReadinessService(final int rounds) {
+        this.rounds = rounds;
+    }
+
+    public void setStartWhenReady(final List<Lifecycle> startWhenReady) {
+        this.startWhenReady = startWhenReady;
+    }
+
+    /**
+     * Called by Spring when the webapp is deployed
+     */
+    public void start() {
+        new DaemonThreadFactory("stanford-readiness-").newThread(new Runnable() {
+            public void run() {
+                warmUp();
+            }
+        }).start();
+    }
+
+    void warmUp() {
+        try {
+            Warmup.run(this.rounds);
+        } catch (Throwable t) {
+            this.state = State.FAILED;
+            logger.severe("Warm-up failed, this node will not report ready: " + t);
+            return;
+        }
+
+        this.state = State.READY;
+        logger.info("Ready");
+
+        for (final Lifecycle lifecycle : this.startWhenReady) {
+            try {
+                lifecycle.start();
+            } catch (RuntimeException e) {
+                logger.warning("Unable to start " + lifecycle + ": " + e.getMessage());
+            }
+        }
+    }
+
+    State getState() {
+        return this.state;
+    }
+
+    /**
+     * @return 200 once warmed up, 503 before then or if warm-up failed
+     */
+    @GET
+    @Path("/ready")
+    @Produces("text/plain")
+    public Response ready() {
+        final State current = this.state;
+        final Response.Status status = current == State.READY ? Response.Status.OK
+                : Response.Status.SERVICE_UNAVAILABLE;
+        return Response.status(status).entity(current.name().toLowerCase()).build();
+    }
+
+}
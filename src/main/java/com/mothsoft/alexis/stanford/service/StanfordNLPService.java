@@ -18,31 +18,41 @@
  */
 package com.mothsoft.alexis.stanford.service;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedWriter;
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
-import java.io.StringReader;
-import java.io.Writer;
 import java.nio.charset.Charset;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.logging.Logger;
 
+import javax.ws.rs.Consumes;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.FormParam;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.StreamingOutput;
+import javax.xml.stream.XMLStreamException;
 
-import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 
+import com.mothsoft.alexis.stanford.concurrent.DaemonThreadFactory;
+import com.mothsoft.alexis.stanford.metrics.Counter;
+import com.mothsoft.alexis.stanford.metrics.Histogram;
+import com.mothsoft.alexis.stanford.metrics.Metrics;
+import com.mothsoft.alexis.stanford.parser.AnalysisLevel;
+import com.mothsoft.alexis.stanford.parser.Lane;
+import com.mothsoft.alexis.stanford.parser.OutputFormat;
+import com.mothsoft.alexis.stanford.parser.ParseOptions;
 import com.mothsoft.alexis.stanford.parser.Parser;
 import com.mothsoft.alexis.stanford.parser.ParserFactory;
 
@@ -51,57 +61,208 @@ public class StanfordNLPService {
 
     private static final Logger logger = Logger.getLogger(StanfordNLPService.class.getName());
 
+    private static final Histogram DOCUMENT = Metrics.histogram("rest.document");
+    private static final Counter ERRORS = Metrics.counter("rest.errors");
+
+    private static final Histogram BATCH_SIZE = Metrics.histogram("rest.batchSize");
+
+    private static final int DEFAULT_RETRY_AFTER_SECONDS = 2;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
     private Parser parser;
 
+    private final ExecutorService batchExecutor;
+
+    private AdmissionController admission;
+
     public StanfordNLPService() {
         this.parser = ParserFactory.getParser();
+        this.batchExecutor = Executors.newFixedThreadPool(ParserFactory.getPoolSize(), new DaemonThreadFactory(
+                "stanford-batch-"));
     }
 
+    public synchronized void setAdmissionController(final AdmissionController admission) {
+        this.admission = admission;
+    }
+
+    /**
+     * The injected controller, or a default one created on first use
+     */
+    private synchronized AdmissionController admission() {
+        if (this.admission == null) {
+            this.admission = new AdmissionController(0, 0, DEFAULT_RETRY_AFTER_SECONDS);
+        }
+        return this.admission;
+    }
+
+    /**
+     * Called by Spring when the webapp is undeployed
+     */
+    public void destroy() {
+        this.batchExecutor.shutdownNow();
+    }
+
+    /**
+     * Parse many documents in one request. The body is
+     * <code>&lt;documents&gt;&lt;document id="..."&gt;text&lt;/document&gt;...&lt;/documents&gt;</code>
+     * ; results are streamed back in the order they finish.
+     */
     @POST
-    @Path("/parser")
+    @Path("/parser/batch")
+    @Consumes("application/xml")
     @Produces("application/xml")
-    public Response parser(@FormParam("content") String content,
-            @FormParam("includeAssociations") final boolean includeAssociations) {
-
-        File tempFile = null;
-        Writer tempWriter = null;
+    public Response batch(final InputStream body, @QueryParam("useCache") @DefaultValue("true") final boolean useCache,
+            @QueryParam("level") final String level) {
+        final AdmissionController admission = admission();
+        if (!admission.tryAdmit()) {
+            IOUtils.closeQuietly(body);
+            return admission.reject();
+        }
 
+        final List<BatchDocument> documents;
         try {
-            // write to temp file
-            tempFile = File.createTempFile("alexis-parser-", "-" + System.currentTimeMillis());
-            tempWriter = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tempFile),
-                    Charset.forName("UTF-8")));
-
-            IOUtils.copyLarge(new StringReader(content), tempWriter);
-            IOUtils.closeQuietly(tempWriter);
-            content = null;
-        } catch (IOException e) {
-            IOUtils.closeQuietly(tempWriter);
-            FileUtils.deleteQuietly(tempFile);
-            logger.severe(e.getLocalizedMessage());
-            return Response.serverError().build();
+            documents = BatchDocument.read(body);
+        } catch (XMLStreamException e) {
+            ERRORS.increment();
+            admission.abandon();
+            logger.warning("Rejecting malformed batch: " + e.getMessage());
+            return Response.status(Response.Status.BAD_REQUEST).build();
+        } catch (RuntimeException e) {
+            admission.abandon();
+            throw e;
         } finally {
-            IOUtils.closeQuietly(tempWriter);
+            IOUtils.closeQuietly(body);
+        }
+
+        try {
+            BATCH_SIZE.update(documents.size());
+
+            final ParseOptions options = new ParseOptions();
+            options.setLane(Lane.INTERACTIVE);
+            options.setUseSentenceCache(useCache);
+            options.setUseResultStore(useCache);
+            options.setLevel(AnalysisLevel.forName(level));
+
+            return Response.ok(
+                    admission.admitted(new BatchStreamingOutput(this.parser, this.batchExecutor, documents,
+                            options))).build();
+        } catch (RuntimeException e) {
+            admission.abandon();
+            throw e;
+        }
+    }
+
+    @POST
+    @Path("/parser")
+    @Consumes("application/x-www-form-urlencoded")
+    @Produces({ "application/xml", "application/json", "application/x-alexis-parse" })
+    public Response parser(@FormParam("content") final String content,
+            @FormParam("includeAssociations") final Boolean includeAssociations,
+            @FormParam("level") final String level, @FormParam("useCache") @DefaultValue("true") final boolean useCache,
+            @Context final HttpHeaders headers) {
+
+        // the form is already decoded; turn away overload before copying it
+        final AdmissionController admission = admission();
+        if (!admission.tryAdmit()) {
+            return admission.reject();
         }
 
-        final File tempFile2 = tempFile;
         try {
-            return Response.ok(new StreamingOutput() {
-                final InputStream is = new BufferedInputStream(new FileInputStream(tempFile2));
-
-                public void write(OutputStream os) throws IOException, WebApplicationException {
-                    try {
-                        StanfordNLPService.this.parser.parse(is, os);
-                        IOUtils.closeQuietly(is);
-                    } finally {
-                        IOUtils.closeQuietly(is);
-                        FileUtils.deleteQuietly(tempFile2);
-                    }
+            final ParseOptions options = new ParseOptions();
+            options.setLane(Lane.INTERACTIVE);
+            options.setUseSentenceCache(useCache);
+            options.setUseResultStore(useCache);
+            options.setFormat(formatFor(headers.getAcceptableMediaTypes()));
+            options.setLevel(levelFor(level, includeAssociations));
+
+            final InputStream is = new ByteArrayInputStream(content == null ? new byte[0] : content.getBytes(UTF_8));
+            return Response.ok(admission.admitted(parse(is, options)), options.getFormat().getMediaType())
+                    .build();
+        } catch (RuntimeException e) {
+            admission.abandon();
+            throw e;
+        }
+    }
+
+    /**
+     * Parse a UTF-8 <code>text/plain</code> body as it arrives, writing each
+     * sentence back as soon as it is parsed. Nothing is buffered beyond the
+     * sentence being parsed, so the result store (which needs the whole
+     * document) is not used.
+     */
+    @POST
+    @Path("/parser")
+    @Consumes("text/plain")
+    @Produces({ "application/xml", "application/json", "application/x-alexis-parse" })
+    public Response parse(final InputStream body, @QueryParam("useCache") @DefaultValue("true") final boolean useCache,
+            @QueryParam("level") final String level, @Context final HttpHeaders headers) {
+        final AdmissionController admission = admission();
+        if (!admission.tryAdmit()) {
+            IOUtils.closeQuietly(body);
+            return admission.reject();
+        }
+
+        try {
+            final ParseOptions options = new ParseOptions();
+            options.setLane(Lane.INTERACTIVE);
+            options.setUseSentenceCache(useCache);
+            options.setUseResultStore(false);
+            options.setFormat(formatFor(headers.getAcceptableMediaTypes()));
+            options.setLevel(AnalysisLevel.forName(level));
+
+            return Response.ok(admission.admitted(parse(body, options)), options.getFormat().getMediaType())
+                    .build();
+        } catch (RuntimeException e) {
+            IOUtils.closeQuietly(body);
+            admission.abandon();
+            throw e;
+        }
+    }
+
+    /**
+     * @return the named level; failing that, TAGS if the caller explicitly
+     *         asked for no associations (dependencies), otherwise FULL
+     */
+    static AnalysisLevel levelFor(final String level, final Boolean includeAssociations) {
+        if (level == null && Boolean.FALSE.equals(includeAssociations)) {
+            return AnalysisLevel.TAGS;
+        }
+        return AnalysisLevel.forName(level);
+    }
+
+    /**
+     * @return the first format the client accepts, in its order of
+     *         preference; XML for wildcards or if none matches
+     */
+    static OutputFormat formatFor(final List<MediaType> acceptable) {
+        for (final MediaType type : acceptable) {
+            if (type.isWildcardType()) {
+                return OutputFormat.XML;
+            }
+            for (final OutputFormat format : OutputFormat.values()) {
+                if (type.isCompatible(MediaType.valueOf(format.getMediaType()))) {
+                    return format;
                 }
-            }).build();
-        } catch (final Exception e) {
-            logger.severe(e.getMessage());
-            return Response.serverError().build();
+            }
         }
+        return OutputFormat.XML;
+    }
+
+    private StreamingOutput parse(final InputStream is, final ParseOptions options) {
+        return new StreamingOutput() {
+            public void write(final OutputStream os) throws IOException, WebApplicationException {
+                final long start = System.nanoTime();
+                try {
+                    StanfordNLPService.this.parser.parse(is, os, options);
+                } catch (RuntimeException e) {
+                    ERRORS.increment();
+                    throw e;
+                } finally {
+                    DOCUMENT.updateSince(start);
+                    IOUtils.closeQuietly(is);
+                }
+            }
+        };
     }
 }
@@ -0,0 +1,116 @@
+/*
+    stanford-nlp-war : provides REST, JMS, and HTML form connectivity to Stanford CoreNLP
+    Copyright (C) 2012  Tim Garrett, Mothsoft LLC
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License along
+    with this program; if not, write to the Free Software Foundation, Inc.,
+    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package com.mothsoft.alexis.stanford.jms;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class ChunkedReplyStreamTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static class Recorder extends ChunkedReplyStream {
+        private final List<byte[]> chunks = new ArrayList<byte[]>();
+        private final List<Integer> sequences = new ArrayList<Integer>();
+        private boolean last;
+
+        private Recorder(final int sentencesPerChunk, final int maxChunkBytes) {
+            super(sentencesPerChunk, maxChunkBytes);
+        }
+
+        @Override
+        protected void send(final byte[] chunk, final int sequence, final boolean last) {
+            assertFalse("chunk after last", this.last);
+            this.chunks.add(chunk);
+            this.sequences.add(sequence);
+            this.last = last;
+        }
+
+        private byte[] joined() throws IOException {
+            final ByteArrayOutputStream os = new ByteArrayOutputStream();
+            for (final byte[] chunk : this.chunks) {
+                os.write(chunk);
+            }
+            return os.toByteArray();
+        }
+    }
+
+    @Test
+    public void testChunksEveryNSentences() throws IOException {
+        final Recorder recorder = new Recorder(2, 1024);
+        for (int i = 0; i < 5; i++) {
+            recorder.write(("<sentence>" + i + "</sentence>").getBytes(UTF8));
+            recorder.flush();
+        }
+        recorder.write("</document>".getBytes(UTF8));
+        recorder.finish();
+
+        assertEquals(3, recorder.chunks.size());
+        assertEquals(3, recorder.getChunks());
+        for (int i = 0; i < recorder.sequences.size(); i++) {
+            assertEquals(i, recorder.sequences.get(i).intValue());
+        }
+        assertTrue(recorder.last);
+        assertEquals("<sentence>0</sentence><sentence>1</sentence>", new String(recorder.chunks.get(0), UTF8));
+        assertEquals("<sentence>4</sentence></document>", new String(recorder.chunks.get(2), UTF8));
+    }
+
+    @Test
+    public void testLastChunkMayBeEmpty() throws IOException {
+        final Recorder recorder = new Recorder(1, 1024);
+        recorder.write("<document/>".getBytes(UTF8));
+        recorder.flush();
+        recorder.finish();
+
+        assertEquals(2, recorder.chunks.size());
+        assertEquals(0, recorder.chunks.get(1).length);
+        assertTrue(recorder.last);
+    }
+
+    @Test
+    public void testSizeCutKeepsCharactersWhole() throws IOException {
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            builder.append("aé€😀");
+        }
+        final byte[] bytes = builder.toString().getBytes(UTF8);
+
+        final Recorder recorder = new Recorder(1000, 7);
+        for (int i = 0; i < bytes.length; i += 5) {
+            recorder.write(bytes, i, Math.min(5, bytes.length - i));
+        }
+        recorder.finish();
+
+        assertTrue(recorder.chunks.size() > 100);
+        for (final byte[] chunk : recorder.chunks) {
+            assertTrue(chunk.length <= 7);
+            assertEquals(chunk.length, new String(chunk, UTF8).getBytes(UTF8).length);
+        }
+        assertEquals(builder.toString(), new String(recorder.joined(), UTF8));
+    }
+}
@@ -0,0 +1,178 @@
+/*
+    stanford-nlp-war : provides REST, JMS, and HTML form connectivity to Stanford CoreNLP
+    Copyright (C) 2012  Tim Garrett, Mothsoft LLC
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License along
+    with this program; if not, write to the Free Software Foundation, Inc.,
+    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package com.mothsoft.alexis.stanford.jms;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.jms.BytesMessage;
+import javax.jms.Connection;
+import javax.jms.ConnectionFactory;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageConsumer;
+import javax.jms.Queue;
+import javax.jms.Session;
+import javax.jms.TemporaryQueue;
+
+import org.apache.activemq.ActiveMQConnectionFactory;
+import org.apache.activemq.broker.BrokerService;
+import org.apache.activemq.command.ActiveMQQueue;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jms.listener.DefaultMessageListenerContainer;
+
+import com.mothsoft.alexis.stanford.parser.ParserFactory;
+
+public class CompressedMessageTest {
+
+    private static final Queue REQUESTS = new ActiveMQQueue("queue.stanford.request");
+
+    private BrokerService broker;
+    private ConnectionFactory connectionFactory;
+    private DefaultMessageListenerContainer container;
+    private Connection connection;
+    private Session session;
+
+    @Before
+    public void setUp() throws Exception {
+        this.broker = new BrokerService();
+        this.broker.setBrokerName("compressedMessageTest");
+        this.broker.setPersistent(false);
+        this.broker.setUseJmx(false);
+        this.broker.start();
+        this.connectionFactory = new ActiveMQConnectionFactory("vm://compressedMessageTest?create=false");
+
+        this.container = new DefaultMessageListenerContainer();
+        this.container.setConnectionFactory(this.connectionFactory);
+        this.container.setDestination(REQUESTS);
+        this.container.setMessageListener(new ParseRequestMessageListener());
+        this.container.afterPropertiesSet();
+        this.container.start();
+
+        this.connection = this.connectionFactory.createConnection();
+        this.connection.start();
+        this.session = this.connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        this.connection.close();
+        this.container.destroy();
+        this.broker.stop();
+    }
+
+    @Test
+    public void testNegotiation() {
+        assertEquals(ContentEncoding.GZIP, ContentEncoding.negotiate("br, gzip, deflate"));
+        assertEquals(ContentEncoding.DEFLATE, ContentEncoding.negotiate("DEFLATE"));
+        assertNull(ContentEncoding.negotiate("br"));
+        assertNull(ContentEncoding.negotiate(null));
+    }
+
+    @Test
+    public void testCompressedRequestAndReply() throws Exception {
+        final BytesMessage request = this.session.createBytesMessage();
+        request.writeBytes(compress(ContentEncoding.GZIP, text()));
+        request.setStringProperty("CONTENT_ENCODING", "gzip");
+        request.setStringProperty("ACCEPT_ENCODING", "br, deflate");
+
+        final Message reply = send(request).receive(120 * 1000L);
+        assertNotNull(reply);
+        assertEquals("deflate", reply.getStringProperty("CONTENT_ENCODING"));
+        assertEquals("XML", reply.getStringProperty("FORMAT"));
+        assertEquals(expected(), decompress(ContentEncoding.DEFLATE, (BytesMessage) reply));
+    }
+
+    @Test
+    public void testCompressedChunks() throws Exception {
+        final BytesMessage request = this.session.createBytesMessage();
+        request.writeBytes(text().getBytes("UTF-8"));
+        request.setIntProperty("CHUNK_SENTENCES", 2);
+        // a stored result comes back all at once, in a single chunk
+        request.setBooleanProperty("USE_CACHE", false);
+        request.setStringProperty("ACCEPT_ENCODING", "gzip");
+
+        final MessageConsumer replies = send(request);
+        final StringBuilder document = new StringBuilder();
+        Message reply;
+        do {
+            reply = replies.receive(120 * 1000L);
+            assertNotNull(reply);
+            assertEquals("gzip", reply.getStringProperty("CONTENT_ENCODING"));
+            document.append(decompress(ContentEncoding.GZIP, (BytesMessage) reply));
+        } while (!reply.getBooleanProperty("LAST_CHUNK"));
+
+        assertTrue(reply.getIntProperty("CHUNK") > 1);
+        assertEquals(expected(), document.toString());
+    }
+
+    @Test
+    public void testUnknownEncodingIsAnError() throws Exception {
+        final BytesMessage request = this.session.createBytesMessage();
+        request.writeBytes(text().getBytes("UTF-8"));
+        request.setStringProperty("CONTENT_ENCODING", "br");
+
+        final Message reply = send(request).receive(120 * 1000L);
+        assertNotNull(reply);
+        assertTrue(reply.getBooleanProperty("EXCEPTION"));
+    }
+
+    private MessageConsumer send(final Message request) throws JMSException {
+        final TemporaryQueue replyTo = this.session.createTemporaryQueue();
+        request.setJMSReplyTo(replyTo);
+        this.session.createProducer(REQUESTS).send(request);
+        return this.session.createConsumer(replyTo);
+    }
+
+    private static byte[] compress(final ContentEncoding encoding, final String text) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final OutputStream os = encoding.compress(bytes);
+        os.write(text.getBytes("UTF-8"));
+        os.close();
+        return bytes.toByteArray();
+    }
+
+    private static String decompress(final ContentEncoding encoding, final BytesMessage message)
+            throws JMSException, IOException {
+        final byte[] bytes = new byte[(int) message.getBodyLength()];
+        message.readBytes(bytes);
+        return IOUtils.toString(encoding.decompress(new ByteArrayInputStream(bytes)), "UTF-8");
+    }
+
+    private static String text() throws IOException {
+        return IOUtils.toString(CompressedMessageTest.class.getResourceAsStream("/multiple.txt"), "UTF-8");
+    }
+
+    private static String expected() throws IOException {
+        final ByteArrayOutputStream os = new ByteArrayOutputStream();
+        ParserFactory.getParser().parse(CompressedMessageTest.class.getResourceAsStream("/multiple.txt"), os);
+        return os.toString("UTF-8");
+    }
+
+}
@@ -0,0 +1,177 @@
+/*
+    stanford-nlp-war : provides REST, JMS, and HTML form connectivity to Stanford CoreNLP
+    Copyright (C) 2012  Tim Garrett, Mothsoft LLC
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License along
+    with this program; if not, write to the Free Software Foundation, Inc.,
+    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package com.mothsoft.alexis.stanford.jms;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import javax.jms.Connection;
+import javax.jms.ConnectionFactory;
+import javax.jms.JMSException;
+import javax.jms.MessageConsumer;
+import javax.jms.MessageProducer;
+import javax.jms.Queue;
+import javax.jms.Session;
+import javax.jms.TemporaryQueue;
+import javax.jms.TextMessage;
+
+import org.apache.activemq.ActiveMQConnectionFactory;
+import org.apache.activemq.broker.BrokerService;
+import org.apache.activemq.command.ActiveMQQueue;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jms.listener.DefaultMessageListenerContainer;
+
+import com.mothsoft.alexis.stanford.metrics.Metrics;
+import com.mothsoft.alexis.stanford.parser.DocumentBatches;
+import com.mothsoft.alexis.stanford.parser.ParserFactory;
+
+public class FanOutTest {
+
+    private static final Queue REQUESTS = new ActiveMQQueue("queue.stanford.request");
+    private static final Queue BATCHES = new ActiveMQQueue("queue.stanford.batch");
+
+    private BrokerService broker;
+    private ConnectionFactory connectionFactory;
+    private DefaultMessageListenerContainer requestContainer;
+    private DefaultMessageListenerContainer batchContainer;
+
+    @Before
+    public void setUp() throws Exception {
+        this.broker = new BrokerService();
+        this.broker.setBrokerName("fanOutTest");
+        this.broker.setPersistent(false);
+        this.broker.setUseJmx(false);
+        this.broker.start();
+        this.connectionFactory = new ActiveMQConnectionFactory("vm://fanOutTest?create=false");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (this.requestContainer != null) {
+            this.requestContainer.destroy();
+        }
+        if (this.batchContainer != null) {
+            this.batchContainer.destroy();
+        }
+        this.broker.stop();
+    }
+
+    @Test
+    public void testBatchesAreReassembled() throws Exception {
+        final ParseRequestMessageListener listener = listener(1, 60);
+        this.requestContainer = container(REQUESTS, listener);
+        this.batchContainer = container(BATCHES, listener);
+        final long sent = Metrics.counter("jms.fanOut.batches").getCount();
+
+        assertEquals(expected(), request());
+        assertEquals(DocumentBatches.split(text(), 1).size(), Metrics.counter("jms.fanOut.batches").getCount()
+                - sent);
+    }
+
+    @Test
+    public void testUnansweredBatchesAreParsedHere() throws Exception {
+        // nothing consumes the batch queue
+        final ParseRequestMessageListener listener = listener(2, 1);
+        this.requestContainer = container(REQUESTS, listener);
+        final long local = Metrics.counter("jms.fanOut.local").getCount();
+
+        assertEquals(expected(), request());
+        assertEquals(DocumentBatches.split(text(), 2).size(), Metrics.counter("jms.fanOut.local").getCount()
+                - local);
+    }
+
+    @Test
+    public void testUnclaimedBatchesExpire() throws Exception {
+        final ParseRequestMessageListener listener = listener(2, 1);
+        this.requestContainer = container(REQUESTS, listener);
+        assertEquals(expected(), request());
+
+        final Connection connection = this.connectionFactory.createConnection();
+        try {
+            connection.start();
+            final Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            assertNull(session.createConsumer(BATCHES).receive(500));
+        } finally {
+            connection.close();
+        }
+    }
+
+    private ParseRequestMessageListener listener(final int fanOutSentences, final int batchTimeoutSeconds) {
+        final ParseRequestMessageListener listener = new ParseRequestMessageListener();
+        listener.setFanOutSentences(fanOutSentences);
+        listener.setBatchDestination(BATCHES);
+        listener.setBatchTimeoutSeconds(batchTimeoutSeconds);
+        return listener;
+    }
+
+    private DefaultMessageListenerContainer container(final Queue queue, final Object listener) {
+        final DefaultMessageListenerContainer container = new DefaultMessageListenerContainer();
+        container.setConnectionFactory(this.connectionFactory);
+        container.setDestination(queue);
+        container.setMessageListener(listener);
+        container.setConcurrentConsumers(2);
+        container.setCacheLevelName("CACHE_CONSUMER");
+        container.afterPropertiesSet();
+        container.start();
+        return container;
+    }
+
+    private String request() throws JMSException, IOException {
+        final Connection connection = this.connectionFactory.createConnection();
+        try {
+            connection.start();
+            final Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            final TemporaryQueue replyTo = session.createTemporaryQueue();
+
+            final TextMessage request = session.createTextMessage(text());
+            request.setJMSReplyTo(replyTo);
+            request.setStringProperty("DOCUMENT_ID", "fan-out");
+            final MessageProducer producer = session.createProducer(REQUESTS);
+            producer.send(request);
+
+            final MessageConsumer consumer = session.createConsumer(replyTo);
+            final TextMessage reply = (TextMessage) consumer.receive(120 * 1000L);
+            assertNotNull(reply);
+            assertEquals("fan-out", reply.getStringProperty("DOCUMENT_ID"));
+            assertTrue(!reply.propertyExists("EXCEPTION"));
+            return reply.getText();
+        } finally {
+            connection.close();
+        }
+    }
+
+    private static String text() throws IOException {
+        return IOUtils.toString(FanOutTest.class.getResourceAsStream("/multiple.txt"), "UTF-8");
+    }
+
+    private static String expected() throws IOException {
+        final ByteArrayOutputStream os = new ByteArrayOutputStream();
+        ParserFactory.getParser().parse(FanOutTest.class.getResourceAsStream("/multiple.txt"), os);
+        return os.toString("UTF-8");
+    }
+
+}
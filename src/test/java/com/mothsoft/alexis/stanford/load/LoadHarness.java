@@ -0,0 +1,425 @@
+/*
+    stanford-nlp-war : provides REST, JMS, and HTML form connectivity to Stanford CoreNLP
+    Copyright (C) 2012  Tim Garrett, Mothsoft LLC
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License along
+    with this program; if not, write to the Free Software Foundation, Inc.,
+    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package com.mothsoft.alexis.stanford.load;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.jms.Connection;
+import javax.jms.ConnectionFactory;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageConsumer;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+import javax.jms.TemporaryQueue;
+import javax.jms.TextMessage;
+
+import org.apache.activemq.ActiveMQConnectionFactory;
+import org.apache.activemq.broker.BrokerService;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.NullOutputStream;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.beans.factory.support.BeanDefinitionRegistry;
+import org.springframework.context.support.FileSystemXmlApplicationContext;
+
+import com.mothsoft.alexis.stanford.metrics.Counter;
+import com.mothsoft.alexis.stanford.metrics.Histogram;
+import com.mothsoft.alexis.stanford.metrics.Metrics;
+import com.mothsoft.alexis.stanford.service.ReadinessService;
+import com.mothsoft.alexis.stanford.service.StanfordNLPService;
+
+/**
+ * Production-like load on one node, for before a release: starts the webapp's
+ * Spring context against an embedded ActiveMQ broker, serves the REST parser
+ * resource through an embedded {@link RestEndpoint}, and drives closed-loop
+ * REST and JMS clients over a corpus of documents. Every report interval it prints
+ * throughput, latency percentiles, errors, the live heap after a full GC and
+ * the heap high-water mark, and parser worker reinitializations.
+ * <p>
+ * Run with <code>mvn -Pload test -Dload.options="..."</code>, where the
+ * options are system properties:
+ * <ul>
+ * <li>load.restClients, load.jmsClients - concurrent clients of each kind
+ * (default: 4 each)</li>
+ * <li>load.seconds - how long to run; hours for a soak (default: 300)</li>
+ * <li>load.reportSeconds - report interval (default: 30)</li>
+ * <li>load.corpus - a directory of UTF-8 text files, one document each
+ * (default: the benchmark corpus)</li>
+ * <li>load.useCache - let repeated documents hit the caches (default: false)</li>
+ * <li>load.port - REST port (default: 8089)</li>
+ * <li>load.brokerURL - must match applicationContext.xml (default:
+ * tcp://localhost:61616)</li>
+ * <li>load.leakPercent - growth of the live heap, from the first quarter of the
+ * run to the last, reported as a leak (default: 25)</li>
+ * </ul>
+ * Exits with status 1 if any request failed, a parser worker had to be
+ * reinitialized, or the live heap kept growing.
+ */
+public class LoadHarness {
+
+    private static final String[] CORPUS = { "/benchmark/short.txt", "/benchmark/medium.txt",
+            "/benchmark/long.txt", "/benchmark/document.txt", "/multiple.txt" };
+
+    private static final String SERVLET_ENDPOINT = "rest";
+    private static final String REQUEST_QUEUE = "queue.stanford.request";
+    private static final long JMS_TIMEOUT_MILLIS = 300 * 1000L;
+    private static final long MB = 1024 * 1024;
+
+    private final int restClients = Integer.getInteger("load.restClients", 4);
+    private final int jmsClients = Integer.getInteger("load.jmsClients", 4);
+    private final long seconds = Long.getLong("load.seconds", 300);
+    private final long reportSeconds = Long.getLong("load.reportSeconds", 30);
+    private final boolean useCache = Boolean.getBoolean("load.useCache");
+    private final int port = Integer.getInteger("load.port", 8089);
+    private final String brokerURL = System.getProperty("load.brokerURL", "tcp://localhost:61616");
+    private final int leakPercent = Integer.getInteger("load.leakPercent", 25);
+    private final String contextFile = System.getProperty("load.context",
+            "src/main/webapp/WEB-INF/applicationContext.xml");
+
+    private final Traffic rest = new Traffic("rest");
+    private final Traffic jms = new Traffic("jms");
+    private final Counter reinit = Metrics.counter("parser.reinit");
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    private final AtomicLong heapHighWater = new AtomicLong();
+    private final List<Long> liveHeap = new ArrayList<Long>();
+
+    private List<String> documents;
+    private String baseURL;
+    private volatile boolean running = true;
+
+    public static void main(final String[] args) throws Exception {
+        System.exit(new LoadHarness().run());
+    }
+
+    int run() throws Exception {
+        this.documents = loadCorpus(System.getProperty("load.corpus"));
+        this.baseURL = "http://localhost:" + this.port + RestEndpoint.PATH;
+
+        final BrokerService broker = new BrokerService();
+        broker.setPersistent(false);
+        broker.setUseJmx(false);
+        broker.addConnector(this.brokerURL);
+        broker.start();
+
+        final FileSystemXmlApplicationContext context = new FileSystemXmlApplicationContext(
+                new String[] { "file:" + this.contextFile }, false);
+        context.addBeanFactoryPostProcessor(new BeanFactoryPostProcessor() {
+            public void postProcessBeanFactory(final ConfigurableListableBeanFactory beanFactory) {
+                // needs the CXF servlet; the parser resource is served below
+                ((BeanDefinitionRegistry) beanFactory).removeBeanDefinition(SERVLET_ENDPOINT);
+            }
+        });
+        context.refresh();
+
+        final RestEndpoint endpoint = new RestEndpoint((StanfordNLPService) context.getBean("stanfordNlpService"),
+                this.port);
+        final ReadinessService readiness = (ReadinessService) context.getBean("readinessService");
+
+        final ScheduledExecutorService monitor = Executors.newSingleThreadScheduledExecutor();
+        try {
+            awaitReady(readiness);
+            System.out.println(String.format("Ready; %d REST and %d JMS clients for %ds over %d documents",
+                    this.restClients, this.jmsClients, this.seconds, this.documents.size()));
+
+            monitor.scheduleAtFixedRate(new Runnable() {
+                public void run() {
+                    LoadHarness.this.heapHighWater.set(Math.max(LoadHarness.this.heapHighWater.get(),
+                            LoadHarness.this.memory.getHeapMemoryUsage().getUsed()));
+                }
+            }, 0, 1, TimeUnit.SECONDS);
+
+            final List<Thread> clients = startClients();
+            final long start = System.currentTimeMillis();
+            final long end = start + this.seconds * 1000L;
+            while (System.currentTimeMillis() < end) {
+                Thread.sleep(Math.min(this.reportSeconds * 1000L, Math.max(1, end - System.currentTimeMillis())));
+                report((System.currentTimeMillis() - start) / 1000L);
+            }
+
+            this.running = false;
+            for (final Thread client : clients) {
+                client.join(JMS_TIMEOUT_MILLIS);
+            }
+            return summarize();
+        } finally {
+            monitor.shutdownNow();
+            endpoint.stop();
+            context.close();
+            broker.stop();
+        }
+    }
+
+    private static List<String> loadCorpus(final String directory) throws IOException {
+        final List<String> documents = new ArrayList<String>();
+        if (directory == null) {
+            for (final String resource : CORPUS) {
+                documents.add(IOUtils.toString(LoadHarness.class.getResourceAsStream(resource), "UTF-8"));
+            }
+        } else {
+            final File[] files = new File(directory).listFiles();
+            if (files == null) {
+                throw new IOException("Not a directory: " + directory);
+            }
+            Arrays.sort(files);
+            for (final File file : files) {
+                if (file.isFile()) {
+                    documents.add(FileUtils.readFileToString(file, "UTF-8"));
+                }
+            }
+        }
+        if (documents.isEmpty()) {
+            throw new IOException("Empty corpus");
+        }
+        return documents;
+    }
+
+    private static void awaitReady(final ReadinessService readiness) throws InterruptedException {
+        while (readiness.ready().getStatus() != HttpURLConnection.HTTP_OK) {
+            Thread.sleep(1000L);
+        }
+    }
+
+    private List<Thread> startClients() {
+        final List<Thread> clients = new ArrayList<Thread>();
+        for (int i = 0; i < this.restClients; i++) {
+            final int client = i;
+            clients.add(new Thread(new Runnable() {
+                public void run() {
+                    runRestClient(client);
+                }
+            }, "load-rest-" + i));
+        }
+        for (int i = 0; i < this.jmsClients; i++) {
+            final int client = i;
+            clients.add(new Thread(new Runnable() {
+                public void run() {
+                    runJmsClient(client);
+                }
+            }, "load-jms-" + i));
+        }
+        for (final Thread thread : clients) {
+            thread.start();
+        }
+        return clients;
+    }
+
+    private void runRestClient(final int client) {
+        for (int i = client; this.running; i++) {
+            final long start = System.nanoTime();
+            try {
+                final int status = post(this.documents.get(i % this.documents.size()));
+                if (status == HttpURLConnection.HTTP_OK) {
+                    this.rest.latency.updateSince(start);
+                } else if (status == HttpURLConnection.HTTP_UNAVAILABLE) {
+                    // turned away by admission control; back off
+                    this.rest.rejected.increment();
+                    Thread.sleep(1000L);
+                } else {
+                    this.rest.error("HTTP " + status);
+                }
+            } catch (final InterruptedException e) {
+                return;
+            } catch (final IOException e) {
+                this.rest.error(e.toString());
+            }
+        }
+    }
+
+    private int post(final String document) throws IOException {
+        final HttpURLConnection connection = (HttpURLConnection) new URL(this.baseURL + "?useCache="
+                + this.useCache).openConnection();
+        try {
+            connection.setDoOutput(true);
+            connection.setRequestMethod("POST");
+            connection.setRequestProperty("Content-Type", "text/plain; charset=utf-8");
+            connection.setRequestProperty("Accept", "application/xml");
+            final OutputStream os = connection.getOutputStream();
+            os.write(document.getBytes("UTF-8"));
+            os.close();
+
+            final int status = connection.getResponseCode();
+            final InputStream is = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+            if (is != null) {
+                IOUtils.copy(is, new NullOutputStream());
+                is.close();
+            }
+            return status;
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private void runJmsClient(final int client) {
+        final ConnectionFactory connectionFactory = new ActiveMQConnectionFactory(this.brokerURL);
+        Connection connection = null;
+        try {
+            connection = connectionFactory.createConnection();
+            connection.start();
+            final Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            final TemporaryQueue replyTo = session.createTemporaryQueue();
+            final MessageProducer producer = session.createProducer(session.createQueue(REQUEST_QUEUE));
+            final MessageConsumer consumer = session.createConsumer(replyTo);
+
+            for (int i = client; this.running; i++) {
+                final String documentId = "load-" + client + "-" + i;
+                final TextMessage request = session.createTextMessage(this.documents.get(i
+                        % this.documents.size()));
+                request.setJMSReplyTo(replyTo);
+                request.setStringProperty("DOCUMENT_ID", documentId);
+                request.setBooleanProperty("USE_CACHE", this.useCache);
+
+                final long start = System.nanoTime();
+                producer.send(request);
+                final Message reply = receive(consumer, documentId);
+                if (reply == null) {
+                    this.jms.error("No reply to " + documentId);
+                } else if (reply.propertyExists("EXCEPTION") && reply.getBooleanProperty("EXCEPTION")) {
+                    this.jms.error("Failed " + documentId + ": " + ((TextMessage) reply).getText());
+                } else {
+                    this.jms.latency.updateSince(start);
+                }
+            }
+        } catch (final JMSException e) {
+            this.jms.error(e.toString());
+        } finally {
+            if (connection != null) {
+                try {
+                    connection.close();
+                } catch (final JMSException e) {
+                    // shutting down anyway
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the reply to the document, skipping any late reply to an earlier
+     *         one, or null after the timeout
+     */
+    private static Message receive(final MessageConsumer consumer, final String documentId) throws JMSException {
+        final long deadline = System.currentTimeMillis() + JMS_TIMEOUT_MILLIS;
+        long remaining = JMS_TIMEOUT_MILLIS;
+        while (remaining > 0) {
+            final Message reply = consumer.receive(remaining);
+            if (reply == null || documentId.equals(reply.getStringProperty("DOCUMENT_ID"))) {
+                return reply;
+            }
+            remaining = deadline - System.currentTimeMillis();
+        }
+        return null;
+    }
+
+    private void report(final long elapsedSeconds) {
+        System.gc();
+        final long live = this.memory.getHeapMemoryUsage().getUsed();
+        this.liveHeap.add(live);
+
+        System.out.println(String.format("[%6ds] %s | %s | heap live %dMB high %dMB | reinit %d", elapsedSeconds,
+                this.rest.summary(elapsedSeconds), this.jms.summary(elapsedSeconds), live / MB,
+                this.heapHighWater.get() / MB, this.reinit.getCount()));
+    }
+
+    private int summarize() {
+        boolean failed = false;
+        final long errors = this.rest.errors.getCount() + this.jms.errors.getCount();
+        if (errors > 0) {
+            System.out.println("FAILED: " + errors + " errors");
+            failed = true;
+        }
+        if (this.reinit.getCount() > 0) {
+            System.out.println("FAILED: " + this.reinit.getCount() + " parser worker reinitializations");
+            failed = true;
+        }
+
+        // compare the smallest live heap of the first and last quarters, which
+        // is the least disturbed by requests in flight
+        final int quarter = this.liveHeap.size() / 4;
+        if (quarter > 0) {
+            final long first = min(this.liveHeap.subList(0, quarter));
+            final long last = min(this.liveHeap.subList(this.liveHeap.size() - quarter, this.liveHeap.size()));
+            final long growth = (last - first) * 100 / Math.max(1, first);
+            System.out.println(String.format("Live heap %dMB -> %dMB (%+d%%)", first / MB, last / MB, growth));
+            if (growth > this.leakPercent) {
+                System.out.println("FAILED: live heap grew by more than " + this.leakPercent + "%");
+                failed = true;
+            }
+        }
+
+        System.out.println(failed ? "FAILED" : "PASSED");
+        return failed ? 1 : 0;
+    }
+
+    private static long min(final List<Long> values) {
+        long min = Long.MAX_VALUE;
+        for (final Long value : values) {
+            min = Math.min(min, value);
+        }
+        return min;
+    }
+
+    /**
+     * Latencies and errors of one kind of client, also published as load.*
+     * metrics
+     */
+    private static class Traffic {
+        private final String name;
+        private final Histogram latency;
+        private final Counter errors;
+        private final Counter rejected;
+
+        private Traffic(final String name) {
+            this.name = name;
+            this.latency = Metrics.histogram("load." + name);
+            this.errors = Metrics.counter("load." + name + ".errors");
+            this.rejected = Metrics.counter("load." + name + ".rejected");
+        }
+
+        private void error(final String message) {
+            this.errors.increment();
+            if (this.errors.getCount() <= 10) {
+                System.out.println(this.name + " error: " + message);
+            }
+        }
+
+        private String summary(final long elapsedSeconds) {
+            return String.format("%s %d (%.1f/s) p50 %dms p95 %dms p99 %dms max %dms errors %d rejected %d",
+                    this.name, this.latency.getCount(), this.latency.getCount() / (double) Math.max(1,
+                            elapsedSeconds), this.latency.get50thPercentile() / 1000L,
+                    this.latency.get95thPercentile() / 1000L, this.latency.get99thPercentile() / 1000L,
+                    this.latency.getMax() / 1000L, this.errors.getCount(), this.rejected.getCount());
+        }
+    }
+
+}
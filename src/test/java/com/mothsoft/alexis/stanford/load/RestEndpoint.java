@@ -0,0 +1,140 @@
+/*
+    stanford-nlp-war : provides REST, JMS, and HTML form connectivity to Stanford CoreNLP
+    Copyright (C) 2012  Tim Garrett, Mothsoft LLC
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License along
+    with this program; if not, write to the Free Software Foundation, Inc.,
+    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package com.mothsoft.alexis.stanford.load;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+
+import org.apache.cxf.jaxrs.impl.HttpHeadersImpl;
+import org.apache.cxf.message.Message;
+import org.apache.cxf.message.MessageImpl;
+
+import com.mothsoft.alexis.stanford.service.AdmissionController;
+import com.mothsoft.alexis.stanford.service.StanfordNLPService;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * POST /stanford/api/parser (text/plain) on the JDK's HTTP server, handed to
+ * the {@link StanfordNLPService} bean the way the CXF servlet would: admission
+ * control, streaming and status codes are the resource's own. CXF 2.5 cannot
+ * be started outside the servlet alongside Spring 5, whose AOP utilities it
+ * calls, so it is not used here.
+ */
+class RestEndpoint {
+
+    static final String PATH = "/stanford/api/parser";
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    RestEndpoint(final StanfordNLPService service, final int port) throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+        this.server.createContext(PATH, new HttpHandler() {
+            public void handle(final HttpExchange exchange) throws IOException {
+                try {
+                    RestEndpoint.handle(service, exchange);
+                } finally {
+                    exchange.close();
+                    AdmissionController.requestCompleted();
+                }
+            }
+        });
+        this.server.setExecutor(this.executor);
+        this.server.start();
+    }
+
+    void stop() {
+        this.server.stop(0);
+        this.executor.shutdownNow();
+    }
+
+    private static void handle(final StanfordNLPService service, final HttpExchange exchange) throws IOException {
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            exchange.sendResponseHeaders(405, -1);
+            return;
+        }
+
+        final Map<String, String> query = query(exchange.getRequestURI().getRawQuery());
+        final Response response = service.parse(exchange.getRequestBody(),
+                !"false".equals(query.get("useCache")), query.get("level"), headers(exchange));
+
+        for (final Map.Entry<String, List<Object>> header : response.getMetadata().entrySet()) {
+            for (final Object value : header.getValue()) {
+                exchange.getResponseHeaders().add(header.getKey(), String.valueOf(value));
+            }
+        }
+
+        final Object entity = response.getEntity();
+        if (!(entity instanceof StreamingOutput)) {
+            exchange.sendResponseHeaders(response.getStatus(), -1);
+            return;
+        }
+
+        // chunked, as the resource streams one sentence at a time
+        exchange.sendResponseHeaders(response.getStatus(), 0);
+        final OutputStream os = exchange.getResponseBody();
+        ((StreamingOutput) entity).write(os);
+        os.close();
+    }
+
+    private static Map<String, String> query(final String rawQuery) throws IOException {
+        final Map<String, String> query = new HashMap<String, String>();
+        if (rawQuery != null) {
+            for (final String parameter : rawQuery.split("&")) {
+                final int equals = parameter.indexOf('=');
+                if (equals > 0) {
+                    query.put(URLDecoder.decode(parameter.substring(0, equals), "UTF-8"), URLDecoder.decode(
+                            parameter.substring(equals + 1), "UTF-8"));
+                }
+            }
+        }
+        return query;
+    }
+
+    /**
+     * The request headers as CXF presents them to the resource: keys match
+     * regardless of case, and a missing Accept header accepts anything
+     */
+    private static HttpHeaders headers(final HttpExchange exchange) {
+        final Map<String, List<String>> headers = new TreeMap<String, List<String>>(String.CASE_INSENSITIVE_ORDER);
+        headers.putAll(exchange.getRequestHeaders());
+
+        final Message message = new MessageImpl();
+        message.put(Message.PROTOCOL_HEADERS, headers);
+        final String accept = exchange.getRequestHeaders().getFirst(HttpHeaders.ACCEPT);
+        message.put(Message.ACCEPT_CONTENT_TYPE, accept == null ? MediaType.WILDCARD : accept);
+        return new HttpHeadersImpl(message);
+    }
+
+}
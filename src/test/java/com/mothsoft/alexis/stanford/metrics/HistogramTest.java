@@ -0,0 +1,60 @@
+/*
+    stanford-nlp-war : provides REST, JMS, and HTML form connectivity to Stanford CoreNLP
+    Copyright (C) 2012  Tim Garrett, Mothsoft LLC
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License along
+    with this program; if not, write to the Free Software Foundation, Inc.,
+    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package com.mothsoft.alexis.stanford.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class HistogramTest {
+
+    @Test
+    public void testBucketsCoverEveryValue() {
+        for (long value = 0; value < 100000; value++) {
+            final int index = Histogram.indexOf(value);
+            assertTrue(Histogram.lowerBoundOf(index) <= value);
+            assertTrue(value < Histogram.lowerBoundOf(index + 1));
+        }
+        assertTrue(Histogram.lowerBoundOf(Histogram.indexOf(Long.MAX_VALUE)) <= Long.MAX_VALUE);
+    }
+
+    @Test
+    public void testPercentilesWithinBucketError() {
+        final Histogram histogram = new Histogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.update(i);
+        }
+
+        assertEquals(1000, histogram.getCount());
+        assertEquals(1000, histogram.getMax());
+        assertEquals(500.5, histogram.getMean(), 0.001);
+        assertEquals(500, histogram.get50thPercentile(), 500 / 8);
+        assertEquals(950, histogram.get95thPercentile(), 950 / 8);
+        assertEquals(990, histogram.get99thPercentile(), 990 / 8);
+    }
+
+    @Test
+    public void testEmptyHistogram() {
+        final Histogram histogram = new Histogram();
+        assertEquals(0, histogram.get99thPercentile());
+        assertEquals(0.0, histogram.getMean(), 0.0);
+    }
+
+}
@@ -0,0 +1,73 @@
+/*
+    stanford-nlp-war : provides REST, JMS, and HTML form connectivity to Stanford CoreNLP
+    Copyright (C) 2012  Tim Garrett, Mothsoft LLC
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License along
+    with this program; if not, write to the Free Software Foundation, Inc.,
+    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package com.mothsoft.alexis.stanford.parser;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.output.NullOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * End-to-end document throughput with one thread per processor sharing the
+ * parser, the way REST and JMS requests do. Compare against
+ * {@link PipelineBenchmark#parse()} to see how well the worker pool scales;
+ * use <code>-Dbenchmark.options="-t N"</code> to try other thread counts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgs = { "-Xmx3g" })
+@Threads(Threads.MAX)
+public class ConcurrentParseBenchmark {
+
+    @Param({ "medium", "document" })
+    public String corpus;
+
+    private byte[] bytes;
+    private Parser parser;
+    private ParseOptions uncached;
+
+    @Setup
+    public void setUp() throws IOException {
+        this.bytes = PipelineBenchmark.read("/benchmark/" + this.corpus + ".txt").getBytes("UTF-8");
+        this.parser = ParserFactory.getParser();
+        this.uncached = PipelineBenchmark.uncached();
+    }
+
+    @Benchmark
+    public void parse() throws IOException {
+        this.parser.parse(new ByteArrayInputStream(this.bytes), new NullOutputStream(), this.uncached);
+    }
+
+}
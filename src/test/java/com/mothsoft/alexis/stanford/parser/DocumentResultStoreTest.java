@@ -0,0 +1,154 @@
+/*
+    stanford-nlp-war : provides REST, JMS, and HTML form connectivity to Stanford CoreNLP
+    Copyright (C) 2012  Tim Garrett, Mothsoft LLC
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License along
+    with this program; if not, write to the Free Software Foundation, Inc.,
+    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package com.mothsoft.alexis.stanford.parser;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DocumentResultStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testMemoryTierEvictsLeastRecentlyUsed() {
+        final DocumentResultStore store = new DocumentResultStore(10, null, 0);
+        store.put("a", new byte[4]);
+        store.put("b", new byte[4]);
+        store.get("a");
+        store.put("c", new byte[4]);
+
+        assertEquals(4, store.get("a").length);
+        assertNull(store.get("b"));
+        assertEquals(8, store.getMemoryBytes());
+    }
+
+    @Test
+    public void testDiskTierSurvivesNewStore() {
+        final byte[] result = "<document/>".getBytes();
+        new DocumentResultStore(1024, this.folder.getRoot(), 1024 * 1024).put("key", result);
+
+        final DocumentResultStore reopened = new DocumentResultStore(1024, this.folder.getRoot(), 1024 * 1024);
+        assertArrayEquals(result, reopened.get("key"));
+        assertEquals(1, reopened.getDiskHits());
+        assertArrayEquals(result, reopened.get("key"));
+        assertEquals(1, reopened.getHits());
+    }
+
+    @Test
+    public void testResultsLargerThanTheStoreAreNotBuffered() throws Exception {
+        final AtomicInteger parses = new AtomicInteger();
+        final Parser repeat = new Parser() {
+            public void parse(final InputStream is, final OutputStream os) throws IOException {
+                parse(is, os, new ParseOptions());
+            }
+
+            public void parse(final InputStream is, final OutputStream os, final ParseOptions options)
+                    throws IOException {
+                parses.incrementAndGet();
+                final byte[] content = IOUtils.toByteArray(is);
+                for (int i = 0; i < 10; i++) {
+                    os.write(content);
+                }
+            }
+        };
+
+        final DocumentResultStore store = new DocumentResultStore(64, null, 0);
+        final ResultStoreParser parser = new ResultStoreParser(repeat, store);
+        for (int i = 0; i < 2; i++) {
+            final ByteArrayOutputStream os = new ByteArrayOutputStream();
+            parser.parse(new ByteArrayInputStream("0123456789".getBytes()), os);
+            assertEquals(100, os.size());
+        }
+
+        assertEquals(2, parses.get());
+        assertEquals(0, store.getMemoryBytes());
+    }
+
+    @Test
+    public void testIdenticalConcurrentRequestsShareOneParse() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger parses = new AtomicInteger();
+        final Parser slow = new Parser() {
+            public void parse(final InputStream is, final OutputStream os) throws IOException {
+                parse(is, os, new ParseOptions());
+            }
+
+            public void parse(final InputStream is, final OutputStream os, final ParseOptions options)
+                    throws IOException {
+                parses.incrementAndGet();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                IOUtils.copy(is, os);
+            }
+        };
+
+        final ResultStoreParser parser = new ResultStoreParser(slow, new DocumentResultStore(1024, null, 0));
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<String>> results = new ArrayList<Future<String>>();
+            for (int i = 0; i < 4; i++) {
+                results.add(executor.submit(new Callable<String>() {
+                    public String call() throws Exception {
+                        final ByteArrayOutputStream os = new ByteArrayOutputStream();
+                        parser.parse(new ByteArrayInputStream("same document".getBytes()), os);
+                        return os.toString();
+                    }
+                }));
+            }
+
+            while (parser.getCoalesced() < 3) {
+                Thread.sleep(10);
+            }
+            release.countDown();
+
+            for (final Future<String> result : results) {
+                assertEquals("same document", result.get());
+            }
+            assertEquals(1, parses.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+}
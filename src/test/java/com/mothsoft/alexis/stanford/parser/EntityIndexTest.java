@@ -0,0 +1,133 @@
+/*
+    stanford-nlp-war : provides REST, JMS, and HTML form connectivity to Stanford CoreNLP
+    Copyright (C) 2012  Tim Garrett, Mothsoft LLC
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License along
+    with this program; if not, write to the Free Software Foundation, Inc.,
+    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package com.mothsoft.alexis.stanford.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.pool.impl.GenericObjectPool;
+import org.junit.Test;
+
+public class EntityIndexTest {
+
+    @Test
+    public void testCountsOccurrencesAndDocuments() {
+        final EntityIndex index = new EntityIndex(100, null);
+        add(index, "Atlanta", "LOCATION", 2, "Tim Garrett", "PERSON", 1);
+        add(index, "Atlanta", "LOCATION", 1, "Mothsoft", "ORGANIZATION", 3);
+        add(index, "Atlanta", "ORGANIZATION", 1);
+
+        assertEquals(3, index.getDocuments());
+        assertEquals(4, index.getNames());
+
+        final List<EntityIndex.Entry> top = index.top(null, 2);
+        assertEquals(2, top.size());
+        assertEquals("Atlanta", top.get(0).getName());
+        assertEquals("LOCATION", top.get(0).getType());
+        assertEquals(3, top.get(0).getOccurrences());
+        assertEquals(2, top.get(0).getDocuments());
+        assertEquals("Mothsoft", top.get(1).getName());
+
+        final List<EntityIndex.Entry> people = index.top("PERSON", 10);
+        assertEquals(1, people.size());
+        assertEquals("Tim Garrett", people.get(0).getName());
+
+        assertEquals(2, index.lookup("Atlanta").size());
+        assertTrue(index.lookup("Chicago").isEmpty());
+    }
+
+    @Test
+    public void testFullTableKeepsFrequentNames() {
+        final EntityIndex index = new EntityIndex(10, null);
+        add(index, "Atlanta", "LOCATION", 50);
+        for (int i = 0; i < 100; i++) {
+            add(index, "Place " + i, "LOCATION", 1);
+        }
+
+        assertTrue(index.getNames() <= 10);
+        assertTrue(index.getPruned() >= 90);
+        assertEquals("Atlanta", index.top("LOCATION", 1).get(0).getName());
+        assertEquals(50, index.lookup("Atlanta").get(0).getOccurrences());
+    }
+
+    @Test
+    public void testSnapshotRoundTrip() throws IOException {
+        final File file = File.createTempFile("entities", ".bin");
+        try {
+            final EntityIndex index = new EntityIndex(100, file);
+            add(index, "Atlanta", "LOCATION", 2, "Tim Garrett", "PERSON", 1);
+            index.snapshot();
+
+            final EntityIndex loaded = new EntityIndex(100, file);
+            assertEquals(1, loaded.getDocuments());
+            assertEquals(2, loaded.getNames());
+            assertEquals(2, loaded.lookup("Atlanta").get(0).getOccurrences());
+            assertEquals("PERSON", loaded.lookup("Tim Garrett").get(0).getType());
+        } finally {
+            FileUtils.deleteQuietly(file);
+        }
+    }
+
+    @Test
+    public void testParserFeedsIndex() throws Exception {
+        final GenericObjectPool<SentenceWorker> workers = new GenericObjectPool<SentenceWorker>(
+                new SentenceWorkerFactory(), 1);
+        final EntityIndex index = new EntityIndex(100, null);
+        try {
+            final ParserSettings settings = new ParserSettings();
+            settings.setEntityIndex(index);
+            final Parser parser = new ParserImpl(workers, settings);
+            final ParseOptions options = new ParseOptions();
+            options.setLevel(AnalysisLevel.NAMES);
+            parser.parse(EntityIndexTest.class.getResourceAsStream("/multiple.txt"), new ByteArrayOutputStream(),
+                    options);
+
+            assertEquals(1, index.getDocuments());
+            assertEquals("LOCATION", index.lookup("Atlanta").get(0).getType());
+
+            options.setIndexEntities(false);
+            parser.parse(EntityIndexTest.class.getResourceAsStream("/multiple.txt"), new ByteArrayOutputStream(),
+                    options);
+            assertEquals(1, index.getDocuments());
+        } finally {
+            workers.close();
+        }
+    }
+
+    /**
+     * Count one document of (name, type, count) triples
+     */
+    private static void add(final EntityIndex index, final Object... names) {
+        final NamedEntity[] entities = new NamedEntity[names.length / 3];
+        final int[] counts = new int[entities.length];
+        for (int i = 0; i < entities.length; i++) {
+            entities[i] = new NamedEntity((String) names[3 * i], (String) names[3 * i + 1]);
+            counts[i] = (Integer) names[3 * i + 2];
+        }
+        index.addDocument(Arrays.asList(entities), counts);
+    }
+
+}
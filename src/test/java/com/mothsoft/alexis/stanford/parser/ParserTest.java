@@ -18,11 +18,31 @@
  */
 package com.mothsoft.alexis.stanford.parser;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.pool.impl.GenericObjectPool;
 import org.junit.Test;
 
+import com.mothsoft.alexis.stanford.metrics.Metrics;
+
 public class ParserTest {
 
     private Parser parser = ParserFactory.getParser();
@@ -38,4 +58,302 @@ public class ParserTest {
         System.out.println("Time: " + ((System.currentTimeMillis() - start) / 1000.00));
     }
 
+    @Test
+    public void testConcurrentParsesMatchSequentialParse() throws Exception {
+        final String expected = parse("/multiple.txt");
+
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<String>> results = new ArrayList<Future<String>>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(new Callable<String>() {
+                    public String call() throws Exception {
+                        // bypass the caches so every thread really parses
+                        final ParseOptions options = new ParseOptions();
+                        options.setUseSentenceCache(false);
+                        options.setUseResultStore(false);
+
+                        final ByteArrayOutputStream os = new ByteArrayOutputStream();
+                        ParserTest.this.parser.parse(ParserTest.class.getResourceAsStream("/multiple.txt"), os,
+                                options);
+                        return os.toString("UTF-8");
+                    }
+                }));
+            }
+
+            for (final Future<String> result : results) {
+                assertEquals(expected, result.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testParallelSentencesMatchSequentialParse() throws Exception {
+        final String expected = parse("/multiple.txt");
+
+        final GenericObjectPool<SentenceWorker> workers = new GenericObjectPool<SentenceWorker>(
+                new SentenceWorkerFactory(), 3);
+        final ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            // a window smaller than the document forces the in-order drain
+            final ParserSettings settings = new ParserSettings();
+            settings.setSentenceExecutor(executor, 2);
+            final Parser parallel = new ParserImpl(workers, settings);
+            assertEquals(expected, parse(parallel, "/multiple.txt"));
+
+            // a flush right after each sentence written, including the final
+            // drain
+            final List<String> flushed = new ArrayList<String>();
+            parallel.parse(ParserTest.class.getResourceAsStream("/multiple.txt"), new ByteArrayOutputStream() {
+                @Override
+                public void flush() {
+                    flushed.add(toString());
+                }
+            });
+            int sentences = 0;
+            for (int i = 0; i < flushed.size(); i++) {
+                if (flushed.get(i).trim().endsWith("</s>") && (i == 0 || !flushed.get(i).equals(flushed.get(i - 1)))) {
+                    sentences++;
+                }
+            }
+            assertEquals(expected.split("<s[ >]").length - 1, sentences);
+        } finally {
+            executor.shutdownNow();
+            workers.close();
+        }
+    }
+
+    @Test
+    public void testSentenceCacheServesRepeatedSentences() throws Exception {
+        final String expected = parse("/multiple.txt");
+
+        final GenericObjectPool<SentenceWorker> workers = new GenericObjectPool<SentenceWorker>(
+                new SentenceWorkerFactory(), 1);
+        final SentenceCache cache = new SentenceCache(100);
+        try {
+            final ParserSettings settings = new ParserSettings();
+            settings.setCache(cache);
+            final Parser cached = new ParserImpl(workers, settings);
+            assertEquals(expected, parse(cached, "/multiple.txt"));
+            assertEquals(0, cache.getHits());
+
+            final long misses = cache.getMisses();
+            assertEquals(expected, parse(cached, "/multiple.txt"));
+            assertEquals(misses, cache.getHits());
+            assertEquals(misses, cache.getMisses());
+
+            final ParseOptions options = new ParseOptions();
+            options.setUseSentenceCache(false);
+            final ByteArrayOutputStream os = new ByteArrayOutputStream();
+            cached.parse(ParserTest.class.getResourceAsStream("/multiple.txt"), os, options);
+            assertEquals(expected, os.toString("UTF-8"));
+            assertEquals(misses, cache.getHits());
+        } finally {
+            workers.close();
+        }
+    }
+
+    @Test
+    public void testSentencesOverBudgetAreOnlyTagged() throws Exception {
+        final GenericObjectPool<SentenceWorker> workers = new GenericObjectPool<SentenceWorker>(
+                new SentenceWorkerFactory(), 1);
+        // every sentence looks far more expensive than the one second budget
+        final SentenceScheduler scheduler = new SentenceScheduler(1, 0, new SentenceCostModel(1.0e9));
+        try {
+            final ParserSettings settings = new ParserSettings();
+            settings.setScheduler(scheduler);
+            settings.setBudget(new ParseBudget(1000L, 0L));
+            final Parser budgeted = new ParserImpl(workers, settings);
+            final String degraded = parse(budgeted, "/multiple.txt");
+
+            assertTrue(degraded.contains("<s degraded=\"true\">"));
+            assertTrue(degraded.contains("<word ind=\"1\" pos=\"NNP\">Mothsoft</word>"));
+            assertFalse(degraded.contains("<dependencies"));
+            assertTrue(degraded.contains(">Atlanta</name>"));
+        } finally {
+            workers.close();
+        }
+    }
+
+    @Test
+    public void testJsonCarriesTheSameDependencies() throws IOException {
+        final String xml = parse("/multiple.txt");
+        final String json = new String(parse(this.parser, "/multiple.txt", OutputFormat.JSON), "UTF-8");
+
+        assertTrue(json.startsWith("{\"sentences\":[{\"words\":[[\"Mothsoft\",\"NNP\"]"));
+        assertEquals(count(xml, "<s>"), count(json, "\"words\":"));
+        // dependencies are the only [string,int,int] triples
+        final Matcher dependencies = Pattern.compile("\\[\"[^\"]+\",\\d+,\\d+\\]").matcher(json);
+        int count = 0;
+        while (dependencies.find()) {
+            count++;
+        }
+        assertEquals(count(xml, "<dep "), count);
+        assertTrue(json.contains("[\"Atlanta\","));
+    }
+
+    @Test
+    public void testBinaryDecodes() throws IOException {
+        final String xml = parse("/multiple.txt");
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(parse(this.parser, "/multiple.txt",
+                OutputFormat.BINARY)));
+
+        assertEquals(BinaryDocumentWriter.MAGIC, in.readInt());
+        assertEquals(BinaryDocumentWriter.VERSION, in.readByte());
+
+        int sentences = 0;
+        int dependencies = 0;
+        byte record;
+        while ((record = in.readByte()) == BinaryDocumentWriter.SENTENCE) {
+            sentences++;
+            assertEquals(0, in.readByte());
+            final int words = in.readShort();
+            for (int i = 0; i < words; i++) {
+                in.readUTF();
+                assertFalse(in.readUTF().isEmpty());
+            }
+            final int count = in.readShort();
+            for (int i = 0; i < count; i++) {
+                in.readUTF();
+                assertTrue(in.readShort() <= words);
+                assertTrue(in.readShort() <= words);
+            }
+            dependencies += count;
+        }
+        assertEquals(BinaryDocumentWriter.NAMES, record);
+        assertEquals(count(xml, "<s>"), sentences);
+        assertEquals(count(xml, "<dep "), dependencies);
+
+        final int names = in.readInt();
+        assertEquals(count(xml, "<name "), names);
+        for (int i = 0; i < names; i++) {
+            in.readUTF();
+            assertTrue(in.readInt() > 0);
+        }
+        assertEquals(BinaryDocumentWriter.END, in.readByte());
+        assertEquals(-1, in.read());
+    }
+
+    @Test
+    public void testLowerLevelsSkipTheParse() throws IOException {
+        final String xml = parse("/multiple.txt");
+        final String names = xml.substring(xml.indexOf("<names>"));
+        final long parses = Metrics.histogram("parser.parse").getCount();
+
+        final ParseOptions options = new ParseOptions();
+        options.setLevel(AnalysisLevel.NAMES);
+        final ByteArrayOutputStream os = new ByteArrayOutputStream();
+        this.parser.parse(ParserTest.class.getResourceAsStream("/multiple.txt"), os, options);
+        final String namesOnly = os.toString("UTF-8");
+        assertTrue(namesOnly.contains("<document><sentences></sentences><names>"));
+        assertTrue(namesOnly.endsWith(names));
+
+        options.setLevel(AnalysisLevel.TAGS);
+        options.setFormat(OutputFormat.JSON);
+        os.reset();
+        this.parser.parse(ParserTest.class.getResourceAsStream("/multiple.txt"), os, options);
+        final String tags = os.toString("UTF-8");
+        assertEquals(count(xml, "<s>"), count(tags, "\"dependencies\":[]"));
+        assertTrue(tags.startsWith("{\"sentences\":[{\"words\":[[\"Mothsoft\",\"NNP\"]"));
+        assertFalse(tags.contains("degraded"));
+
+        assertEquals(parses, Metrics.histogram("parser.parse").getCount());
+    }
+
+    @Test
+    public void testAssembledFragmentsMatchDocument() throws IOException {
+        final String text = IOUtils.toString(ParserTest.class.getResourceAsStream("/multiple.txt"), "UTF-8");
+        final List<String> batches = DocumentBatches.split(text, 2);
+        assertEquals(3, batches.size());
+        assertEquals(text, batches.get(0) + batches.get(1) + batches.get(2));
+
+        for (final OutputFormat format : OutputFormat.values()) {
+            for (final AnalysisLevel level : AnalysisLevel.values()) {
+                final ParseOptions options = new ParseOptions();
+                options.setFormat(format);
+                options.setLevel(level);
+                final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+                this.parser.parse(new ByteArrayInputStream(text.getBytes("UTF-8")), expected, options);
+
+                final ByteArrayOutputStream assembled = new ByteArrayOutputStream();
+                final DocumentAssembler assembler = new DocumentAssembler(assembled, options, null);
+                assembler.startDocument();
+                for (final String batch : batches) {
+                    final ParseOptions fragment = options.copy();
+                    fragment.setFragment(true);
+                    final ByteArrayOutputStream os = new ByteArrayOutputStream();
+                    this.parser.parse(new ByteArrayInputStream(batch.getBytes("UTF-8")), os, fragment);
+                    assembler.addFragment(os.toByteArray());
+                }
+                assembler.endDocument();
+
+                assertTrue(format + " " + level, Arrays.equals(expected.toByteArray(), assembled.toByteArray()));
+            }
+        }
+    }
+
+    @Test
+    public void testPolicyCutsLongSentencesAndSkipsBoilerplate() throws Exception {
+        final GenericObjectPool<SentenceWorker> workers = new GenericObjectPool<SentenceWorker>(
+                new SentenceWorkerFactory(), 1);
+        try {
+            final ParserSettings settings = new ParserSettings();
+            settings.setSegmenter(new RuleBasedSentenceSegmenter());
+            settings.setPolicy(new ParsePolicy(12, false, true));
+            final Parser bounded = new ParserImpl(workers, settings);
+            final long parses = Metrics.histogram("parser.parse").getCount();
+            final long chunked = Metrics.counter("parser.policy.chunked").getCount();
+            final long skipped = Metrics.counter("parser.policy.skipped").getCount();
+
+            final ParseOptions options = new ParseOptions();
+            final ByteArrayOutputStream os = new ByteArrayOutputStream();
+            bounded.parse(new ByteArrayInputStream(("HOME | NEWS | SPORTS | CONTACT US. Mothsoft LLC, a company in "
+                    + "Atlanta, released OpenAlexis, which reads the news, last year.").getBytes("UTF-8")), os,
+                    options);
+            final String xml = os.toString("UTF-8");
+
+            // the navigation is tagged, and the 19 token sentence parsed in two
+            assertEquals(3, count(xml, "<s>"));
+            assertEquals(2, count(xml, "<dependencies"));
+            assertTrue(xml.contains("<word ind=\"1\" pos=\"NNP\">HOME</word>"));
+            assertFalse(xml.contains("degraded"));
+            assertTrue(xml.contains(">Atlanta</name>"));
+            assertFalse(options.isDegraded());
+
+            assertEquals(parses + 2, Metrics.histogram("parser.parse").getCount());
+            assertEquals(chunked + 1, Metrics.counter("parser.policy.chunked").getCount());
+            assertEquals(skipped + 1, Metrics.counter("parser.policy.skipped").getCount());
+        } finally {
+            workers.close();
+        }
+    }
+
+    private static int count(final String text, final String token) {
+        int count = 0;
+        for (int i = text.indexOf(token); i >= 0; i = text.indexOf(token, i + token.length())) {
+            count++;
+        }
+        return count;
+    }
+
+    private byte[] parse(final Parser parser, final String resource, final OutputFormat format) throws IOException {
+        final ParseOptions options = new ParseOptions();
+        options.setFormat(format);
+        final ByteArrayOutputStream os = new ByteArrayOutputStream();
+        parser.parse(ParserTest.class.getResourceAsStream(resource), os, options);
+        return os.toByteArray();
+    }
+
+    private String parse(final String resource) throws IOException {
+        return parse(this.parser, resource);
+    }
+
+    private String parse(final Parser parser, final String resource) throws IOException {
+        final ByteArrayOutputStream os = new ByteArrayOutputStream();
+        parser.parse(ParserTest.class.getResourceAsStream(resource), os);
+        return os.toString("UTF-8");
+    }
+
 }
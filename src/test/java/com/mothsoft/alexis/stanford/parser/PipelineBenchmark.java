@@ -0,0 +1,207 @@
+/*
+    stanford-nlp-war : provides REST, JMS, and HTML form connectivity to Stanford CoreNLP
+    Copyright (C) 2012  Tim Garrett, Mothsoft LLC
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License along
+    with this program; if not, write to the Free Software Foundation, Inc.,
+    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package com.mothsoft.alexis.stanford.parser;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.NullOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.ling.HasWord;
+import edu.stanford.nlp.process.Tokenizer;
+import edu.stanford.nlp.trees.Tree;
+
+/**
+ * Times each stage of the parse pipeline, single-threaded, over the bundled
+ * corpus in src/test/resources/benchmark. Run with
+ * <code>mvn -Pbenchmark test</code>.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgs = { "-Xmx3g" })
+public class PipelineBenchmark {
+
+    @Param({ "short", "medium", "long", "document" })
+    public String corpus;
+
+    private String text;
+    private byte[] bytes;
+    private List<HasWord> tokens;
+    private List<List<HasWord>> sentences;
+    private List<Tree> trees;
+    private List<List<CoreLabel>> labels;
+
+    private SentenceWorker worker;
+    private SentenceSegmenter segmenter;
+    private Parser parser;
+    private ParseOptions uncached;
+    private ParseOptions namesOnly;
+
+    @Setup
+    public void setUp() throws IOException {
+        this.text = read("/benchmark/" + this.corpus + ".txt");
+        this.bytes = this.text.getBytes("UTF-8");
+        this.tokens = tokenize(this.text);
+        this.segmenter = new HeuristicSentenceSegmenter();
+        this.sentences = split(this.tokens, this.segmenter);
+
+        this.worker = SentenceWorker.create();
+        this.trees = new ArrayList<Tree>();
+        for (final List<HasWord> sentence : this.sentences) {
+            this.trees.add(this.worker.parse(sentence));
+        }
+        this.labels = new ArrayList<List<CoreLabel>>();
+        for (final List<HasWord> sentence : this.sentences) {
+            this.labels.add(this.worker.classify(sentence));
+        }
+
+        this.parser = ParserFactory.getParser();
+        this.uncached = uncached();
+        this.namesOnly = uncached();
+        this.namesOnly.setLevel(AnalysisLevel.NAMES);
+    }
+
+    @Benchmark
+    public List<HasWord> tokenize() {
+        return tokenize(this.text);
+    }
+
+    @Benchmark
+    public List<List<HasWord>> split() {
+        return split(this.tokens, this.segmenter);
+    }
+
+    @Benchmark
+    public void parseTree(final Blackhole blackhole) {
+        for (final List<HasWord> sentence : this.sentences) {
+            blackhole.consume(this.worker.parse(sentence));
+        }
+    }
+
+    @Benchmark
+    public void classifySentence(final Blackhole blackhole) {
+        for (final List<HasWord> sentence : this.sentences) {
+            final List<CoreLabel> labels = this.worker.classify(sentence);
+            blackhole.consume(labels);
+        }
+    }
+
+    /**
+     * Assembling and collecting named entities from classified words; run with
+     * <code>-prof gc</code> to see what it allocates
+     */
+    @Benchmark
+    public void collectNames(final Blackhole blackhole) {
+        for (final List<CoreLabel> sentence : this.labels) {
+            blackhole.consume(this.worker.names(sentence));
+        }
+    }
+
+    @Benchmark
+    public int serialize() {
+        final StringWriter writer = new StringWriter();
+        final PrintWriter printWriter = new PrintWriter(writer);
+        for (final Tree tree : this.trees) {
+            this.worker.print(tree, printWriter);
+        }
+        printWriter.flush();
+        return writer.getBuffer().length();
+    }
+
+    @Benchmark
+    public void parse() throws IOException {
+        this.parser.parse(new ByteArrayInputStream(this.bytes), new NullOutputStream(), this.uncached);
+    }
+
+    /**
+     * Tokenizing, splitting, NER and counting names: the path that is left
+     * when nothing is parsed. Run with <code>-prof gc</code> to see its
+     * allocation per document.
+     */
+    @Benchmark
+    public void parseNames() throws IOException {
+        this.parser.parse(new ByteArrayInputStream(this.bytes), new NullOutputStream(), this.namesOnly);
+    }
+
+    static String read(final String resource) throws IOException {
+        final InputStream is = PipelineBenchmark.class.getResourceAsStream(resource);
+        try {
+            return IOUtils.toString(is, "UTF-8");
+        } finally {
+            IOUtils.closeQuietly(is);
+        }
+    }
+
+    static ParseOptions uncached() {
+        final ParseOptions options = new ParseOptions();
+        options.setUseSentenceCache(false);
+        options.setUseResultStore(false);
+        return options;
+    }
+
+    private static List<HasWord> tokenize(final String text) {
+        final List<HasWord> tokens = new ArrayList<HasWord>();
+        final Tokenizer<HasWord> tokenizer = ParserImpl.tokenizer(new StringReader(text));
+        while (tokenizer.hasNext()) {
+            tokens.add(tokenizer.next());
+        }
+        return tokens;
+    }
+
+    private static List<List<HasWord>> split(final List<HasWord> tokens, final SentenceSegmenter segmenter) {
+        final List<List<HasWord>> sentences = new ArrayList<List<HasWord>>();
+        List<HasWord> sentence = new ArrayList<HasWord>();
+        for (final HasWord word : tokens) {
+            if (!sentence.isEmpty() && segmenter.endsBefore(sentence, word)) {
+                sentences.add(sentence);
+                sentence = new ArrayList<HasWord>();
+            }
+            sentence.add(word);
+        }
+        if (!sentence.isEmpty()) {
+            sentences.add(sentence);
+        }
+        return sentences;
+    }
+
+}
@@ -0,0 +1,249 @@
+/*
+    stanford-nlp-war : provides REST, JMS, and HTML form connectivity to Stanford CoreNLP
+    Copyright (C) 2012  Tim Garrett, Mothsoft LLC
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License along
+    with this program; if not, write to the Free Software Foundation, Inc.,
+    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package com.mothsoft.alexis.stanford.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.Test;
+
+public class SentenceSchedulerTest {
+
+    private static final long COST = 1000L;
+
+    @Test
+    public void testBulkNeverTakesReservedSlots() throws Exception {
+        final SentenceScheduler scheduler = new SentenceScheduler(2, 1);
+        scheduler.acquire(Lane.BULK, COST);
+
+        final Thread bulk = acquireAndRelease(scheduler, Lane.BULK, new CopyOnWriteArrayList<Lane>());
+        awaitWaiting(scheduler, Lane.BULK, 1);
+
+        // the reserved slot is still free for interactive work
+        scheduler.acquire(Lane.INTERACTIVE, COST);
+        assertEquals(1, scheduler.getRunning(Lane.INTERACTIVE));
+        assertEquals(1, scheduler.getWaiting(Lane.BULK));
+
+        scheduler.release(Lane.INTERACTIVE);
+        scheduler.release(Lane.BULK);
+        bulk.join(5000);
+        assertEquals(0, scheduler.getRunning(Lane.BULK));
+    }
+
+    @Test
+    public void testInteractiveGoesFirst() throws Exception {
+        final SentenceScheduler scheduler = new SentenceScheduler(1, 0);
+        final List<Lane> order = new CopyOnWriteArrayList<Lane>();
+        scheduler.acquire(Lane.BULK, COST);
+
+        final Thread bulk = acquireAndRelease(scheduler, Lane.BULK, order);
+        awaitWaiting(scheduler, Lane.BULK, 1);
+        final Thread interactive = acquireAndRelease(scheduler, Lane.INTERACTIVE, order);
+        awaitWaiting(scheduler, Lane.INTERACTIVE, 1);
+
+        scheduler.release(Lane.BULK);
+        bulk.join(5000);
+        interactive.join(5000);
+
+        assertEquals(Lane.INTERACTIVE, order.get(0));
+        assertEquals(Lane.BULK, order.get(1));
+    }
+
+    @Test
+    public void testShortSentencesOvertakeLongOnes() throws Exception {
+        final SentenceScheduler scheduler = new SentenceScheduler(1, 0);
+        final List<Long> order = new CopyOnWriteArrayList<Long>();
+        scheduler.acquire(Lane.BULK, COST);
+
+        // a 100 second sentence queued just before a 1 millisecond one
+        final Thread slow = acquireAndRelease(scheduler, 100000000L, order);
+        awaitWaiting(scheduler, Lane.BULK, 1);
+        final Thread fast = acquireAndRelease(scheduler, 1000L, order);
+        awaitWaiting(scheduler, Lane.BULK, 2);
+
+        scheduler.release(Lane.BULK);
+        slow.join(5000);
+        fast.join(5000);
+
+        assertEquals(Long.valueOf(1000L), order.get(0));
+        assertEquals(Long.valueOf(100000000L), order.get(1));
+    }
+
+    @Test
+    public void testLongSentencesWaitForChartMemory() throws Exception {
+        // one state, room for exactly one 50 token chart
+        final ChartMemory memory = new ChartMemory(chartBytes(50), 1, false, 0);
+        final SentenceScheduler scheduler = new SentenceScheduler(2, 0, new SentenceCostModel(), memory);
+        final long chart = scheduler.chartBytes(50);
+
+        assertEquals(0L, scheduler.chartBytes(SentenceWorker.RETAINED_CHART_TOKENS));
+        assertTrue(scheduler.fits(chart));
+        assertFalse(scheduler.fits(scheduler.chartBytes(51)));
+
+        scheduler.acquire(Lane.BULK, COST, chart);
+        final Thread second = new Thread() {
+            public void run() {
+                try {
+                    scheduler.acquire(Lane.BULK, COST, chart);
+                    scheduler.release(Lane.BULK, chart);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        second.start();
+
+        // a free slot is not enough without the memory
+        awaitWaiting(scheduler, Lane.BULK, 1);
+        assertEquals(chart, scheduler.getChartBytesReserved());
+
+        scheduler.release(Lane.BULK, chart);
+        second.join(5000);
+        assertEquals(0, scheduler.getWaiting(Lane.BULK));
+        assertEquals(0L, scheduler.getChartBytesReserved());
+    }
+
+    @Test
+    public void testChartSizeFollowsPCFGArrays() {
+        // 42 positions with the boundary word: 903 spans of a float, 43 rows
+        // of four int extents
+        assertEquals(903L * 4 + 43L * 16, chartBytes(40));
+        assertEquals(903L * 8 + 43L * 20, new ChartMemory(Long.MAX_VALUE, 1, true, 0).bytesFor(40));
+    }
+
+    @Test
+    public void testRetainedChartsAreChargedAsTheyGrow() {
+        final long retained = chartBytes(SentenceWorker.RETAINED_CHART_TOKENS);
+        final ChartMemory memory = new ChartMemory(3 * retained + chartBytes(60), 1, false, 3);
+        final long chart = memory.reservationFor(60);
+
+        // idle workers leave room for two long charts
+        assertTrue(memory.fits(chart));
+        assertFalse(memory.fits(memory.reservationFor(61)));
+        assertTrue(memory.tryReserve(chart));
+        assertTrue(memory.tryReserve(chart));
+        memory.release(chart);
+        memory.release(chart);
+
+        memory.retain(0, 10);
+        memory.retain(10, SentenceWorker.RETAINED_CHART_TOKENS);
+        memory.retain(0, SentenceWorker.RETAINED_CHART_TOKENS);
+        assertEquals(2 * retained, memory.getRetained());
+        assertTrue(memory.tryReserve(chart));
+        assertFalse(memory.tryReserve(chart));
+        memory.release(chart);
+
+        memory.retain(SentenceWorker.RETAINED_CHART_TOKENS, 0);
+        assertEquals(retained, memory.getRetained());
+    }
+
+    @Test
+    public void testPoolIsCappedToTheChartBudget() {
+        final long retained = chartBytes(SentenceWorker.RETAINED_CHART_TOKENS);
+        final long longer = chartBytes(SentenceWorker.RETAINED_CHART_TOKENS + 1);
+
+        assertEquals(4, new ChartMemory(4 * retained + longer, 1, false, 4).getWorkers());
+        assertEquals(3, new ChartMemory(4 * retained + longer - 1, 1, false, 4).getWorkers());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testBudgetMustHoldOneWorker() {
+        new ChartMemory(chartBytes(SentenceWorker.RETAINED_CHART_TOKENS), 1, false, 1);
+    }
+
+    @Test
+    public void testCostModelFollowsMeasuredTimes() {
+        final SentenceCostModel model = new SentenceCostModel(1000.0);
+        assertEquals(1000L, model.estimate(10));
+
+        for (int i = 0; i < 500; i++) {
+            model.record(10, model.estimate(10), 4000L);
+        }
+        assertEquals(4000.0, model.estimate(10), 40.0);
+        assertEquals(32000.0, model.estimate(20), 320.0);
+    }
+
+    @Test
+    public void testShortSentencesDoNotInflateLongEstimates() {
+        final SentenceCostModel model = new SentenceCostModel();
+        final long forty = model.estimate(40);
+
+        // a few hundred microseconds for one token is overhead, not a cube
+        for (int i = 0; i < 500; i++) {
+            model.record(1, model.estimate(1), 500L);
+        }
+        assertEquals(forty, model.estimate(40), forty * 0.001);
+        assertEquals(500.0, model.getOverheadMicros(), 5.0);
+
+        // and however slow long sentences get, the coefficient stays bounded
+        for (int i = 0; i < 500; i++) {
+            model.record(40, model.estimate(40), Long.MAX_VALUE / 2000L);
+        }
+        assertEquals(forty * SentenceCostModel.COEFFICIENT_RANGE, model.estimate(40), forty * 0.01);
+    }
+
+    private Thread acquireAndRelease(final SentenceScheduler scheduler, final long estimate, final List<Long> order) {
+        final Thread thread = new Thread() {
+            public void run() {
+                try {
+                    scheduler.acquire(Lane.BULK, estimate);
+                    order.add(estimate);
+                    scheduler.release(Lane.BULK);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        thread.start();
+        return thread;
+    }
+
+    private Thread acquireAndRelease(final SentenceScheduler scheduler, final Lane lane, final List<Lane> order) {
+        final Thread thread = new Thread() {
+            public void run() {
+                try {
+                    scheduler.acquire(lane, COST);
+                    order.add(lane);
+                    scheduler.release(lane);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        thread.start();
+        return thread;
+    }
+
+    private void awaitWaiting(final SentenceScheduler scheduler, final Lane lane, final int waiting)
+            throws InterruptedException {
+        for (int i = 0; i < 500 && scheduler.getWaiting(lane) != waiting; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(waiting, scheduler.getWaiting(lane));
+    }
+
+    private static long chartBytes(final int tokens) {
+        return new ChartMemory(Long.MAX_VALUE, 1, false, 0).bytesFor(tokens);
+    }
+
+}
@@ -0,0 +1,161 @@
+/*
+    stanford-nlp-war : provides REST, JMS, and HTML form connectivity to Stanford CoreNLP
+    Copyright (C) 2012  Tim Garrett, Mothsoft LLC
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License along
+    with this program; if not, write to the Free Software Foundation, Inc.,
+    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package com.mothsoft.alexis.stanford.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import edu.stanford.nlp.ling.HasWord;
+import edu.stanford.nlp.ling.TaggedWord;
+import edu.stanford.nlp.process.Tokenizer;
+
+public class SentenceSegmenterTest {
+
+    @Test
+    public void testHeuristicCutsLongSentencesAtDelimiters() {
+        final StringBuilder text = new StringBuilder("It");
+        for (int i = 0; i < 15; i++) {
+            text.append(" rained, and");
+        }
+        text.append(" stopped. Then it snowed.");
+
+        final List<String> sentences = split(new HeuristicSentenceSegmenter(), text.toString());
+        assertEquals(3, sentences.size());
+        assertTrue(sentences.get(0).endsWith(","));
+        assertEquals("Then it snowed .", sentences.get(2));
+    }
+
+    @Test
+    public void testRulesKeepQuotesAndBracketsWithTheirSentence() {
+        final List<String> sentences = split(new RuleBasedSentenceSegmenter(),
+                "He said \"Stop.\" \"Why?\" she asked. (See below.) It rose approx. five percent!! Done");
+        assertEquals(Arrays.asList("He said \" Stop . \"", "\" Why ? \" she asked .", "-LRB- See below . -RRB-",
+                "It rose approx . five percent !!", "Done"), sentences);
+    }
+
+    @Test
+    public void testRulesKeepLongSentencesWhole() {
+        final StringBuilder text = new StringBuilder("It");
+        for (int i = 0; i < 30; i++) {
+            text.append(" rained, and");
+        }
+        text.append(" stopped.");
+        assertEquals(1, split(new RuleBasedSentenceSegmenter(), text.toString()).size());
+
+        text.setLength(0);
+        for (int i = 0; i < RuleBasedSentenceSegmenter.MAX_TOKENS + 1; i++) {
+            text.append("gibberish ");
+        }
+        assertEquals(2, split(new RuleBasedSentenceSegmenter(), text.toString()).size());
+    }
+
+    @Test
+    public void testPolicyCutsLongSentencesAtDelimiters() {
+        final List<HasWord> sentence = tokenize("one two three four five , six seven eight nine ten eleven");
+        final ParsePolicy policy = new ParsePolicy(8, false, false);
+
+        final List<List<HasWord>> pieces = policy.chunk(sentence);
+        assertEquals(2, pieces.size());
+        assertEquals(6, pieces.get(0).size());
+        assertEquals(",", pieces.get(0).get(5).word());
+        assertEquals(6, pieces.get(1).size());
+        assertFalse(policy.skip(sentence));
+
+        // no delimiter in the second half: a hard cut
+        assertEquals(Arrays.asList(8, 3), sizes(policy.chunk(tokenize(
+                "one two , three four five six seven eight nine ten"))));
+        assertEquals(1, ParsePolicy.UNLIMITED.chunk(sentence).size());
+
+        final ParsePolicy skip = new ParsePolicy(8, true, false);
+        assertEquals(1, skip.chunk(sentence).size());
+        assertTrue(skip.skip(sentence));
+        assertFalse(skip.skip(tokenize("one two three")));
+    }
+
+    @Test
+    public void testPolicySkipsBoilerplate() {
+        final ParsePolicy policy = new ParsePolicy(0, false, true);
+        assertTrue(policy.skip(tokenize("HOME | NEWS | SPORTS | CONTACT US")));
+        assertFalse(policy.skip(tokenize("-LRB- AP -RRB- .")));
+        assertFalse(policy.skip(tokenize("NEWS: It rained.")));
+        assertFalse(ParsePolicy.UNLIMITED.skip(tokenize("HOME | NEWS | SPORTS | CONTACT US")));
+
+        assertTrue(policy.skipTagged(tag("Share/NN this/DT story/NN on/IN Facebook/NNP")));
+        assertFalse(policy.skipTagged(tag("Share/VB this/DT story/NN on/IN Facebook/NNP")));
+        assertFalse(policy.skipTagged(tag("Photo/NN :/: Reuters/NNP")));
+        assertFalse(new ParsePolicy(0, false, false).skipTagged(tag("Share/NN this/DT story/NN on/IN Facebook/NNP")));
+    }
+
+    private static List<String> split(final SentenceSegmenter segmenter, final String text) {
+        final List<String> sentences = new ArrayList<String>();
+        final List<HasWord> sentence = new ArrayList<HasWord>();
+        for (final HasWord word : tokenize(text)) {
+            if (!sentence.isEmpty() && segmenter.endsBefore(sentence, word)) {
+                sentences.add(join(sentence));
+                sentence.clear();
+            }
+            sentence.add(word);
+        }
+        sentences.add(join(sentence));
+        return sentences;
+    }
+
+    private static String join(final List<HasWord> sentence) {
+        final StringBuilder builder = new StringBuilder();
+        for (final HasWord word : sentence) {
+            builder.append(builder.length() == 0 ? "" : " ").append(word.word());
+        }
+        return builder.toString();
+    }
+
+    private static List<Integer> sizes(final List<List<HasWord>> pieces) {
+        final List<Integer> sizes = new ArrayList<Integer>();
+        for (final List<HasWord> piece : pieces) {
+            sizes.add(piece.size());
+        }
+        return sizes;
+    }
+
+    private static List<HasWord> tokenize(final String text) {
+        final List<HasWord> tokens = new ArrayList<HasWord>();
+        final Tokenizer<HasWord> tokenizer = ParserImpl.tokenizer(new StringReader(text));
+        while (tokenizer.hasNext()) {
+            tokens.add(tokenizer.next());
+        }
+        return tokens;
+    }
+
+    private static List<TaggedWord> tag(final String tagged) {
+        final List<TaggedWord> words = new ArrayList<TaggedWord>();
+        for (final String token : tagged.split(" ")) {
+            final int slash = token.lastIndexOf('/');
+            words.add(new TaggedWord(token.substring(0, slash), token.substring(slash + 1)));
+        }
+        return words;
+    }
+
+}
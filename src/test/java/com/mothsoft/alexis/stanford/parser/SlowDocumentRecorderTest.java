@@ -0,0 +1,158 @@
+/*
+    stanford-nlp-war : provides REST, JMS, and HTML form connectivity to Stanford CoreNLP
+    Copyright (C) 2012  Tim Garrett, Mothsoft LLC
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License along
+    with this program; if not, write to the Free Software Foundation, Inc.,
+    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package com.mothsoft.alexis.stanford.parser;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import edu.stanford.nlp.ling.HasWord;
+import edu.stanford.nlp.ling.Word;
+
+public class SlowDocumentRecorderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testCapturesOneInEverySampleOfSlowDocuments() throws IOException {
+        final Parser parser = new SlowDocumentParser(new ProfilingParser(false), new SlowDocumentRecorder(0, 2,
+                this.folder.getRoot(), 1024 * 1024));
+        final ParseOptions options = new ParseOptions();
+        options.setLevel(AnalysisLevel.TAGS);
+        for (final String document : new String[] { "first document", "second document", "third document" }) {
+            final ByteArrayOutputStream os = new ByteArrayOutputStream();
+            parser.parse(new ByteArrayInputStream(document.getBytes("UTF-8")), os, options);
+            assertEquals(document, os.toString("UTF-8"));
+        }
+
+        final List<String> inputs = new ArrayList<String>();
+        for (final File profile : SlowDocumentRecorder.listCaptures(this.folder.getRoot())) {
+            inputs.add(FileUtils.readFileToString(SlowDocumentRecorder.input(profile), "UTF-8"));
+
+            final Map<String, String> header = new LinkedHashMap<String, String>();
+            final List<String[]> sentences = new ArrayList<String[]>();
+            SlowDocumentReplay.readProfile(profile, header, sentences);
+            assertEquals("true", header.get("completed"));
+            assertEquals("false", header.get("truncated"));
+            assertEquals("TAGS", header.get("level"));
+            assertEquals("2", header.get("sentences"));
+            assertEquals(2, sentences.size());
+            assertEquals(Arrays.asList("2", "7", "false", "one two"), Arrays.asList(sentences.get(0)));
+            assertEquals(Arrays.asList("1", "7", "false", "three"), Arrays.asList(sentences.get(1)));
+        }
+        assertEquals(2, inputs.size());
+        assertTrue(inputs.contains("first document"));
+        assertTrue(inputs.contains("third document"));
+        assertNull(options.getProfile());
+    }
+
+    @Test
+    public void testCapturesFailedParses() throws IOException {
+        final SlowDocumentRecorder recorder = new SlowDocumentRecorder(0, 1, this.folder.getRoot(), 1024 * 1024);
+        try {
+            new SlowDocumentParser(new ProfilingParser(true), recorder).parse(new ByteArrayInputStream(
+                    "broken".getBytes("UTF-8")), new ByteArrayOutputStream());
+            fail();
+        } catch (IOException e) {
+            assertEquals("failed", e.getMessage());
+        }
+
+        final File[] profiles = SlowDocumentRecorder.listCaptures(this.folder.getRoot());
+        assertEquals(1, profiles.length);
+        assertArrayEquals("broken".getBytes("UTF-8"), FileUtils.readFileToByteArray(SlowDocumentRecorder
+                .input(profiles[0])));
+        final Map<String, String> header = new LinkedHashMap<String, String>();
+        SlowDocumentReplay.readProfile(profiles[0], header, new ArrayList<String[]>());
+        assertEquals("false", header.get("completed"));
+    }
+
+    @Test
+    public void testKeepsFastDocumentsAndStaysWithinItsLimit() throws IOException {
+        final byte[] document = new byte[1000];
+        Arrays.fill(document, (byte) 'a');
+
+        final Parser fast = new SlowDocumentParser(new ProfilingParser(false), new SlowDocumentRecorder(60000L, 1,
+                this.folder.getRoot(), 2500));
+        fast.parse(new ByteArrayInputStream(document), new ByteArrayOutputStream());
+        assertEquals(0, SlowDocumentRecorder.listCaptures(this.folder.getRoot()).length);
+
+        final SlowDocumentRecorder recorder = new SlowDocumentRecorder(0, 1, this.folder.getRoot(), 2500);
+        final Parser slow = new SlowDocumentParser(new ProfilingParser(false), recorder);
+        for (int i = 0; i < 3; i++) {
+            slow.parse(new ByteArrayInputStream(document), new ByteArrayOutputStream());
+        }
+
+        // the third capture went over, and the oldest were deleted down to 3/4
+        final File[] profiles = SlowDocumentRecorder.listCaptures(this.folder.getRoot());
+        assertEquals(1, profiles.length);
+        assertEquals(profiles[0].length() + SlowDocumentRecorder.input(profiles[0]).length(), recorder.getBytes());
+        assertEquals(3, recorder.getSlow());
+    }
+
+    /**
+     * Reads the document, profiles two sentences and echoes it back
+     */
+    private static class ProfilingParser implements Parser {
+
+        private final boolean fail;
+
+        private ProfilingParser(final boolean fail) {
+            this.fail = fail;
+        }
+
+        public void parse(final InputStream is, final OutputStream os) throws IOException {
+            parse(is, os, new ParseOptions());
+        }
+
+        public void parse(final InputStream is, final OutputStream os, final ParseOptions options)
+                throws IOException {
+            final byte[] document = IOUtils.toByteArray(is);
+            if (this.fail) {
+                throw new IOException("failed");
+            }
+
+            final DocumentProfile profile = options.getProfile();
+            profile.time(profile.add(Arrays.<HasWord> asList(new Word("one"), new Word("two"))), 7L, false);
+            profile.time(profile.add(Arrays.<HasWord> asList(new Word("three"))), 7L, false);
+            os.write(document);
+        }
+    }
+
+}
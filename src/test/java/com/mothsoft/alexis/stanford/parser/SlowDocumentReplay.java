@@ -0,0 +1,189 @@
+/*
+    stanford-nlp-war : provides REST, JMS, and HTML form connectivity to Stanford CoreNLP
+    Copyright (C) 2012  Tim Garrett, Mothsoft LLC
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License along
+    with this program; if not, write to the Free Software Foundation, Inc.,
+    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package com.mothsoft.alexis.stanford.parser;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.NullOutputStream;
+
+import com.mothsoft.alexis.stanford.metrics.Histogram;
+import com.mothsoft.alexis.stanford.metrics.Metrics;
+
+/**
+ * Feeds documents captured by the {@link SlowDocumentRecorder} back through
+ * the parser, with the options they were parsed with and the caches off, and
+ * compares the time each sentence takes now with the time it took then. The
+ * last of <code>replay.rounds</code> rounds is reported: the time spent in
+ * each stage of the pipeline and the slowest sentences.
+ * <p>
+ * Run with <code>mvn -Preplay test -Dreplay.options="..."</code>, where the
+ * options are system properties:
+ * <ul>
+ * <li>replay.path - a capture directory, or one <code>.profile</code> file of
+ * it (required)</li>
+ * <li>replay.rounds - times each document is parsed; all but the last warm up
+ * (default: 2)</li>
+ * <li>replay.top - slowest sentences listed per document (default: 10)</li>
+ * </ul>
+ * along with any parser settings to try, such as
+ * <code>-Dstanford.parser.segmenter=rules</code>. The profile also starts a
+ * Java Flight Recording of the whole replay in
+ * <code>target/replay.jfr</code>; set <code>replay.profiler</code> to change
+ * or drop it.
+ */
+public class SlowDocumentReplay {
+
+    private static final String[] STAGES = { "parser.poolWait", "parser.parse", "parser.serialize", "parser.ner",
+            "parser.tag" };
+    private static final int TEXT_WIDTH = 80;
+
+    private final int rounds = Math.max(1, Integer.getInteger("replay.rounds", 2));
+    private final int top = Integer.getInteger("replay.top", 10);
+
+    public static void main(final String[] args) throws Exception {
+        final String path = System.getProperty("replay.path");
+        if (path == null) {
+            System.err.println("Set replay.path to a slow document directory or .profile file");
+            System.exit(2);
+        }
+        new SlowDocumentReplay().run(new File(path));
+    }
+
+    void run(final File path) throws IOException {
+        final File[] profiles = path.isDirectory() ? SlowDocumentRecorder.listCaptures(path) : new File[] { path };
+        Arrays.sort(profiles, new Comparator<File>() {
+            public int compare(final File a, final File b) {
+                final long diff = a.lastModified() - b.lastModified();
+                return diff < 0 ? -1 : (diff > 0 ? 1 : 0);
+            }
+        });
+
+        ParserFactory.load();
+        for (final File profile : profiles) {
+            replay(profile);
+        }
+    }
+
+    private void replay(final File file) throws IOException {
+        final Map<String, String> header = new LinkedHashMap<String, String>();
+        final List<String[]> captured = new ArrayList<String[]>();
+        readProfile(file, header, captured);
+
+        final ParseOptions options = new ParseOptions();
+        options.setFormat(OutputFormat.valueOf(header.get("format")));
+        options.setLevel(AnalysisLevel.valueOf(header.get("level")));
+        options.setLane(Lane.valueOf(header.get("lane")));
+        options.setFragment(Boolean.parseBoolean(header.get("fragment")));
+        options.setUseSentenceCache(false);
+        options.setUseResultStore(false);
+        options.setIndexEntities(false);
+
+        final byte[] input = FileUtils.readFileToByteArray(SlowDocumentRecorder.input(file));
+        DocumentProfile profile = null;
+        final Map<String, long[]> stages = new LinkedHashMap<String, long[]>();
+        long millis = 0;
+        for (int round = 0; round < this.rounds; round++) {
+            for (final String stage : STAGES) {
+                final Histogram histogram = Metrics.histogram(stage);
+                stages.put(stage, new long[] { histogram.getCount(), histogram.getSum() });
+            }
+
+            profile = new DocumentProfile();
+            options.setProfile(profile);
+            final long start = System.nanoTime();
+            ParserFactory.getParser().parse(new ByteArrayInputStream(input), new NullOutputStream(), options);
+            millis = (System.nanoTime() - start) / 1000000L;
+        }
+
+        System.out.println(String.format("%s: %s", file.getName(), header));
+        System.out.println(String.format("  captured %dms, %d sentences; replayed %dms, %d sentences",
+                Long.parseLong(header.get("elapsedMillis")), captured.size(), millis, profile.size()));
+
+        System.out.println(String.format("  %-18s %8s %12s", "stage", "count", "total ms"));
+        for (final Map.Entry<String, long[]> stage : stages.entrySet()) {
+            final Histogram histogram = Metrics.histogram(stage.getKey());
+            System.out.println(String.format("  %-18s %8d %12d", stage.getKey(), histogram.getCount()
+                    - stage.getValue()[0], (histogram.getSum() - stage.getValue()[1]) / 1000L));
+        }
+
+        printSlowest(profile, captured);
+        System.out.println();
+    }
+
+    private void printSlowest(final DocumentProfile profile, final List<String[]> captured) {
+        final List<Integer> slowest = new ArrayList<Integer>();
+        for (int i = 0; i < profile.size(); i++) {
+            slowest.add(i);
+        }
+        Collections.sort(slowest, new Comparator<Integer>() {
+            public int compare(final Integer a, final Integer b) {
+                final long diff = profile.getMicros(b) - profile.getMicros(a);
+                return diff < 0 ? -1 : (diff > 0 ? 1 : 0);
+            }
+        });
+
+        System.out.println(String.format("  %6s %6s %12s %12s %8s  %s", "#", "tokens", "captured us", "replayed us",
+                "degraded", "text"));
+        for (final Integer i : slowest.subList(0, Math.min(this.top, slowest.size()))) {
+            // the sentences only line up if they were split the same way
+            final String[] then = i < captured.size() && captured.get(i)[3].equals(profile.getText(i)) ? captured
+                    .get(i) : null;
+            final String text = profile.getText(i);
+            System.out.println(String.format("  %6d %6d %12s %12d %8s  %s", i, profile.getTokens(i),
+                    then == null ? "-" : then[1], profile.getMicros(i), profile.isDegraded(i),
+                    text.length() > TEXT_WIDTH ? text.substring(0, TEXT_WIDTH) + "..." : text));
+        }
+    }
+
+    /**
+     * @param captured
+     *            - gets tokens, micros, degraded and text of each sentence
+     */
+    static void readProfile(final File file, final Map<String, String> header, final List<String[]> captured)
+            throws IOException {
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null && !line.isEmpty()) {
+                final int equals = line.indexOf('=');
+                header.put(line.substring(0, equals), line.substring(equals + 1));
+            }
+            while ((line = reader.readLine()) != null) {
+                captured.add(line.split("\t", 4));
+            }
+        } finally {
+            IOUtils.closeQuietly(reader);
+        }
+    }
+
+}
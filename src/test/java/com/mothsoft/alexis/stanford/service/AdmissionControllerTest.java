@@ -0,0 +1,99 @@
+/*
+    stanford-nlp-war : provides REST, JMS, and HTML form connectivity to Stanford CoreNLP
+    Copyright (C) 2012  Tim Garrett, Mothsoft LLC
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License along
+    with this program; if not, write to the Free Software Foundation, Inc.,
+    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package com.mothsoft.alexis.stanford.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+
+import org.junit.Test;
+
+public class AdmissionControllerTest {
+
+    @Test
+    public void testRejectsBeyondBound() {
+        final AdmissionController admission = new AdmissionController(1, 1, 5);
+
+        assertTrue(admission.tryAdmit());
+        assertTrue(admission.tryAdmit());
+        assertFalse(admission.tryAdmit());
+
+        final Response response = admission.reject();
+        assertEquals(503, response.getStatus());
+        assertEquals("5", String.valueOf(response.getMetadata().getFirst("Retry-After")));
+
+        admission.abandon();
+        assertTrue(admission.tryAdmit());
+    }
+
+    @Test
+    public void testAdmittedOutputReleasesOnFailure() throws IOException {
+        final AdmissionController admission = new AdmissionController(1, 1, 5);
+        final StreamingOutput failing = new StreamingOutput() {
+            public void write(final OutputStream os) throws IOException, WebApplicationException {
+                throw new IOException("client went away");
+            }
+        };
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(admission.tryAdmit());
+            try {
+                admission.admitted(failing).write(new ByteArrayOutputStream());
+            } catch (IOException e) {
+                // expected
+            }
+        }
+
+        assertTrue(admission.tryAdmit());
+        assertTrue(admission.tryAdmit());
+        assertFalse(admission.tryAdmit());
+    }
+
+    @Test
+    public void testUnwrittenAdmissionIsReleasedWhenRequestCompletes() throws IOException {
+        final AdmissionController admission = new AdmissionController(1, 1, 5);
+        final StreamingOutput ok = new StreamingOutput() {
+            public void write(final OutputStream os) throws IOException, WebApplicationException {
+            }
+        };
+
+        // the client goes away before the output is written
+        assertTrue(admission.tryAdmit());
+        admission.admitted(ok);
+        AdmissionController.requestCompleted();
+
+        // written, then completed: given back only once
+        assertTrue(admission.tryAdmit());
+        admission.admitted(ok).write(new ByteArrayOutputStream());
+        AdmissionController.requestCompleted();
+
+        assertTrue(admission.tryAdmit());
+        assertTrue(admission.tryAdmit());
+        assertFalse(admission.tryAdmit());
+    }
+
+}
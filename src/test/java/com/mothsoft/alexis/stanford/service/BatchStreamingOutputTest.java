@@ -0,0 +1,87 @@
+/*
+    stanford-nlp-war : provides REST, JMS, and HTML form connectivity to Stanford CoreNLP
+    Copyright (C) 2012  Tim Garrett, Mothsoft LLC
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License along
+    with this program; if not, write to the Free Software Foundation, Inc.,
+    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package com.mothsoft.alexis.stanford.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+import com.mothsoft.alexis.stanford.parser.ParseOptions;
+import com.mothsoft.alexis.stanford.parser.Parser;
+
+public class BatchStreamingOutputTest {
+
+    private static final String BATCH = "<documents><document id=\"a\">first</document>"
+            + "<document id=\"b\">fail</document><document>third &amp; last</document></documents>";
+
+    /**
+     * Echoes the text back as a document, or fails on "fail"
+     */
+    private final Parser echo = new Parser() {
+        public void parse(final InputStream is, final OutputStream os) throws IOException {
+            parse(is, os, new ParseOptions());
+        }
+
+        public void parse(final InputStream is, final OutputStream os, final ParseOptions options)
+                throws IOException {
+            final String text = IOUtils.toString(is, "UTF-8");
+            if ("fail".equals(text)) {
+                throw new RuntimeException("could not <parse>");
+            }
+            os.write(("<?xml version=\"1.0\" encoding=\"utf-8\" ?><document>" + text.replace("&", "&amp;") + "</document>")
+                    .getBytes("UTF-8"));
+        }
+    };
+
+    @Test
+    public void testEveryDocumentIsFramedOnce() throws Exception {
+        final List<BatchDocument> documents = BatchDocument.read(new ByteArrayInputStream(BATCH.getBytes("UTF-8")));
+        assertEquals(3, documents.size());
+        assertEquals("2", documents.get(2).getId());
+        assertEquals("third & last", documents.get(2).getText());
+
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            final ByteArrayOutputStream os = new ByteArrayOutputStream();
+            new BatchStreamingOutput(this.echo, executor, documents, new ParseOptions()).write(os);
+            final String result = os.toString("UTF-8");
+
+            assertTrue(result.startsWith("<?xml version=\"1.0\" encoding=\"utf-8\" ?><results>"));
+            assertTrue(result.endsWith("</results>"));
+            assertEquals(-1, result.indexOf("<?xml", 1));
+            assertTrue(result.contains("<result id=\"a\" index=\"0\"><document>first</document></result>"));
+            assertTrue(result.contains("<result id=\"b\" index=\"1\" error=\"true\">could not &lt;parse&gt;</result>"));
+            assertTrue(result.contains("<result id=\"2\" index=\"2\"><document>third &amp; last</document></result>"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+}
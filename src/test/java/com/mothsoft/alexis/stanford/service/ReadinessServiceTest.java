@@ -0,0 +1,69 @@
+/*
+    stanford-nlp-war : provides REST, JMS, and HTML form connectivity to Stanford CoreNLP
+    Copyright (C) 2012  Tim Garrett, Mothsoft LLC
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License along
+    with this program; if not, write to the Free Software Foundation, Inc.,
+    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package com.mothsoft.alexis.stanford.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+
+import javax.ws.rs.core.Response;
+
+import org.junit.Test;
+import org.springframework.context.Lifecycle;
+
+public class ReadinessServiceTest {
+
+    @Test
+    public void testReadyOnlyAfterWarmUp() {
+        final ReadinessService readiness = new ReadinessService(1);
+        final RecordingLifecycle jms = new RecordingLifecycle();
+        readiness.setStartWhenReady(Collections.<Lifecycle> singletonList(jms));
+
+        Response response = readiness.ready();
+        assertEquals(503, response.getStatus());
+        assertEquals("starting", response.getEntity());
+        assertFalse(jms.isRunning());
+
+        readiness.warmUp();
+
+        response = readiness.ready();
+        assertEquals(200, response.getStatus());
+        assertEquals("ready", response.getEntity());
+        assertTrue(jms.isRunning());
+    }
+
+    private static class RecordingLifecycle implements Lifecycle {
+        private volatile boolean running;
+
+        public void start() {
+            this.running = true;
+        }
+
+        public void stop() {
+            this.running = false;
+        }
+
+        public boolean isRunning() {
+            return this.running;
+        }
+    }
+
+}
@@ -0,0 +1,122 @@
+/*
+    stanford-nlp-war : provides REST, JMS, and HTML form connectivity to Stanford CoreNLP
+    Copyright (C) 2012  Tim Garrett, Mothsoft LLC
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License along
+    with this program; if not, write to the Free Software Foundation, Inc.,
+    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package com.mothsoft.alexis.stanford.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+import com.mothsoft.alexis.stanford.parser.AnalysisLevel;
+import com.mothsoft.alexis.stanford.parser.OutputFormat;
+
+public class StanfordNLPServiceTest {
+
+    private final StanfordNLPService service = new StanfordNLPService();
+
+    @Test
+    public void testStreamingBodyMatchesForm() throws IOException {
+        final InputStream is = StanfordNLPServiceTest.class.getResourceAsStream("/multiple.txt");
+        final String content;
+        try {
+            content = IOUtils.toString(is, "UTF-8");
+        } finally {
+            IOUtils.closeQuietly(is);
+        }
+
+        final String form = write(this.service.parser(content, null, null, false, accept("*/*")));
+        final String streamed = write(this.service.parse(
+                StanfordNLPServiceTest.class.getResourceAsStream("/multiple.txt"), false, null, accept("*/*")));
+
+        assertEquals(form, streamed);
+    }
+
+    @Test
+    public void testFormatFollowsAcceptHeader() {
+        assertEquals(OutputFormat.XML, StanfordNLPService.formatFor(types("*/*")));
+        assertEquals(OutputFormat.XML, StanfordNLPService.formatFor(types("text/html", "application/*")));
+        assertEquals(OutputFormat.JSON, StanfordNLPService.formatFor(types("application/json", "application/xml")));
+        assertEquals(OutputFormat.BINARY, StanfordNLPService.formatFor(types("application/x-alexis-parse")));
+        assertEquals(OutputFormat.XML, StanfordNLPService.formatFor(types("text/html")));
+    }
+
+    @Test
+    public void testJsonResponse() throws IOException {
+        final Response response = this.service.parser("Tim Garrett lives in Atlanta.", null, null, true,
+                accept("application/json"));
+        assertEquals("application/json", String.valueOf(response.getMetadata().getFirst("Content-Type")));
+
+        final String json = write(response);
+        assertTrue(json, json.startsWith("{\"sentences\":[{\"words\":[[\"Tim\",\"NNP\"]"));
+        assertTrue(json, json.endsWith("\"names\":[[\"Tim Garrett\",1],[\"Atlanta\",1]]}"));
+    }
+
+    @Test
+    public void testLevelParameters() {
+        assertEquals(AnalysisLevel.FULL, StanfordNLPService.levelFor(null, null));
+        assertEquals(AnalysisLevel.FULL, StanfordNLPService.levelFor(null, true));
+        assertEquals(AnalysisLevel.TAGS, StanfordNLPService.levelFor(null, false));
+        assertEquals(AnalysisLevel.NAMES, StanfordNLPService.levelFor("names", false));
+        assertEquals(AnalysisLevel.FULL, StanfordNLPService.levelFor("Full", false));
+    }
+
+    private static List<MediaType> types(final String... types) {
+        final List<MediaType> list = new ArrayList<MediaType>();
+        for (final String type : types) {
+            list.add(MediaType.valueOf(type));
+        }
+        return list;
+    }
+
+    private static HttpHeaders accept(final String... types) {
+        final List<MediaType> acceptable = types(types);
+        return (HttpHeaders) Proxy.newProxyInstance(HttpHeaders.class.getClassLoader(),
+                new Class<?>[] { HttpHeaders.class }, new InvocationHandler() {
+                    public Object invoke(final Object proxy, final Method method, final Object[] args) {
+                        if ("getAcceptableMediaTypes".equals(method.getName())) {
+                            return acceptable;
+                        }
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    private String write(final Response response) throws IOException {
+        assertEquals(200, response.getStatus());
+        final ByteArrayOutputStream os = new ByteArrayOutputStream();
+        ((StreamingOutput) response.getEntity()).write(os);
+        return os.toString("UTF-8");
+    }
+
+}